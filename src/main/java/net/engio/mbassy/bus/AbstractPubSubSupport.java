@@ -7,8 +7,8 @@ import net.engio.mbassy.bus.config.Feature;
 import net.engio.mbassy.bus.config.IBusConfiguration;
 import net.engio.mbassy.bus.error.IPublicationErrorHandler;
 import net.engio.mbassy.bus.error.PublicationError;
+import net.engio.mbassy.subscription.AbstractSubscriptionManager;
 import net.engio.mbassy.subscription.Subscription;
-import net.engio.mbassy.subscription.SubscriptionManager;
 
 import java.util.*;
 
@@ -28,7 +28,7 @@ public abstract class AbstractPubSubSupport<T> implements PubSubSupport<T> {
 
     private final MessagePublication.Factory publicationFactory;
 
-    private final SubscriptionManager subscriptionManager;
+    private final AbstractSubscriptionManager subscriptionManager;
 
     private final BusRuntime runtime;
 
@@ -81,8 +81,8 @@ public abstract class AbstractPubSubSupport<T> implements PubSubSupport<T> {
     }
 
     protected MessagePublication createMessagePublication(T message) {
-        Collection<Subscription> subscriptions = getSubscriptionsByMessageType(message.getClass());
-        if ((subscriptions == null || subscriptions.isEmpty()) && !message.getClass()
+        Subscription[] subscriptions = getSubscriptionsByMessageType(message.getClass());
+        if ((subscriptions == null || subscriptions.length == 0) && !message.getClass()
                 .equals(DeadMessage.class)) {
             // DeadMessage Event
             subscriptions = getSubscriptionsByMessageType(DeadMessage.class);
@@ -94,7 +94,7 @@ public abstract class AbstractPubSubSupport<T> implements PubSubSupport<T> {
 
     // obtain the set of subscriptions for the given message type
     // Note: never returns null!
-    protected Collection<Subscription> getSubscriptionsByMessageType(Class messageType) {
+    protected Subscription[] getSubscriptionsByMessageType(Class messageType) {
         return subscriptionManager.getSubscriptionsByMessageType(messageType);
     }
 
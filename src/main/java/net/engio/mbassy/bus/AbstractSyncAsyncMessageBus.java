@@ -1,17 +1,39 @@
 package net.engio.mbassy.bus;
 
+import net.engio.mbassy.bus.common.ExpiredMessage;
+import net.engio.mbassy.bus.common.IBatchObserver;
+import net.engio.mbassy.bus.common.IDispatcherPoolObserver;
 import net.engio.mbassy.bus.common.IMessageBus;
+import net.engio.mbassy.bus.common.IWaitStrategy;
+import net.engio.mbassy.bus.common.OverflowPolicy;
 import net.engio.mbassy.bus.config.ConfigurationError;
 import net.engio.mbassy.bus.config.Feature;
 import net.engio.mbassy.bus.config.IBusConfiguration;
 import net.engio.mbassy.bus.error.InternalPublicationError;
+import net.engio.mbassy.bus.error.PublicationError;
 import net.engio.mbassy.bus.publication.ISyncAsyncPublicationCommand;
+import net.engio.mbassy.common.ConcurrentWeakIdentityMap;
+import net.engio.mbassy.common.HashedTimingWheel;
+import net.engio.mbassy.common.IPredicate;
+import net.engio.mbassy.common.MultiLevelPriorityQueue;
+import net.engio.mbassy.listener.MessagePriority;
+import net.engio.mbassy.subscription.Subscription;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * The base class for all message bus implementations with support for asynchronous message dispatch
@@ -26,10 +48,85 @@ public abstract class AbstractSyncAsyncMessageBus<T, P extends ISyncAsyncPublica
     private final ExecutorService executor;
 
     // all threads that are available for asynchronous message dispatching
-    private final List<Thread> dispatchers;
+    private final List<Thread> dispatchers = new CopyOnWriteArrayList<Thread>();
+
+    // guards the start and retirement of additional dispatchers against shutdown, such that the shutdown offers
+    // exactly one stop signal per dispatcher that is still running
+    private final Object dispatcherLock = new Object();
+
+    private final ThreadFactory dispatcherThreadFactory;
+    private final IWaitStrategy waitStrategy;
+    private final int batchSize;
+    private final IBatchObserver batchObserver;
+
+    // elastic mode: the number of dispatchers varies between min and max
+    private final int minDispatchers;
+    private final int maxDispatchers;
+    private final AtomicInteger activeDispatchers = new AtomicInteger();
+    private final AtomicInteger dispatcherIds = new AtomicInteger();
+    // a dispatcher is added when there are more pending messages per dispatcher
+    private final int growthThreshold;
+    // or when a message has been waiting longer, 0 if disabled
+    private final long maxWaitTimeInNanos;
+    // additional dispatchers retire after being idle for this long
+    private final long keepAliveTimeInNanos;
+    private final IDispatcherPoolObserver poolObserver;
+    private volatile long lastGrowth = System.nanoTime();
 
     // all pending messages scheduled for asynchronous dispatch are queued here
-    private final BlockingQueue<IMessagePublication> pendingMessages;
+    // partitioned dispatch uses one queue per dispatcher (lane), otherwise all dispatchers share a single queue
+    private final List<BlockingQueue<IMessagePublication>> pendingMessages;
+
+    // used to distribute messages without key over the lanes
+    private final AtomicInteger nextLane = new AtomicInteger();
+
+    // the number of messages that dispatchers have taken from the queue as part of a batch but not yet started
+    private final AtomicInteger batchedMessages = new AtomicInteger();
+
+    // defines what happens to publications that do not fit into their queue
+    private final OverflowPolicy overflowPolicy;
+
+    private final AtomicLong rejectedMessages = new AtomicLong();
+    private final AtomicLong droppedMessages = new AtomicLong();
+
+    // the pending publications by key if conflation is enabled, null otherwise
+    private final ConcurrentMap<Object, ConflatedPublication> conflatedPublications;
+
+    private final AtomicLong conflatedMessages = new AtomicLong();
+
+    // the time to live of publications that do not specify their own, 0 if they do not expire
+    private final long messageTimeToLiveInNanos;
+
+    private final AtomicLong expiredMessages = new AtomicLong();
+
+    // the priority of each message class, see @MessagePriority
+    private final ConcurrentMap<Class, Integer> messagePriorities = new ConcurrentHashMap<Class, Integer>();
+
+    // the timer of delayed and periodic publications, its thread starts with the first scheduled publication
+    private final HashedTimingWheel timer;
+
+    // set when the bus stops accepting asynchronous publications
+    private final AtomicBoolean shutdown = new AtomicBoolean(false);
+
+    // set when the shutdown timed out, dispatchers stop without taking any further message
+    private volatile boolean terminated = false;
+
+    // the number of threads that are queueing a publication, shutdown waits for them before stopping the dispatchers
+    private final AtomicInteger publishers = new AtomicInteger();
+
+    // the time close() waits for pending messages to be dispatched
+    private final long shutdownTimeoutInNanos;
+
+    // queued behind all pending messages on shutdown, each dispatcher stops when it takes one
+    private final MessagePublication stopSignal;
+
+    // the entries that may be dropped from a prioritized queue, every entry but the stop signal
+    private final IPredicate<IMessagePublication> evictable = new IPredicate<IMessagePublication>() {
+        @Override
+        public boolean apply(IMessagePublication entry) {
+            return entry != stopSignal;
+        }
+    };
 
     protected AbstractSyncAsyncMessageBus(IBusConfiguration configuration) {
         super(configuration);
@@ -39,9 +136,50 @@ public abstract class AbstractSyncAsyncMessageBus<T, P extends ISyncAsyncPublica
         if(asyncDispatch == null){
             throw ConfigurationError.MissingFeature(Feature.AsynchronousMessageDispatch.class);
         }
-        pendingMessages = asyncDispatch.getMessageQueue();
-        dispatchers = new ArrayList<Thread>(asyncDispatch.getNumberOfMessageDispatchers());
-        initDispatcherThreads(asyncDispatch);
+        pendingMessages = asyncDispatch.getMessageLanes() != null
+                ? new ArrayList<BlockingQueue<IMessagePublication>>(asyncDispatch.getMessageLanes())
+                : Collections.singletonList(asyncDispatch.getMessageQueue());
+        overflowPolicy = asyncDispatch.getOverflowPolicy() != null
+                ? asyncDispatch.getOverflowPolicy()
+                : OverflowPolicy.Block;
+        conflatedPublications = asyncDispatch.isConflateByKey()
+                ? new ConcurrentHashMap<Object, ConflatedPublication>()
+                : null;
+        waitStrategy = asyncDispatch.getWaitStrategy() != null
+                ? asyncDispatch.getWaitStrategy()
+                : new IWaitStrategy.Blocking();
+        batchSize = Math.max(1, asyncDispatch.getBatchSize());
+        batchObserver = asyncDispatch.getBatchObserver();
+        dispatcherThreadFactory = asyncDispatch.getDispatcherThreadFactory();
+        minDispatchers = asyncDispatch.getNumberOfMessageDispatchers();
+        // lanes have a fixed number of dispatchers
+        maxDispatchers = pendingMessages.size() > 1
+                ? 0
+                : asyncDispatch.getMaxNumberOfMessageDispatchers();
+        growthThreshold = Math.max(1, asyncDispatch.getDispatcherGrowthThreshold());
+        maxWaitTimeInNanos = maxDispatchers > minDispatchers ? asyncDispatch.getMaxWaitTimeInNanos() : 0;
+        keepAliveTimeInNanos = asyncDispatch.getDispatcherKeepAliveTimeInNanos() > 0
+                ? asyncDispatch.getDispatcherKeepAliveTimeInNanos()
+                : TimeUnit.MINUTES.toNanos(1);
+        poolObserver = asyncDispatch.getDispatcherPoolObserver();
+        messageTimeToLiveInNanos = asyncDispatch.getMessageTimeToLiveInNanos();
+        shutdownTimeoutInNanos = asyncDispatch.getShutdownTimeoutInNanos() > 0
+                ? asyncDispatch.getShutdownTimeoutInNanos()
+                : TimeUnit.SECONDS.toNanos(10);
+        stopSignal = new MessagePublication.Factory().createPublication(getRuntime(), new Subscription[0], "stop");
+        timer = new HashedTimingWheel(
+                asyncDispatch.getTimerTickDurationInNanos() > 0 ? asyncDispatch.getTimerTickDurationInNanos() : TimeUnit.MILLISECONDS.toNanos(10),
+                TimeUnit.NANOSECONDS,
+                asyncDispatch.getTimerWheelSize() > 0 ? asyncDispatch.getTimerWheelSize() : 512,
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = dispatcherThreadFactory.newThread(runnable);
+                        thread.setName("MsgTimer");
+                        return thread;
+                    }
+                });
+        initDispatcherThreads();
 
         // configure asynchronous handler invocation
         Feature.AsynchronousHandlerInvocation asyncInvocation = configuration.getFeature(Feature.AsynchronousHandlerInvocation.class);
@@ -50,77 +188,630 @@ public abstract class AbstractSyncAsyncMessageBus<T, P extends ISyncAsyncPublica
         }
         this.executor = asyncInvocation.getExecutor();
         getRuntime().add(IBusConfiguration.Properties.AsynchronousHandlerExecutor, executor);
+        getRuntime().add(IBusConfiguration.Properties.AsynchronousHandlerListenersPerTask, Math.max(1, asyncInvocation.getListenersPerTask()));
+        if (asyncInvocation.isSynchronizeWithMailboxes()) {
+            getRuntime().add(IBusConfiguration.Properties.AsynchronousHandlerMailboxes, new ConcurrentWeakIdentityMap<Object, Object>());
+        }
 
     }
 
     // initialize the dispatch workers
-    private void initDispatcherThreads(Feature.AsynchronousMessageDispatch configuration) {
-        for (int i = 0; i < configuration.getNumberOfMessageDispatchers(); i++) {
-            // each thread will run forever and process incoming
-            // message publication requests
-            Thread dispatcher = configuration.getDispatcherThreadFactory().newThread(new Runnable() {
-                public void run() {
-                    while (true) {
-                        IMessagePublication publication = null;
+    private void initDispatcherThreads() {
+        // each lane has exactly one dispatcher, otherwise the order of its messages is lost
+        int numberOfDispatchers = pendingMessages.size() > 1
+                ? pendingMessages.size()
+                : minDispatchers;
+        activeDispatchers.set(numberOfDispatchers);
+        for (int i = 0; i < numberOfDispatchers; i++) {
+            startDispatcher(pendingMessages.get(i % pendingMessages.size()));
+        }
+    }
+
+    private void startDispatcher(final BlockingQueue<IMessagePublication> queue) {
+        // each thread will run until it is interrupted (or retired in elastic mode)
+        // and process incoming message publication requests
+        Thread dispatcher = dispatcherThreadFactory.newThread(new Runnable() {
+            public void run() {
+                boolean retired = false;
+                try {
+                    List<IMessagePublication> batch = new ArrayList<IMessagePublication>(batchSize);
+                    while (!terminated) {
                         try {
-                            publication = pendingMessages.take();
-                            publication.execute();
+                            IMessagePublication next = takeNext(queue);
+                            if (next == null) {
+                                retired = true;
+                                return;
+                            }
+                            if (next == stopSignal) {
+                                return; // all messages queued before shutdown have been taken
+                            }
+                            if (terminated) {
+                                discard(next, "Message discarded because the bus has been shut down");
+                                return;
+                            }
+                            batch.add(next);
                         } catch (InterruptedException e) {
                             Thread.currentThread().interrupt();
                             return;
-                        } catch(Throwable t){
-                            handlePublicationError(new InternalPublicationError(t, "Error in asynchronous dispatch",publication));
                         }
+                        boolean stopped = false;
+                        if (batchSize > 1) {
+                            // reserve before draining, such that the batched messages are never missed by hasPendingMessages()
+                            batchedMessages.addAndGet(batchSize - 1);
+                            int drained = queue.drainTo(batch, batchSize - 1);
+                            batchedMessages.addAndGet(drained - (batchSize - 1));
+                            stopped = removeStopSignals(batch, queue);
+                        }
+                        if (maxWaitTimeInNanos > 0) {
+                            checkWaitTime(batch.get(0));
+                        }
+                        dispatch(batch, batchObserver);
+                        batch.clear();
+                        if (stopped) {
+                            return;
+                        }
+                    }
+                } finally {
+                    if (!retired) {
+                        activeDispatchers.decrementAndGet();
                     }
+                    dispatchers.remove(Thread.currentThread());
                 }
-            });
-            dispatcher.setName("MsgDispatcher-"+i);
-            dispatchers.add(dispatcher);
-            dispatcher.start();
+            }
+        });
+        dispatcher.setName("MsgDispatcher-" + dispatcherIds.getAndIncrement());
+        dispatchers.add(dispatcher);
+        dispatcher.start();
+    }
+
+    // remove the stop signals that have been drained into a batch. The first one is kept by the calling dispatcher,
+    // the others are put back for the other dispatchers. Returns true if the calling dispatcher has to stop
+    private boolean removeStopSignals(List<IMessagePublication> batch, BlockingQueue<IMessagePublication> queue) {
+        int signals = 0;
+        for (int i = batch.size() - 1; i > 0; i--) {
+            if (batch.get(i) == stopSignal) {
+                batch.remove(i);
+                signals++;
+            }
+        }
+        // the removed signals have been counted as batched messages but will never be dispatched
+        batchedMessages.addAndGet(-signals);
+        for (int i = 1; i < signals; i++) {
+            queue.offer(stopSignal);
         }
+        return signals > 0;
     }
 
+    // wait for the next publication. Returns null if the calling dispatcher has been idle for too long and retires
+    private IMessagePublication takeNext(BlockingQueue<IMessagePublication> queue) throws InterruptedException {
+        if (maxDispatchers <= minDispatchers) {
+            return waitStrategy.take(queue);
+        }
+        while (true) {
+            int active = activeDispatchers.get();
+            if (active <= minDispatchers) {
+                return waitStrategy.take(queue);
+            }
+            // additional dispatchers block on the queue regardless of the wait strategy, such that they notice being idle
+            IMessagePublication next = queue.poll(keepAliveTimeInNanos, TimeUnit.NANOSECONDS);
+            if (next != null) {
+                return next;
+            }
+            synchronized (dispatcherLock) {
+                if (shutdown.get()) {
+                    continue; // counted by the shutdown, the dispatcher waits for its stop signal
+                }
+                active = activeDispatchers.get();
+                if (active <= minDispatchers || !activeDispatchers.compareAndSet(active, active - 1)) {
+                    continue;
+                }
+                // not counted by a later shutdown
+                dispatchers.remove(Thread.currentThread());
+            }
+            notifyPoolObserver(false, active - 1);
+            return null;
+        }
+    }
 
-    // this method queues a message delivery request
-    protected IMessagePublication addAsynchronousPublication(MessagePublication publication) {
+    // start another dispatcher unless the maximum number of dispatchers is running already
+    private void addDispatcher() {
+        int active;
+        synchronized (dispatcherLock) {
+            if (shutdown.get()) {
+                return; // the new dispatcher would not get a stop signal
+            }
+            do {
+                active = activeDispatchers.get();
+                if (active >= maxDispatchers) {
+                    return;
+                }
+            } while (!activeDispatchers.compareAndSet(active, active + 1));
+            lastGrowth = System.nanoTime();
+            startDispatcher(pendingMessages.get(0));
+        }
+        notifyPoolObserver(true, active + 1);
+    }
+
+    // add a dispatcher if there are too many pending messages per dispatcher
+    private void checkQueueDepth(BlockingQueue<IMessagePublication> queue) {
+        if (queue.size() > growthThreshold * activeDispatchers.get()) {
+            addDispatcher();
+        }
+    }
+
+    // add a dispatcher if the publication has been waiting for too long, at most one per maximum wait time
+    private void checkWaitTime(IMessagePublication publication) {
+        if (publication instanceof MessagePublication) {
+            long now = System.nanoTime();
+            if (now - ((MessagePublication) publication).getQueuedAt() > maxWaitTimeInNanos
+                    && now - lastGrowth > maxWaitTimeInNanos) {
+                addDispatcher();
+            }
+        }
+    }
+
+    private void notifyPoolObserver(boolean added, int numberOfDispatchers) {
+        if (poolObserver == null) {
+            return;
+        }
         try {
-            pendingMessages.put(publication);
-            return publication.markScheduled();
-        } catch (InterruptedException e) {
-            handlePublicationError(new InternalPublicationError(e, "Error while adding an asynchronous message publication", publication));
-            return publication;
+            if (added) {
+                poolObserver.dispatcherAdded(numberOfDispatchers);
+            } else {
+                poolObserver.dispatcherRetired(numberOfDispatchers);
+            }
+        } catch (Throwable t) {
+            handlePublicationError(new InternalPublicationError(t, "Error in dispatcher pool observer"));
+        }
+    }
+
+    private void dispatch(List<IMessagePublication> batch, IBatchObserver batchObserver) {
+        if (batchObserver != null) {
+            try {
+                batchObserver.beforeBatch(batch);
+            } catch (Throwable t) {
+                handlePublicationError(new InternalPublicationError(t, "Error in batch observer"));
+            }
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            IMessagePublication publication = batch.get(i);
+            if (i > 0) {
+                batchedMessages.decrementAndGet();
+            }
+            try {
+                execute(publication);
+            } catch (Throwable t) {
+                handlePublicationError(new InternalPublicationError(t, "Error in asynchronous dispatch", publication));
+            }
         }
+        if (batchObserver != null) {
+            try {
+                batchObserver.afterBatch(batch);
+            } catch (Throwable t) {
+                handlePublicationError(new InternalPublicationError(t, "Error in batch observer"));
+            }
+        }
+    }
+
+    // execute a queue entry unless its publication has expired
+    private void execute(IMessagePublication entry) {
+        MessagePublication publication = unwrap(entry);
+        if (publication == null) {
+            entry.execute();
+        } else if (publication.isExpired()) {
+            expire(publication);
+        } else {
+            publication.execute();
+        }
+    }
+
+    // finish an expired publication without delivering its message and publish an expired message event instead
+    private void expire(MessagePublication publication) {
+        expiredMessages.incrementAndGet();
+        publication.markDiscarded(new PublicationError(null, "Message expired before it has been dispatched", null, null, publication));
+        getRuntime().getProvider().publish(new ExpiredMessage(publication.getMessage()));
+    }
+
+    // this method queues a message delivery request
+    protected IMessagePublication addAsynchronousPublication(MessagePublication publication) {
+        return addAsynchronousPublication(publication, null);
     }
 
     // this method queues a message delivery request
     protected IMessagePublication addAsynchronousPublication(MessagePublication publication, long timeout, TimeUnit unit) {
+        return addAsynchronousPublication(publication, null, timeout, unit);
+    }
+
+    // this method queues a message delivery request. Requests with the same key are always queued in the same lane
+    protected IMessagePublication addAsynchronousPublication(MessagePublication publication, Object key) {
+        return schedule(publication, key, 0, null, 0, false);
+    }
+
+    // this method queues a message delivery request. Requests with the same key are always queued in the same lane
+    protected IMessagePublication addAsynchronousPublication(MessagePublication publication, Object key, long timeout, TimeUnit unit) {
+        return schedule(publication, key, timeout, unit, 0, false);
+    }
+
+    // this method queues a message delivery request that expires after the given time to live
+    // or the default time to live of the bus, if the given one is 0
+    protected IMessagePublication addAsynchronousPublication(MessagePublication publication, Object key, long timeout, TimeUnit unit, long timeToLiveInNanos) {
+        return schedule(publication, key, timeout, unit, timeToLiveInNanos, false);
+    }
+
+    // schedule the asynchronous publication of a message after the given delay and then periodically, if a period is given
+    protected IScheduledPublication addScheduledPublication(T message, Object key, Integer priority, long timeToLiveInNanos, long delay, long period, TimeUnit unit) {
+        ScheduledPublication scheduled = new ScheduledPublication(this, message, key, priority, timeToLiveInNanos, period > 0);
+        if (!shutdown.get()) {
+            try {
+                scheduled.setTimeout(timer.schedule(scheduled, delay, period, unit));
+                return scheduled;
+            } catch (RejectedExecutionException e) {
+                // the timer has been stopped by a concurrent shutdown
+            }
+        }
+        // rejected like any other publication after shutdown
+        MessagePublication publication = createMessagePublication(message);
+        rejectedMessages.incrementAndGet();
+        publication.markDiscarded(new PublicationError(null, "Message rejected because the bus has been shut down", null, null, publication));
+        scheduled.reject(publication);
+        return scheduled;
+    }
+
+    // called by the timer thread whenever a scheduled publication fires
+    MessagePublication createScheduledPublication(Object message) {
+        return createMessagePublication((T) message);
+    }
+
+    // called by the timer thread whenever a scheduled publication fires. The timer never waits for space
+    // in the queue, since that would delay all other scheduled publications (see handleOverflow)
+    void publishScheduled(MessagePublication publication, Object key, long timeToLiveInNanos) {
+        schedule(publication, key, 0, null, timeToLiveInNanos, true);
+    }
+
+    // queue the publication, waiting for space no longer than the given timeout (if a unit is given)
+    // publications of the timer thread are queued without waiting for space
+    private IMessagePublication schedule(MessagePublication publication, Object key, long timeout, TimeUnit unit, long timeToLiveInNanos, boolean scheduled) {
+        // counted before checking the shutdown flag, such that shutdown sees every publisher that passed the check
+        publishers.incrementAndGet();
+        try {
+            return enqueue(publication, key, timeout, unit, timeToLiveInNanos, scheduled);
+        } finally {
+            publishers.decrementAndGet();
+        }
+    }
+
+    private IMessagePublication enqueue(MessagePublication publication, Object key, long timeout, TimeUnit unit, long timeToLiveInNanos, boolean scheduled) {
+        if (shutdown.get()) {
+            rejectedMessages.incrementAndGet();
+            publication.markDiscarded(new PublicationError(null, "Message rejected because the bus has been shut down", null, null, publication));
+            return publication;
+        }
+        long now = System.nanoTime();
+        publication.markQueued(now);
+        if (timeToLiveInNanos > 0) {
+            publication.expireAt(now + timeToLiveInNanos);
+        } else if (messageTimeToLiveInNanos > 0) {
+            publication.expireAt(now + messageTimeToLiveInNanos);
+        }
+        if (!publication.hasPriority()) {
+            publication.setPriority(getMessagePriority(publication.getMessage().getClass()));
+        }
+        IMessagePublication entry = publication;
+        if (conflatedPublications != null && key != null) {
+            ConflatedPublication conflated = conflate(publication, key);
+            if (conflated == null) {
+                return publication.markScheduled();
+            }
+            entry = conflated;
+        }
+        BlockingQueue<IMessagePublication> queue = getQueue(key);
         try {
-            return pendingMessages.offer(publication, timeout, unit)
-                    ? publication.markScheduled()
-                    : publication;
+            boolean queued;
+            if (unit != null) {
+                queued = queue.offer(entry, timeout, unit);
+            } else if (overflowPolicy == OverflowPolicy.Block && !scheduled) {
+                queue.put(entry);
+                queued = true;
+            } else {
+                queued = queue.offer(entry);
+            }
+            if (!queued) {
+                return handleOverflow(queue, entry, publication, scheduled);
+            }
+            if (maxDispatchers > minDispatchers) {
+                checkQueueDepth(queue);
+            }
+            return queued(queue, entry, publication);
         } catch (InterruptedException e) {
+            discard(entry, "Interrupted while adding an asynchronous message publication");
             handlePublicationError(new InternalPublicationError(e, "Error while adding an asynchronous message publication", publication));
             return publication;
         }
     }
 
-    @Override
-    protected void finalize() throws Throwable {
-        super.finalize();
-        shutdown();
+    // get the priority of a message class as defined by its @MessagePriority annotation
+    private int getMessagePriority(Class messageType) {
+        Integer priority = messagePriorities.get(messageType);
+        if (priority == null) {
+            MessagePriority annotation = (MessagePriority) messageType.getAnnotation(MessagePriority.class);
+            priority = annotation != null ? annotation.value() : 0;
+            messagePriorities.put(messageType, priority);
+        }
+        return priority;
+    }
+
+    // replace the message of the pending entry with the same key, if there is one
+    // returns the new entry that needs to be queued or null, if the message of a pending entry has been replaced
+    private ConflatedPublication conflate(MessagePublication publication, Object key) {
+        while (true) {
+            ConflatedPublication pending = conflatedPublications.get(key);
+            MessagePublication replaced = pending != null ? pending.replace(publication) : null;
+            if (replaced != null) {
+                conflatedMessages.incrementAndGet();
+                replaced.markDiscarded(new PublicationError(null, "Message replaced by a newer message with the same key", null, null, replaced));
+                return null;
+            }
+            // there is no pending entry or its dispatch has already started
+            ConflatedPublication entry = new ConflatedPublication(key, publication, conflatedPublications);
+            if (pending == null
+                    ? conflatedPublications.putIfAbsent(key, entry) == null
+                    : conflatedPublications.replace(key, pending, entry)) {
+                return entry;
+            }
+        }
+    }
+
+    // apply the overflow policy to a publication that did not fit into the queue
+    private IMessagePublication handleOverflow(BlockingQueue<IMessagePublication> queue, IMessagePublication entry, MessagePublication publication, boolean scheduled) {
+        if (scheduled && overflowPolicy != OverflowPolicy.DropNewest && overflowPolicy != OverflowPolicy.DropOldest) {
+            // the timer thread must neither wait for space, nor run handlers, nor fail: the message is rejected
+            rejectedMessages.incrementAndGet();
+            discard(entry, "Scheduled message rejected because the message queue is full");
+            return publication;
+        }
+        switch (overflowPolicy) {
+            case DropNewest:
+                droppedMessages.incrementAndGet();
+                discard(entry, "Message dropped because the message queue is full");
+                return publication;
+            case DropOldest:
+                while (!queue.offer(entry)) {
+                    IMessagePublication oldest;
+                    if (queue instanceof MultiLevelPriorityQueue) {
+                        // the oldest entry of lowest priority, not the next one to be dispatched
+                        oldest = ((MultiLevelPriorityQueue<IMessagePublication>) queue).pollLowest(evictable);
+                        if (oldest == null && !queue.offer(entry)) {
+                            // only stop signals are pending
+                            droppedMessages.incrementAndGet();
+                            discard(entry, "Message dropped because the message queue is full");
+                            return publication;
+                        }
+                    } else {
+                        oldest = queue.poll();
+                    }
+                    if (oldest != null) {
+                        droppedMessages.incrementAndGet();
+                        discard(oldest, "Message dropped in favour of a newer message because the message queue is full");
+                    }
+                }
+                return queued(queue, entry, publication);
+            case CallerRuns:
+                rejectedMessages.incrementAndGet();
+                try {
+                    entry.execute();
+                } catch (Throwable t) {
+                    handlePublicationError(new InternalPublicationError(t, "Error in synchronous dispatch of a rejected message", publication));
+                }
+                return publication;
+            case FailFast:
+                rejectedMessages.incrementAndGet();
+                discard(entry, "Message rejected because the message queue is full");
+                throw new RejectedExecutionException("Message rejected because the message queue is full: " + publication.getMessage());
+            default:
+                // blocking publication with a timeout
+                rejectedMessages.incrementAndGet();
+                discard(entry, "Message rejected because the message queue is full");
+                return publication;
+        }
+    }
+
+    // mark a queued publication as scheduled. A publisher that has been waiting for space may have queued its entry after
+    // the shutdown discarded the remaining messages. No dispatcher will take it, so the publisher discards the pending
+    // entries itself. Entries are taken from the queue before they are discarded, such that none is discarded twice
+    private IMessagePublication queued(BlockingQueue<IMessagePublication> queue, IMessagePublication entry, MessagePublication publication) {
+        if (terminated) {
+            discardPending(queue, new ArrayList<IMessagePublication>());
+        }
+        return publication.markScheduled();
+    }
+
+    // discard all entries of the queue and add their publications to the given list
+    private void discardPending(BlockingQueue<IMessagePublication> queue, List<IMessagePublication> undelivered) {
+        IMessagePublication entry;
+        while ((entry = queue.poll()) != null) {
+            if (entry != stopSignal) {
+                discard(entry, "Message discarded because the bus has been shut down");
+                MessagePublication publication = unwrap(entry);
+                undelivered.add(publication != null ? publication : entry);
+            }
+        }
+    }
+
+    // finish a queue entry that will never be dispatched
+    private void discard(IMessagePublication entry, String reason) {
+        MessagePublication publication = unwrap(entry);
+        if (publication != null) {
+            publication.markDiscarded(new PublicationError(null, reason, null, null, publication));
+        }
     }
 
+    // get the publication of a queue entry. Conflated entries are closed, such that their message can not be replaced anymore
+    private MessagePublication unwrap(IMessagePublication entry) {
+        return entry instanceof ConflatedPublication
+                ? ((ConflatedPublication) entry).close()
+                : entry instanceof MessagePublication ? (MessagePublication) entry : null;
+    }
+
+    // get the lane of the given key, messages without key are distributed round robin
+    private BlockingQueue<IMessagePublication> getQueue(Object key) {
+        if (pendingMessages.size() == 1) {
+            return pendingMessages.get(0);
+        }
+        int hash = key != null ? key.hashCode() : nextLane.getAndIncrement();
+        hash ^= hash >>> 16;
+        return pendingMessages.get((hash & Integer.MAX_VALUE) % pendingMessages.size());
+    }
+
+    /**
+     * Shut down the bus immediately. Messages that have not been dispatched yet are discarded
+     * (see {@link #shutdown(long, TimeUnit)}).
+     */
     @Override
     public void shutdown() {
+        shutdown(0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Shut down the bus within the configured shutdown timeout
+     * (see {@link Feature.AsynchronousMessageDispatch#setShutdownTimeout(long, TimeUnit)})
+     */
+    @Override
+    public void close() {
+        shutdown(shutdownTimeoutInNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<IMessagePublication> shutdown(long timeout, TimeUnit unit) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        boolean interrupted = false;
+        boolean stopping;
+        int numberOfDispatchers;
+        synchronized (dispatcherLock) {
+            // no dispatcher can be added once the flag is set, all running dispatchers are counted
+            stopping = shutdown.compareAndSet(false, true);
+            numberOfDispatchers = dispatchers.size();
+        }
+        if (stopping) {
+            timer.stop();
+            // publishers that passed the shutdown check queue their messages before the stop signals
+            while (publishers.get() > 0 && deadline - System.nanoTime() > 0) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+            // stop each dispatcher when it has taken all messages that were queued before
+            try {
+                if (pendingMessages.size() > 1) {
+                    for (BlockingQueue<IMessagePublication> lane : pendingMessages) {
+                        lane.offer(stopSignal, deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    }
+                } else {
+                    for (int i = numberOfDispatchers; i > 0; i--) {
+                        pendingMessages.get(0).offer(stopSignal, deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    }
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        // wait for the dispatchers to finish, unless shutdown is called by a dispatcher
+        try {
+            for (Thread dispatcher : dispatchers) {
+                if (dispatcher != Thread.currentThread()) {
+                    TimeUnit.NANOSECONDS.timedJoin(dispatcher, deadline - System.nanoTime());
+                }
+            }
+        } catch (InterruptedException e) {
+            interrupted = true;
+        }
+        terminated = true;
         for (Thread dispatcher : dispatchers) {
             dispatcher.interrupt();
         }
-        if(executor != null) executor.shutdown();
+        // discard the messages that have not been dispatched in time
+        List<IMessagePublication> undelivered = new ArrayList<IMessagePublication>();
+        for (BlockingQueue<IMessagePublication> queue : pendingMessages) {
+            discardPending(queue, undelivered);
+        }
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return undelivered;
+    }
+
+    /**
+     * Check whether the bus has been shut down, i.e. it does not accept asynchronous publications anymore
+     */
+    public boolean isShutdown() {
+        return shutdown.get();
+    }
+
+    /**
+     * Get the number of asynchronously published messages that have been rejected because the message queue was full,
+     * i.e. messages that timed out while blocking, were dispatched by the publisher or caused an exception
+     * (see {@link OverflowPolicy})
+     */
+    public long getRejectedMessageCount() {
+        return rejectedMessages.get();
+    }
+
+    /**
+     * Get the number of asynchronously published messages that have been dropped because the message queue was full
+     * (see {@link OverflowPolicy#DropNewest} and {@link OverflowPolicy#DropOldest})
+     */
+    public long getDroppedMessageCount() {
+        return droppedMessages.get();
+    }
+
+    /**
+     * Get the number of asynchronously published messages that have been replaced by a newer message with the same key
+     * before they were dispatched (see {@link Feature.AsynchronousMessageDispatch#setConflateByKey(boolean)})
+     */
+    public long getConflatedMessageCount() {
+        return conflatedMessages.get();
+    }
+
+    /**
+     * Get the number of asynchronously published messages that have expired before they were dispatched
+     * (see {@link Feature.AsynchronousMessageDispatch#setMessageTimeToLive(long, TimeUnit)})
+     */
+    public long getExpiredMessageCount() {
+        return expiredMessages.get();
+    }
+
+    /**
+     * Get the number of delayed and periodic publications that have neither fired nor been cancelled.
+     * Periodic publications are pending until they are cancelled.
+     */
+    public long getNumberOfScheduledPublications() {
+        return timer.getPendingTimeouts();
+    }
+
+    /**
+     * Get the number of threads that currently dispatch asynchronous messages
+     * (see {@link Feature.AsynchronousMessageDispatch#setMaxNumberOfMessageDispatchers(int)})
+     */
+    public int getNumberOfMessageDispatchers() {
+        return activeDispatchers.get();
     }
 
     @Override
     public boolean hasPendingMessages() {
-        return pendingMessages.size() > 0;
+        for (BlockingQueue<IMessagePublication> queue : pendingMessages) {
+            if (queue.size() > 0) {
+                return true;
+            }
+        }
+        return batchedMessages.get() > 0;
     }
 
 }
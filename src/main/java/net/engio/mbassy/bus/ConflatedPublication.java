@@ -0,0 +1,130 @@
+package net.engio.mbassy.bus;
+
+import net.engio.mbassy.bus.common.ICompletionCallback;
+import net.engio.mbassy.bus.error.PublicationError;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The queue entry of a pending publication whose message may be replaced by newer messages with the same key
+ * (see {@link net.engio.mbassy.bus.config.Feature.AsynchronousMessageDispatch#setConflateByKey(boolean)}).
+ * <p/>
+ * The entry keeps its position in the queue. Once a dispatcher starts to execute it, the entry is closed and
+ * removed from the pending entries, such that newer messages with the same key will be queued in a new entry.
+ */
+final class ConflatedPublication implements IMessagePublication {
+
+    private final Object key;
+
+    // the pending entries by key, shared by all entries of the same bus
+    private final ConcurrentMap<Object, ConflatedPublication> pending;
+
+    private MessagePublication latest;
+
+    private boolean closed = false;
+
+    ConflatedPublication(Object key, MessagePublication publication, ConcurrentMap<Object, ConflatedPublication> pending) {
+        this.key = key;
+        this.latest = publication;
+        this.pending = pending;
+    }
+
+    /**
+     * Replace the message of this entry with a newer one
+     *
+     * @return The replaced publication or null, if this entry is closed and can not be changed anymore
+     */
+    synchronized MessagePublication replace(MessagePublication publication) {
+        if (closed) {
+            return null;
+        }
+        MessagePublication replaced = latest;
+        latest = publication;
+        return replaced;
+    }
+
+    /**
+     * Prevent any further replacement and remove this entry from the pending entries
+     *
+     * @return The latest publication of this entry
+     */
+    MessagePublication close() {
+        MessagePublication publication;
+        synchronized (this) {
+            closed = true;
+            publication = latest;
+        }
+        pending.remove(key, this);
+        return publication;
+    }
+
+    private synchronized MessagePublication latest() {
+        return latest;
+    }
+
+    @Override
+    public void execute() {
+        close().execute();
+    }
+
+    @Override
+    public boolean isFinished() {
+        return latest().isFinished();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return latest().isRunning();
+    }
+
+    @Override
+    public boolean isScheduled() {
+        return latest().isScheduled();
+    }
+
+    @Override
+    public boolean hasError() {
+        return latest().hasError();
+    }
+
+    @Override
+    public PublicationError getError() {
+        return latest().getError();
+    }
+
+    @Override
+    public boolean isDeadMessage() {
+        return latest().isDeadMessage();
+    }
+
+    @Override
+    public boolean isFilteredMessage() {
+        return latest().isFilteredMessage();
+    }
+
+    @Override
+    public int getPriority() {
+        return latest().getPriority();
+    }
+
+    @Override
+    public Object getMessage() {
+        return latest().getMessage();
+    }
+
+    @Override
+    public void await() throws InterruptedException {
+        latest().await();
+    }
+
+    @Override
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        return latest().await(timeout, unit);
+    }
+
+    @Override
+    public IMessagePublication onCompletion(ICompletionCallback callback) {
+        return latest().onCompletion(callback);
+    }
+}
@@ -1,23 +1,36 @@
 package net.engio.mbassy.bus;
 
+import net.engio.mbassy.bus.common.ICompletionCallback;
 import net.engio.mbassy.bus.error.PublicationError;
+import net.engio.mbassy.common.IPrioritized;
 import net.engio.mbassy.subscription.Subscription;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * A message publication is created for each asynchronous message dispatch. It reflects the state
  * of the corresponding message publication process, i.e. provides information whether the
  * publication was successfully scheduled, is currently running etc.
  * <p/>
- * A message publication lives within a single thread. It is not designed in a thread-safe manner -> not eligible to
- * be used in multiple threads simultaneously .
+ * A message publication is executed ({@link #execute()}) by a single thread, the publishing thread or a dispatcher.
+ * All other methods can be called from any thread. In particular, other threads can wait for the publication to
+ * finish ({@link #await()}, {@link #await(long, TimeUnit)}) or register a callback ({@link #onCompletion(ICompletionCallback)}).
+ * A publication is finished when all handlers of the message have been invoked, including handlers that are
+ * invoked asynchronously.
+ * <p/>
+ * Implementations must be thread-safe accordingly.
  *
  * @author bennidi
  *         Date: 11/16/12
  */
-public interface IMessagePublication {
+public interface IMessagePublication extends IPrioritized {
 
     void execute();
 
+    /**
+     * Check whether all handlers of the message have been invoked, including the asynchronous ones.
+     * A publication that has been discarded without delivery (see {@link #getError()}) is finished as well.
+     */
     boolean isFinished();
 
     boolean isRunning();
@@ -34,4 +47,27 @@ public interface IMessagePublication {
 
     Object getMessage();
 
+    /**
+     * Wait until the publication has finished
+     *
+     * @throws InterruptedException If the waiting thread has been interrupted
+     */
+    void await() throws InterruptedException;
+
+    /**
+     * Wait until the publication has finished or the timeout has elapsed
+     *
+     * @return True, if the publication has finished
+     * @throws InterruptedException If the waiting thread has been interrupted
+     */
+    boolean await(long timeout, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * Register a callback that is notified when the publication has finished. If the publication
+     * has already finished, the callback is called immediately by the calling thread.
+     *
+     * @return This publication
+     */
+    IMessagePublication onCompletion(ICompletionCallback callback);
+
 }
@@ -0,0 +1,40 @@
+package net.engio.mbassy.bus;
+
+/**
+ * A scheduled publication publishes a message asynchronously after a delay and, if it is periodic, repeatedly
+ * at a fixed rate until it is cancelled
+ * (see {@link net.engio.mbassy.bus.publication.ISyncAsyncPublicationCommand#after(long, java.util.concurrent.TimeUnit)}).
+ * <p/>
+ * Each time the scheduled publication fires, a new message publication is queued for asynchronous dispatch.
+ * <p/>
+ * A message that is scheduled after the bus has been shut down is rejected: the scheduled publication is cancelled
+ * and never fires, and its last publication is finished with an error.
+ */
+public interface IScheduledPublication {
+
+    /**
+     * Prevent any further publication of the message. Publications that have been queued already are still dispatched.
+     *
+     * @return True, if the publication was waiting to fire. False, if it has been cancelled already or it was
+     * not periodic and has fired already.
+     */
+    boolean cancel();
+
+    boolean isCancelled();
+
+    boolean isPeriodic();
+
+    /**
+     * Get the number of times the message has been published so far
+     */
+    long getNumberOfPublications();
+
+    /**
+     * Get the message publication of the last time the scheduled publication fired
+     *
+     * @return The last message publication or null, if the scheduled publication has not fired yet
+     */
+    IMessagePublication getLastPublication();
+
+    Object getMessage();
+}
@@ -53,6 +53,40 @@ public class MBassador<T> extends AbstractSyncAsyncMessageBus<T, SyncAsyncPostCo
         return addAsynchronousPublication(createMessagePublication(message), timeout, unit);
     }
 
+    /**
+     * Publish the message of the given post command asynchronously, using its key, priority and time to live.
+     * The call waits for space in the queue according to the overflow policy.
+     */
+    public IMessagePublication postAsync(SyncAsyncPostCommand<T> command) {
+        return addAsynchronousPublication(createPublication(command), command.getKey(), 0, null, command.getTimeToLiveInNanos());
+    }
+
+    /**
+     * Publish the message of the given post command asynchronously, using its key, priority and time to live.
+     * The message is rejected if there is no space in the queue within the given timeout.
+     */
+    public IMessagePublication postAsync(SyncAsyncPostCommand<T> command, long timeout, TimeUnit unit) {
+        return addAsynchronousPublication(createPublication(command), command.getKey(), timeout, unit, command.getTimeToLiveInNanos());
+    }
+
+    /**
+     * Publish the message of the given post command asynchronously after the given delay and then repeatedly with
+     * the given period, if it is greater than 0. The key, the priority and the time to live of the command apply
+     * to each publication.
+     */
+    public IScheduledPublication postScheduled(SyncAsyncPostCommand<T> command, long delay, long period, TimeUnit unit) {
+        return addScheduledPublication(command.getMessage(), command.getKey(), command.hasPriority() ? command.getPriority() : null,
+                command.getTimeToLiveInNanos(), delay, period, unit);
+    }
+
+    private MessagePublication createPublication(SyncAsyncPostCommand<T> command) {
+        MessagePublication publication = createMessagePublication(command.getMessage());
+        if (command.hasPriority()) {
+            publication.setPriority(command.getPriority());
+        }
+        return publication;
+    }
+
 
     /**
      * Synchronously publish a message to all registered listeners (this includes listeners defined for super types)
@@ -2,34 +2,76 @@ package net.engio.mbassy.bus;
 
 import net.engio.mbassy.bus.common.DeadMessage;
 import net.engio.mbassy.bus.common.FilteredMessage;
+import net.engio.mbassy.bus.common.ICompletionCallback;
+import net.engio.mbassy.bus.common.PubSubSupport;
+import net.engio.mbassy.bus.error.InternalPublicationError;
 import net.engio.mbassy.bus.error.PublicationError;
 import net.engio.mbassy.subscription.Subscription;
 
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
  * A message publication is created for each asynchronous message dispatch. It reflects the state
  * of the corresponding message publication process, i.e. provides information whether the
  * publication was successfully scheduled, is currently running etc.
  * <p/>
- * A message publication lives within a single thread. It is not designed in a thread-safe manner -> not eligible to
- * be used in multiple threads simultaneously .
+ * A message publication is executed by a single thread, the publishing thread or a dispatcher, and must not be
+ * executed more than once. All other methods are thread-safe: its state can be queried from any thread, any number of
+ * threads can wait for it to finish ({@link #await()}, {@link #await(long, TimeUnit)}) and register completion callbacks
+ * ({@link #onCompletion(ICompletionCallback)}), and asynchronous handler invocations report their completion and
+ * errors from their own threads.
+ * <p/>
+ * The publication finishes when the publishing (or dispatching) thread and all asynchronous handler invocations
+ * are done. Only then it wakes up waiting threads and notifies the completion callbacks.
  *
  * @author bennidi
  *         Date: 11/16/12
  */
 public class MessagePublication implements IMessagePublication {
 
-    private final Collection<Subscription> subscriptions;
+    // the subscriptions are shared with other publications (see SubscriptionManager) and must be copied before modification
+    private Subscription[] subscriptions;
     private final Object message;
     // message publications can be referenced by multiple threads to query publication progress
     private volatile State state = State.Initial;
     private volatile boolean dispatched = false;
     private final BusRuntime runtime;
-    private PublicationError error = null;
+    // errors can be reported by asynchronous handlers
+    private volatile PublicationError error = null;
+
+    private static final AtomicReferenceFieldUpdater<MessagePublication, State> StateUpdater
+            = AtomicReferenceFieldUpdater.newUpdater(MessagePublication.class, State.class, "state");
+
+    private static final AtomicIntegerFieldUpdater<MessagePublication> PendingUpdater
+            = AtomicIntegerFieldUpdater.newUpdater(MessagePublication.class, "pending");
+
+    // the number of unfinished executions: the execution of this publication and all asynchronous handler invocations
+    private volatile int pending = 1;
+
+    // set as soon as any thread waits or registers a callback, such that completion can skip the notification otherwise
+    private volatile boolean observed = false;
+
+    // guarded by this
+    private List<ICompletionCallback> callbacks;
+
+    // the time (System.nanoTime()) at which the publication has been queued for asynchronous dispatch
+    private long queuedAt;
+
+    // the time (System.nanoTime()) after which the publication expires unless it has been dispatched, if expiring
+    private long expiresAt;
+    private boolean expiring = false;
 
+    // the priority of asynchronous dispatch, set before the publication is queued
+    private int priority = 0;
+    private boolean hasPriority = false;
 
-    protected MessagePublication(BusRuntime runtime, Collection<Subscription> subscriptions, Object message, State initialState) {
+
+    protected MessagePublication(BusRuntime runtime, Subscription[] subscriptions, Object message, State initialState) {
         this.runtime = runtime;
         this.subscriptions = subscriptions;
         this.message = message;
@@ -37,33 +79,148 @@ public class MessagePublication implements IMessagePublication {
     }
 
     public boolean add(Subscription subscription) {
-        return subscriptions.add(subscription);
+        int position = Arrays.binarySearch(subscriptions, subscription, Subscription.SubscriptionByPriorityDesc);
+        if (position >= 0) {
+            return false; // already contained
+        }
+        // insert the subscription into a copy, keeping the order by priority
+        position = -position - 1;
+        Subscription[] extended = new Subscription[subscriptions.length + 1];
+        System.arraycopy(subscriptions, 0, extended, 0, position);
+        extended[position] = subscription;
+        System.arraycopy(subscriptions, position, extended, position + 1, subscriptions.length - position);
+        subscriptions = extended;
+        return true;
     }
 
     /*
-    TODO: document state transitions
+    State transitions: Initial -> (Scheduled) -> Running -> Finished
+    A publication becomes Finished when execute() and all asynchronous handler invocations are done
+    or when it is discarded without execution.
      */
     public void execute() {
         state = State.Running;
-        for (Subscription sub : subscriptions) {
-           sub.publish(this, message);
+        try {
+            for (int i=0, n=subscriptions.length; i<n; i++) {
+                subscriptions[i].publish(this, message);
+            }
+            // This part is necessary to support the feature of publishing a DeadMessage or FilteredMessage
+            // in case that the original message has not made it to any listener.
+            // This happens if subscriptions are empty (due to GC of weak listeners or explicit desubscription)
+            // or if configured filters do not let a message pass. The flag is set by the dispatchers.
+            // META: This seems to be a suboptimal design
+            if (!dispatched) {
+                if (!isFilteredMessage() && !isDeadMessage()) {
+                    runtime.getProvider().publish(new FilteredMessage(message));
+                } else if (!isDeadMessage()) {
+                    runtime.getProvider().publish(new DeadMessage(message));
+                }
+
+            }
+        } finally {
+            // the publication is finished as soon as all asynchronous handlers are done as well
+            removePendingHandler();
+        }
+    }
+
+    /**
+     * Register a handler invocation that will run asynchronously. The publication does not finish
+     * before the invocation is done (see {@link #removePendingHandler()}).
+     */
+    public void addPendingHandler() {
+        PendingUpdater.incrementAndGet(this);
+    }
+
+    /**
+     * Unregister a finished asynchronous handler invocation
+     */
+    public void removePendingHandler() {
+        if (PendingUpdater.decrementAndGet(this) == 0) {
+            complete();
         }
+    }
+
+    /**
+     * Finish this publication without execution, e.g. because the message could not be queued.
+     *
+     * @param error The reason why the message has not been delivered
+     */
+    public void markDiscarded(PublicationError error) {
+        markError(error);
+        removePendingHandler();
+    }
+
+    private void complete() {
         state = State.Finished;
-        // This part is necessary to support the feature of publishing a DeadMessage or FilteredMessage
-        // in case that the original message has not made it to any listener.
-        // This happens if subscriptions are empty (due to GC of weak listeners or explicit desubscription)
-        // or if configured filters do not let a message pass. The flag is set by the dispatchers.
-        // META: This seems to be a suboptimal design
-        if (!dispatched) {
-            if (!isFilteredMessage() && !isDeadMessage()) {
-                runtime.getProvider().publish(new FilteredMessage(message));
-            } else if (!isDeadMessage()) {
-                runtime.getProvider().publish(new DeadMessage(message));
+        if (!observed) {
+            return;
+        }
+        List<ICompletionCallback> finished;
+        synchronized (this) {
+            finished = callbacks;
+            callbacks = null;
+            notifyAll();
+        }
+        if (finished != null) {
+            for (ICompletionCallback callback : finished) {
+                invoke(callback);
             }
+        }
+    }
 
+    private void invoke(ICompletionCallback callback) {
+        try {
+            callback.completed(this);
+        } catch (Throwable t) {
+            PubSubSupport provider = runtime.getProvider();
+            if (provider instanceof AbstractPubSubSupport) {
+                ((AbstractPubSubSupport) provider).handlePublicationError(new InternalPublicationError(t, "Error in completion callback", this));
+            }
         }
     }
 
+    @Override
+    public void await() throws InterruptedException {
+        synchronized (this) {
+            observed = true;
+            while (!isFinished()) {
+                wait();
+            }
+        }
+    }
+
+    @Override
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (this) {
+            observed = true;
+            while (!isFinished()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            return true;
+        }
+    }
+
+    @Override
+    public IMessagePublication onCompletion(ICompletionCallback callback) {
+        synchronized (this) {
+            observed = true;
+            if (!isFinished()) {
+                if (callbacks == null) {
+                    callbacks = new ArrayList<ICompletionCallback>(2);
+                }
+                callbacks.add(callback);
+                return this;
+            }
+        }
+        invoke(callback);
+        return this;
+    }
+
     public boolean isFinished() {
         return state.equals(State.Finished);
     }
@@ -92,10 +249,47 @@ public class MessagePublication implements IMessagePublication {
         this.error = error;
     }
 
+    // called before the publication is queued, the queue publishes the value to the dispatchers
+    void markQueued(long time) {
+        queuedAt = time;
+    }
+
+    long getQueuedAt() {
+        return queuedAt;
+    }
+
+    // called before the publication is queued, the queue publishes the value to the dispatchers
+    void expireAt(long time) {
+        expiresAt = time;
+        expiring = true;
+    }
+
+    boolean isExpired() {
+        return expiring && System.nanoTime() - expiresAt > 0;
+    }
+
+    /**
+     * Get the priority of asynchronous dispatch (see {@link net.engio.mbassy.listener.MessagePriority})
+     */
+    @Override
+    public int getPriority() {
+        return priority;
+    }
+
+    // called before the publication is queued, the queue publishes the value to the dispatchers
+    void setPriority(int priority) {
+        this.priority = priority;
+        this.hasPriority = true;
+    }
+
+    boolean hasPriority() {
+        return hasPriority;
+    }
+
+    // the publication may already be running or finished when it is marked, since a dispatcher can take it from the
+    // queue immediately. Only an initial publication becomes scheduled, later states are never overwritten
     public MessagePublication markScheduled() {
-        if (state.equals(State.Initial)) {
-            state = State.Scheduled;
-        }
+        StateUpdater.compareAndSet(this, State.Initial, State.Scheduled);
         return this;
     }
 
@@ -117,7 +311,7 @@ public class MessagePublication implements IMessagePublication {
 
     public static class Factory {
 
-        public MessagePublication createPublication(BusRuntime runtime, Collection<Subscription> subscriptions, Object message) {
+        public MessagePublication createPublication(BusRuntime runtime, Subscription[] subscriptions, Object message) {
             return new MessagePublication(runtime, subscriptions, message, State.Initial);
         }
 
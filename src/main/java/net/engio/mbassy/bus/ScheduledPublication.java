@@ -0,0 +1,86 @@
+package net.engio.mbassy.bus;
+
+import net.engio.mbassy.common.HashedTimingWheel;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The timer task of a delayed or periodic publication. Each time the task runs, the timer thread queues
+ * a new message publication, such that the message is dispatched by the dispatcher threads as usual.
+ */
+final class ScheduledPublication implements IScheduledPublication, Runnable {
+
+    private final AbstractSyncAsyncMessageBus bus;
+    private final Object message;
+    private final Object key;
+    private final Integer priority;
+    private final long timeToLiveInNanos;
+    private final boolean periodic;
+
+    private final AtomicLong publications = new AtomicLong();
+
+    private volatile IMessagePublication lastPublication;
+
+    // set once by the scheduling thread before any other thread can see this publication
+    private volatile HashedTimingWheel.Timeout timeout;
+
+    ScheduledPublication(AbstractSyncAsyncMessageBus bus, Object message, Object key, Integer priority, long timeToLiveInNanos, boolean periodic) {
+        this.bus = bus;
+        this.message = message;
+        this.key = key;
+        this.priority = priority;
+        this.timeToLiveInNanos = timeToLiveInNanos;
+        this.periodic = periodic;
+    }
+
+    void setTimeout(HashedTimingWheel.Timeout timeout) {
+        this.timeout = timeout;
+    }
+
+    // called instead of setTimeout if the bus has been shut down. The publication never fires and is cancelled
+    void reject(MessagePublication discarded) {
+        lastPublication = discarded;
+    }
+
+    @Override
+    public void run() {
+        MessagePublication publication = bus.createScheduledPublication(message);
+        if (priority != null) {
+            publication.setPriority(priority);
+        }
+        // visible before the publication can finish
+        lastPublication = publication;
+        publications.incrementAndGet();
+        bus.publishScheduled(publication, key, timeToLiveInNanos);
+    }
+
+    @Override
+    public boolean cancel() {
+        return timeout != null && timeout.cancel();
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return timeout == null || timeout.isCancelled();
+    }
+
+    @Override
+    public boolean isPeriodic() {
+        return periodic;
+    }
+
+    @Override
+    public long getNumberOfPublications() {
+        return publications.get();
+    }
+
+    @Override
+    public IMessagePublication getLastPublication() {
+        return lastPublication;
+    }
+
+    @Override
+    public Object getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,13 @@
+package net.engio.mbassy.bus.common;
+
+/**
+ * The expired message event is published whenever an asynchronously published message
+ * has not been dispatched within its time to live. The message is not delivered to its handlers.
+ */
+public final class ExpiredMessage extends PublicationEvent {
+
+    public ExpiredMessage(Object message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,26 @@
+package net.engio.mbassy.bus.common;
+
+import net.engio.mbassy.bus.IMessagePublication;
+
+import java.util.List;
+
+/**
+ * A batch observer is notified by the threads of asynchronous message dispatch whenever they start and finish
+ * the processing of a batch of message publications (see
+ * {@link net.engio.mbassy.bus.config.Feature.AsynchronousMessageDispatch#setBatchSize(int)}).
+ * It can be used to collect metrics or to flush work that handlers accumulated during a batch.
+ * <p/>
+ * The observer is called from all dispatcher threads concurrently. The batches must not be modified.
+ */
+public interface IBatchObserver {
+
+    /**
+     * Called by the dispatcher thread before the first publication of the batch is executed
+     */
+    void beforeBatch(List<IMessagePublication> batch);
+
+    /**
+     * Called by the dispatcher thread after all publications of the batch have been executed
+     */
+    void afterBatch(List<IMessagePublication> batch);
+}
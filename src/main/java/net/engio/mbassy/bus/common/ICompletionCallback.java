@@ -0,0 +1,22 @@
+package net.engio.mbassy.bus.common;
+
+import net.engio.mbassy.bus.IMessagePublication;
+
+/**
+ * A completion callback is notified when a message publication has finished, i.e. when all handlers of the message
+ * have been invoked, including handlers that are invoked asynchronously (see
+ * {@link IMessagePublication#onCompletion(ICompletionCallback)}).
+ * <p/>
+ * The callback is called by the thread that finished the publication, which might be the publishing thread,
+ * a dispatcher thread or a thread of asynchronous handler invocation. It should therefore return quickly.
+ */
+public interface ICompletionCallback {
+
+    /**
+     * Called once when the publication has finished
+     *
+     * @param publication The finished publication. Use {@link IMessagePublication#hasError()} to check whether
+     *                    any handler failed or the message has not been delivered at all.
+     */
+    void completed(IMessagePublication publication);
+}
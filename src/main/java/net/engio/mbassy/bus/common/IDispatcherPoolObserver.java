@@ -0,0 +1,26 @@
+package net.engio.mbassy.bus.common;
+
+/**
+ * A dispatcher pool observer is notified whenever an elastic message bus starts or retires a thread of
+ * asynchronous message dispatch (see
+ * {@link net.engio.mbassy.bus.config.Feature.AsynchronousMessageDispatch#setMaxNumberOfMessageDispatchers(int)}).
+ * It can be used to monitor how the bus adapts to the load.
+ * <p/>
+ * The observer is called by publishing threads and dispatcher threads concurrently and should return quickly.
+ */
+public interface IDispatcherPoolObserver {
+
+    /**
+     * Called after a dispatcher has been added because of a growing queue or long waiting messages
+     *
+     * @param numberOfDispatchers The number of dispatchers including the new one
+     */
+    void dispatcherAdded(int numberOfDispatchers);
+
+    /**
+     * Called when a dispatcher retires after being idle for the keep alive time
+     *
+     * @param numberOfDispatchers The number of remaining dispatchers
+     */
+    void dispatcherRetired(int numberOfDispatchers);
+}
@@ -1,7 +1,12 @@
 package net.engio.mbassy.bus.common;
 
+import net.engio.mbassy.bus.IMessagePublication;
 import net.engio.mbassy.bus.publication.ISyncAsyncPublicationCommand;
 
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 /**
  * A message bus offers facilities for publishing messages to the message handlers of registered listeners.
  * A message publication starts when an object is send to the bus using one of the its publication methods.
@@ -52,11 +57,16 @@ import net.engio.mbassy.bus.publication.ISyncAsyncPublicationCommand;
  * NOTE: Generic type parameters of messages will not be taken into account, e.g. a List<Long> will
  * get dispatched to all message handlers that take an instance of List as their parameter
  *
+ * <p/>
+ * A bus owns threads for asynchronous message dispatch and handler invocation. It must be shut down
+ * explicitly when it is no longer used, either immediately using {@link #shutdown()} or after dispatching the pending
+ * messages using {@link #shutdown(long, TimeUnit)} or {@link #close()}.
+ *
  * @author bennidi
  * Date: 2/8/12
  */
 public interface IMessageBus<T, P extends ISyncAsyncPublicationCommand>
-        extends GenericMessagePublicationSupport<T, P>{
+        extends GenericMessagePublicationSupport<T, P>, Closeable {
 
     /**
      * {@inheritDoc}
@@ -78,5 +88,23 @@ public interface IMessageBus<T, P extends ISyncAsyncPublicationCommand>
      */
     void shutdown();
 
+    /**
+     * Shut down the bus after dispatching the pending asynchronous messages. The bus stops accepting asynchronous
+     * publications immediately and cancels all delayed and periodic publications. The dispatcher threads continue
+     * until they have dispatched all messages that have been queued before, then the executor of asynchronous handlers
+     * is shut down. The call waits for both no longer than the given timeout.
+     *
+     * @return The publications that have not been dispatched within the timeout. They have been discarded and
+     * finished with an error.
+     */
+    List<IMessagePublication> shutdown(long timeout, TimeUnit unit);
+
+    /**
+     * Shut down the bus after dispatching the pending asynchronous messages, waiting no longer than
+     * a timeout that depends on the configuration of the bus (see {@link #shutdown(long, TimeUnit)})
+     */
+    @Override
+    void close();
+
 
 }
@@ -0,0 +1,132 @@
+package net.engio.mbassy.bus.common;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A wait strategy defines how the threads of asynchronous message dispatch wait for new messages.
+ * Strategies that do not block trade CPU time for lower latency: A blocked thread needs to be woken up
+ * for each new message, which usually takes tens of microseconds. A spinning thread picks up the message immediately.
+ * <p/>
+ * Spinning only pays off if each spinning thread has a CPU core of its own.
+ */
+public interface IWaitStrategy {
+
+    /**
+     * Get the next element of the queue, waiting as long as necessary.
+     *
+     * @throws InterruptedException If the waiting thread has been interrupted
+     */
+    <E> E take(BlockingQueue<E> queue) throws InterruptedException;
+
+
+    /**
+     * Block on the queue until an element is available. This uses no CPU while waiting but has the highest latency.
+     */
+    final class Blocking implements IWaitStrategy {
+
+        @Override
+        public <E> E take(BlockingQueue<E> queue) throws InterruptedException {
+            return queue.take();
+        }
+    }
+
+    /**
+     * Spin and yield for a short while and sleep for the given time between retries afterwards.
+     * This uses little CPU while idle, the latency depends on the sleep time.
+     */
+    final class Sleeping implements IWaitStrategy {
+
+        private static final int Retries = 200;
+
+        private final long sleepTimeInNanos;
+
+        public Sleeping() {
+            this(100, TimeUnit.MICROSECONDS);
+        }
+
+        public Sleeping(long sleepTime, TimeUnit unit) {
+            this.sleepTimeInNanos = unit.toNanos(sleepTime);
+        }
+
+        @Override
+        public <E> E take(BlockingQueue<E> queue) throws InterruptedException {
+            E element;
+            for (int retries = 0; (element = queue.poll()) == null; retries++) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                if (retries < Retries / 2) {
+                    continue;
+                }
+                if (retries < Retries) {
+                    Thread.yield();
+                } else {
+                    LockSupport.parkNanos(sleepTimeInNanos);
+                }
+            }
+            return element;
+        }
+    }
+
+    /**
+     * Spin for a short while and yield the CPU to other threads between retries afterwards.
+     * Waiting threads never stop running.
+     */
+    final class Yielding implements IWaitStrategy {
+
+        private static final int SpinTries = 100;
+
+        @Override
+        public <E> E take(BlockingQueue<E> queue) throws InterruptedException {
+            E element;
+            for (int retries = 0; (element = queue.poll()) == null; retries++) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                if (retries >= SpinTries) {
+                    Thread.yield();
+                }
+            }
+            return element;
+        }
+    }
+
+    /**
+     * Busy spin until an element is available. The time between two retries grows exponentially up to
+     * the given maximum, such that waiting threads do not hammer the queue.
+     * This has the lowest latency but occupies a CPU core per waiting thread.
+     */
+    final class BusySpin implements IWaitStrategy {
+
+        private final long maxBackOffInNanos;
+
+        public BusySpin() {
+            this(10, TimeUnit.MICROSECONDS);
+        }
+
+        public BusySpin(long maxBackOff, TimeUnit unit) {
+            this.maxBackOffInNanos = unit.toNanos(maxBackOff);
+        }
+
+        @Override
+        public <E> E take(BlockingQueue<E> queue) throws InterruptedException {
+            E element;
+            long backOff = 1;
+            while ((element = queue.poll()) == null) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                long deadline = System.nanoTime() + backOff;
+                while (System.nanoTime() < deadline) {
+                    // spin
+                }
+                if (backOff < maxBackOffInNanos) {
+                    backOff <<= 1;
+                }
+            }
+            return element;
+        }
+    }
+}
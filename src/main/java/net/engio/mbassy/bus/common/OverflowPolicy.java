@@ -0,0 +1,44 @@
+package net.engio.mbassy.bus.common;
+
+/**
+ * The overflow policy defines what happens to a message that is published asynchronously while the queue of
+ * pending messages is full (see {@link net.engio.mbassy.bus.config.Feature.AsynchronousMessageDispatch#setOverflowPolicy(OverflowPolicy)}).
+ * Overflow policies are only relevant for bounded queues.
+ * <p/>
+ * Messages that are dropped or rejected carry a publication error (see {@link net.engio.mbassy.bus.IMessagePublication#getError()})
+ * and are counted by the message bus.
+ * <p/>
+ * Scheduled publications are queued by the timer thread, which never waits for space. Unless the policy drops
+ * messages ({@link #DropNewest} or {@link #DropOldest}), a scheduled message that does not fit into the queue is rejected.
+ */
+public enum OverflowPolicy {
+
+    /**
+     * The publishing thread waits until the queue has space for the message. If the message is published
+     * with a timeout, it is rejected when the timeout elapses. This is the default.
+     */
+    Block,
+
+    /**
+     * The message is dropped immediately, the pending messages remain unchanged.
+     */
+    DropNewest,
+
+    /**
+     * The oldest pending messages are removed from the queue until the new message fits. A
+     * {@link net.engio.mbassy.common.MultiLevelPriorityQueue} drops the oldest messages of the lowest priority first.
+     */
+    DropOldest,
+
+    /**
+     * The message is rejected from the queue and dispatched synchronously by the publishing thread,
+     * which naturally slows down the publisher.
+     */
+    CallerRuns,
+
+    /**
+     * The message is rejected and a {@link java.util.concurrent.RejectedExecutionException} is thrown to the publisher.
+     */
+    FailFast
+
+}
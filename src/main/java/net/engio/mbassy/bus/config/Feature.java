@@ -2,11 +2,18 @@ package net.engio.mbassy.bus.config;
 
 import net.engio.mbassy.bus.IMessagePublication;
 import net.engio.mbassy.bus.MessagePublication;
+import net.engio.mbassy.bus.common.IBatchObserver;
+import net.engio.mbassy.bus.common.IDispatcherPoolObserver;
+import net.engio.mbassy.bus.common.IWaitStrategy;
+import net.engio.mbassy.bus.common.OverflowPolicy;
+import net.engio.mbassy.common.MultiLevelPriorityQueue;
 import net.engio.mbassy.listener.MetadataReader;
 import net.engio.mbassy.subscription.ISubscriptionManagerProvider;
 import net.engio.mbassy.subscription.SubscriptionFactory;
 import net.engio.mbassy.subscription.SubscriptionManagerProvider;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -98,10 +105,30 @@ public interface Feature {
 
         public static final AsynchronousHandlerInvocation Default(int minThreadCount, int maxThreadCount){
             return new AsynchronousHandlerInvocation().setExecutor(new ThreadPoolExecutor(minThreadCount, maxThreadCount, 1,
-                    TimeUnit.MINUTES, new LinkedBlockingQueue<Runnable>(), MessageHandlerThreadFactory));
+                    TimeUnit.MINUTES, new LinkedBlockingQueue<Runnable>(), MessageHandlerThreadFactory))
+                    .setListenersPerTask(1);
+        }
+
+        /**
+         * Invoke each asynchronous handler in a thread of its own. This suits handlers that block, e.g. on I/O,
+         * which would otherwise occupy the threads of a fixed size pool.
+         * <p/>
+         * On Java 21 and later, virtual threads are used. Older JVMs use an unbounded pool of (daemon) platform threads instead.
+         */
+        public static final AsynchronousHandlerInvocation ThreadPerInvocation(){
+            ExecutorService executor;
+            try {
+                // looked up reflectively since the code base targets older Java versions
+                executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (Exception e) {
+                executor = Executors.newCachedThreadPool(MessageHandlerThreadFactory);
+            }
+            return new AsynchronousHandlerInvocation().setExecutor(executor);
         }
 
         private ExecutorService executor;
+        private int listenersPerTask;
+        private boolean synchronizeWithMailboxes;
 
         public ExecutorService getExecutor() {
             return executor;
@@ -111,6 +138,36 @@ public interface Feature {
             this.executor = executor;
             return this;
         }
+
+        public int getListenersPerTask() {
+            return listenersPerTask;
+        }
+
+        /**
+         * Set the maximum number of listeners whose asynchronous handler is invoked by a single executor task.
+         * The default is 1, i.e. each listener is invoked in a task of its own, such that slow listeners do not delay others.
+         * Larger values reduce the number of tasks for handlers with many listeners, Integer.MAX_VALUE
+         * submits a single task per handler and message.
+         */
+        public AsynchronousHandlerInvocation setListenersPerTask(int listenersPerTask) {
+            this.listenersPerTask = listenersPerTask;
+            return this;
+        }
+
+        public boolean isSynchronizeWithMailboxes() {
+            return synchronizeWithMailboxes;
+        }
+
+        /**
+         * Serialize the invocations of asynchronous handlers that specify @Synchronized with a mailbox per listener
+         * instead of locking the listener. Each listener is then served by at most one executor thread at a time,
+         * other threads never wait for its lock. Handlers are invoked in the order in which the messages arrived
+         * at the mailbox.
+         */
+        public AsynchronousHandlerInvocation setSynchronizeWithMailboxes(boolean synchronizeWithMailboxes) {
+            this.synchronizeWithMailboxes = synchronizeWithMailboxes;
+            return this;
+        }
     }
 
     class AsynchronousMessageDispatch implements Feature{
@@ -132,13 +189,76 @@ public interface Feature {
             return new AsynchronousMessageDispatch()
                 .setNumberOfMessageDispatchers(2)
                 .setDispatcherThreadFactory(MessageDispatchThreadFactory)
-                .setMessageQueue(new LinkedBlockingQueue<IMessagePublication>(Integer.MAX_VALUE));
+                .setMessageQueue(new LinkedBlockingQueue<IMessagePublication>(Integer.MAX_VALUE))
+                .setWaitStrategy(new IWaitStrategy.Blocking())
+                .setBatchSize(1)
+                .setOverflowPolicy(OverflowPolicy.Block)
+                .setDispatcherGrowthThreshold(100)
+                .setDispatcherKeepAliveTime(60, TimeUnit.SECONDS)
+                .setShutdownTimeout(10, TimeUnit.SECONDS);
+        }
+
+        /**
+         * Create a configuration for elastic dispatch with at least min and at most max dispatcher threads
+         * (see {@link #setMaxNumberOfMessageDispatchers(int)})
+         */
+        public static final AsynchronousMessageDispatch Elastic(int minNumberOfDispatchers, int maxNumberOfDispatchers){
+            return Default()
+                .setNumberOfMessageDispatchers(minNumberOfDispatchers)
+                .setMaxNumberOfMessageDispatchers(maxNumberOfDispatchers);
+        }
+
+        /**
+         * Create a configuration for prioritized dispatch with the given number of priority levels
+         * (see {@link MultiLevelPriorityQueue}). Messages that have been waiting for one second move up one level.
+         */
+        public static final AsynchronousMessageDispatch Prioritized(int numberOfLevels){
+            return Prioritized(numberOfLevels, 1, TimeUnit.SECONDS);
+        }
+
+        /**
+         * Create a configuration for prioritized dispatch with the given number of priority levels
+         * (see {@link MultiLevelPriorityQueue}). Messages move up one level after waiting for the aging interval,
+         * such that messages of low priority are eventually dispatched. With {@link OverflowPolicy#DropOldest},
+         * the oldest message of the lowest non-empty level is dropped.
+         */
+        public static final AsynchronousMessageDispatch Prioritized(int numberOfLevels, long agingInterval, TimeUnit unit){
+            return Default()
+                .setMessageQueue(new MultiLevelPriorityQueue<IMessagePublication>(numberOfLevels, agingInterval, unit));
+        }
+
+        /**
+         * Create a configuration for partitioned dispatch with the given number of lanes (see {@link #setMessageLanes(List)})
+         */
+        public static final AsynchronousMessageDispatch Partitioned(int numberOfLanes){
+            List<BlockingQueue<IMessagePublication>> lanes = new ArrayList<BlockingQueue<IMessagePublication>>(numberOfLanes);
+            for (int i = 0; i < numberOfLanes; i++) {
+                lanes.add(new LinkedBlockingQueue<IMessagePublication>(Integer.MAX_VALUE));
+            }
+            return Default()
+                .setNumberOfMessageDispatchers(numberOfLanes)
+                .setMessageLanes(lanes);
         }
 
 
         private int numberOfMessageDispatchers;
         private BlockingQueue<IMessagePublication> messageQueue;
         private ThreadFactory dispatcherThreadFactory;
+        private IWaitStrategy waitStrategy;
+        private int batchSize;
+        private IBatchObserver batchObserver;
+        private List<BlockingQueue<IMessagePublication>> messageLanes;
+        private OverflowPolicy overflowPolicy;
+        private boolean conflateByKey;
+        private int maxNumberOfMessageDispatchers;
+        private int dispatcherGrowthThreshold;
+        private long maxWaitTimeInNanos;
+        private long dispatcherKeepAliveTimeInNanos;
+        private IDispatcherPoolObserver dispatcherPoolObserver;
+        private long messageTimeToLiveInNanos;
+        private long timerTickDurationInNanos;
+        private int timerWheelSize;
+        private long shutdownTimeoutInNanos;
 
         public int getNumberOfMessageDispatchers() {
             return numberOfMessageDispatchers;
@@ -158,6 +278,23 @@ public interface Feature {
             return this;
         }
 
+        public List<BlockingQueue<IMessagePublication>> getMessageLanes() {
+            return messageLanes;
+        }
+
+        /**
+         * Use partitioned dispatch with the given queues as lanes. Each lane has its own dispatcher thread,
+         * the configured message queue and number of dispatchers are not used.
+         * <p/>
+         * Messages that are published with a key (see {@link net.engio.mbassy.bus.publication.ISyncAsyncPublicationCommand#withKey(Object)})
+         * are always queued in the same lane and are therefore dispatched in the order of publication.
+         * Messages without key are distributed over all lanes.
+         */
+        public AsynchronousMessageDispatch setMessageLanes(List<BlockingQueue<IMessagePublication>> messageLanes) {
+            this.messageLanes = messageLanes;
+            return this;
+        }
+
         public ThreadFactory getDispatcherThreadFactory() {
             return dispatcherThreadFactory;
         }
@@ -166,6 +303,200 @@ public interface Feature {
             this.dispatcherThreadFactory = dispatcherThreadFactory;
             return this;
         }
+
+        public IWaitStrategy getWaitStrategy() {
+            return waitStrategy;
+        }
+
+        /**
+         * Set the strategy that defines how the dispatcher threads wait for new messages.
+         * The default is to block on the message queue.
+         */
+        public AsynchronousMessageDispatch setWaitStrategy(IWaitStrategy waitStrategy) {
+            this.waitStrategy = waitStrategy;
+            return this;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        /**
+         * Set the maximum number of message publications a dispatcher thread takes from the queue at once.
+         * Larger batches reduce the synchronization on the queue under load. The default is 1.
+         */
+        public AsynchronousMessageDispatch setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        public IBatchObserver getBatchObserver() {
+            return batchObserver;
+        }
+
+        /**
+         * Set an observer that is notified whenever a dispatcher thread starts and finishes a batch of publications
+         */
+        public AsynchronousMessageDispatch setBatchObserver(IBatchObserver batchObserver) {
+            this.batchObserver = batchObserver;
+            return this;
+        }
+
+        public OverflowPolicy getOverflowPolicy() {
+            return overflowPolicy;
+        }
+
+        /**
+         * Set the policy that is applied to asynchronously published messages while the message queue is full.
+         * The default is to block the publisher. Only bounded queues can overflow.
+         */
+        public AsynchronousMessageDispatch setOverflowPolicy(OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+            return this;
+        }
+
+        public boolean isConflateByKey() {
+            return conflateByKey;
+        }
+
+        /**
+         * Enable conflation of messages that are published asynchronously with a key
+         * (see {@link net.engio.mbassy.bus.publication.ISyncAsyncPublicationCommand#withKey(Object)}).
+         * A newer message replaces the pending message with the same key in place, i.e. it keeps the position
+         * of the pending message in the queue. The queue then never holds more than one message per key and
+         * slow handlers always receive the latest message. Messages without key are not conflated.
+         * <p/>
+         * Conflation is meant for messages where only the latest value matters, like the price of an instrument.
+         */
+        public AsynchronousMessageDispatch setConflateByKey(boolean conflateByKey) {
+            this.conflateByKey = conflateByKey;
+            return this;
+        }
+
+        public int getMaxNumberOfMessageDispatchers() {
+            return maxNumberOfMessageDispatchers;
+        }
+
+        /**
+         * Enable elastic dispatch: If the maximum is larger than the number of message dispatchers, additional
+         * dispatchers are started when the number of pending messages per dispatcher exceeds the growth threshold
+         * or when a message has been waiting longer than the maximum wait time. Additional dispatchers retire
+         * after being idle for the keep alive time. The number of message dispatchers is the minimum.
+         * <p/>
+         * Elastic dispatch does not apply to partitioned dispatch, which needs exactly one dispatcher per lane.
+         */
+        public AsynchronousMessageDispatch setMaxNumberOfMessageDispatchers(int maxNumberOfMessageDispatchers) {
+            this.maxNumberOfMessageDispatchers = maxNumberOfMessageDispatchers;
+            return this;
+        }
+
+        public int getDispatcherGrowthThreshold() {
+            return dispatcherGrowthThreshold;
+        }
+
+        /**
+         * Set the number of pending messages per dispatcher above which elastic dispatch adds another dispatcher.
+         * The default is 100.
+         */
+        public AsynchronousMessageDispatch setDispatcherGrowthThreshold(int pendingMessagesPerDispatcher) {
+            this.dispatcherGrowthThreshold = pendingMessagesPerDispatcher;
+            return this;
+        }
+
+        public long getMaxWaitTimeInNanos() {
+            return maxWaitTimeInNanos;
+        }
+
+        /**
+         * Set the time a message may wait in the queue before elastic dispatch adds another dispatcher.
+         * At most one dispatcher is added per wait time. This is disabled by default.
+         */
+        public AsynchronousMessageDispatch setMaxWaitTime(long maxWaitTime, TimeUnit unit) {
+            this.maxWaitTimeInNanos = unit.toNanos(maxWaitTime);
+            return this;
+        }
+
+        public long getDispatcherKeepAliveTimeInNanos() {
+            return dispatcherKeepAliveTimeInNanos;
+        }
+
+        /**
+         * Set the time after which idle dispatchers of elastic dispatch retire, as long as there are more
+         * than the minimum number of dispatchers. The default is one minute.
+         */
+        public AsynchronousMessageDispatch setDispatcherKeepAliveTime(long keepAliveTime, TimeUnit unit) {
+            this.dispatcherKeepAliveTimeInNanos = unit.toNanos(keepAliveTime);
+            return this;
+        }
+
+        public IDispatcherPoolObserver getDispatcherPoolObserver() {
+            return dispatcherPoolObserver;
+        }
+
+        /**
+         * Set an observer that is notified whenever elastic dispatch adds or retires a dispatcher
+         */
+        public AsynchronousMessageDispatch setDispatcherPoolObserver(IDispatcherPoolObserver dispatcherPoolObserver) {
+            this.dispatcherPoolObserver = dispatcherPoolObserver;
+            return this;
+        }
+
+        public long getMessageTimeToLiveInNanos() {
+            return messageTimeToLiveInNanos;
+        }
+
+        /**
+         * Set the time after which asynchronously published messages expire if no dispatcher has started
+         * their delivery. Expired messages are published as {@link net.engio.mbassy.bus.common.ExpiredMessage} instead.
+         * Single publications can specify their own time to live
+         * (see {@link net.engio.mbassy.bus.publication.ISyncAsyncPublicationCommand#withTimeToLive(long, TimeUnit)}).
+         * Messages do not expire by default.
+         */
+        public AsynchronousMessageDispatch setMessageTimeToLive(long timeToLive, TimeUnit unit) {
+            this.messageTimeToLiveInNanos = unit.toNanos(timeToLive);
+            return this;
+        }
+
+        public long getTimerTickDurationInNanos() {
+            return timerTickDurationInNanos;
+        }
+
+        /**
+         * Set the precision of the timer of delayed and periodic publications
+         * (see {@link net.engio.mbassy.bus.publication.ISyncAsyncPublicationCommand#after(long, TimeUnit)}).
+         * Scheduled messages are published up to one tick late. The default is 10 milliseconds.
+         */
+        public AsynchronousMessageDispatch setTimerTickDuration(long tickDuration, TimeUnit unit) {
+            this.timerTickDurationInNanos = unit.toNanos(tickDuration);
+            return this;
+        }
+
+        public int getTimerWheelSize() {
+            return timerWheelSize;
+        }
+
+        /**
+         * Set the number of buckets of the timer of delayed and periodic publications
+         * (see {@link net.engio.mbassy.common.HashedTimingWheel}). Delays up to wheel size times tick duration
+         * are handled within one revolution of the wheel. The default is 512.
+         */
+        public AsynchronousMessageDispatch setTimerWheelSize(int timerWheelSize) {
+            this.timerWheelSize = timerWheelSize;
+            return this;
+        }
+
+        public long getShutdownTimeoutInNanos() {
+            return shutdownTimeoutInNanos;
+        }
+
+        /**
+         * Set the time {@link net.engio.mbassy.bus.common.IMessageBus#close()} waits for pending messages to be dispatched
+         * and asynchronous handlers to finish. The default is 10 seconds, which also applies if the timeout is not positive.
+         */
+        public AsynchronousMessageDispatch setShutdownTimeout(long shutdownTimeout, TimeUnit unit) {
+            this.shutdownTimeoutInNanos = unit.toNanos(shutdownTimeout);
+            return this;
+        }
     }
 
 
@@ -85,6 +85,8 @@ public interface IBusConfiguration{
         public static final String BusId = "bus.id";
         public static final String PublicationErrorHandlers = "bus.handlers.error";
         public static final String AsynchronousHandlerExecutor = "bus.handlers.async-executor";
+        public static final String AsynchronousHandlerListenersPerTask = "bus.handlers.async-listeners-per-task";
+        public static final String AsynchronousHandlerMailboxes = "bus.handlers.async-mailboxes";
 
     }
 }
@@ -1,6 +1,7 @@
 package net.engio.mbassy.bus.publication;
 
 import net.engio.mbassy.bus.IMessagePublication;
+import net.engio.mbassy.bus.IScheduledPublication;
 
 import java.util.concurrent.TimeUnit;
 
@@ -32,4 +33,51 @@ public interface ISyncAsyncPublicationCommand extends IPublicationCommand {
      * @return A message publication that wraps up the publication request
      */
     IMessagePublication asynchronously(long timeout, TimeUnit unit);
+
+    /**
+     * Set the key that determines the lane of an asynchronous publication if partitioned dispatch is used.
+     * Messages with equal keys are dispatched in the order of their publication. If conflation is enabled,
+     * a message replaces the pending message with the same key. The key is ignored for synchronous publication.
+     *
+     * @param key Any object with proper implementations of equals and hashCode, e.g. the ID of an entity
+     * @return This command
+     */
+    ISyncAsyncPublicationCommand withKey(Object key);
+
+    /**
+     * Set the time after which an asynchronous publication expires if no dispatcher has started its delivery.
+     * Expired messages are not delivered to their handlers but published as {@link net.engio.mbassy.bus.common.ExpiredMessage}.
+     * This overrides the default time to live of the bus and is ignored for synchronous publication.
+     *
+     * @return This command
+     */
+    ISyncAsyncPublicationCommand withTimeToLive(long timeToLive, TimeUnit unit);
+
+    /**
+     * Set the priority of an asynchronous publication, overriding the priority of the message class
+     * (see {@link net.engio.mbassy.listener.MessagePriority}). The priority determines the order of dispatch
+     * if the message queue supports it (see {@link net.engio.mbassy.bus.config.Feature.AsynchronousMessageDispatch#Prioritized(int)}).
+     * It is ignored for synchronous publication.
+     *
+     * @return This command
+     */
+    ISyncAsyncPublicationCommand withPriority(int priority);
+
+    /**
+     * Publish the message asynchronously after the given delay. The key, the priority and the time to live apply to the
+     * publication as usual, the time to live starts when the delay has passed.
+     *
+     * @return A scheduled publication that can be used to cancel the publication. If the bus has been shut down,
+     * the message is rejected and the scheduled publication is cancelled (see {@link IScheduledPublication})
+     */
+    IScheduledPublication after(long delay, TimeUnit unit);
+
+    /**
+     * Publish the message asynchronously after the given period and then repeatedly at a fixed rate until the
+     * returned scheduled publication is cancelled. Each publication is a new publication of the same message object.
+     *
+     * @return A scheduled publication that can be used to cancel further publications. If the bus has been shut down,
+     * the message is rejected and the scheduled publication is cancelled (see {@link IScheduledPublication})
+     */
+    IScheduledPublication every(long period, TimeUnit unit);
 }
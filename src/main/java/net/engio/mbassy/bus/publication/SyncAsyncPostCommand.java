@@ -2,6 +2,7 @@ package net.engio.mbassy.bus.publication;
 
 import net.engio.mbassy.bus.MBassador;
 import net.engio.mbassy.bus.IMessagePublication;
+import net.engio.mbassy.bus.IScheduledPublication;
 
 import java.util.concurrent.TimeUnit;
 
@@ -15,6 +16,10 @@ public class SyncAsyncPostCommand<T> implements ISyncAsyncPublicationCommand {
 
     private T message;
     private MBassador<T> mBassador;
+    private Object key;
+    private long timeToLiveInNanos = 0;
+    private int priority;
+    private boolean hasPriority = false;
 
     public SyncAsyncPostCommand(MBassador<T> mBassador, T message) {
         this.mBassador = mBassador;
@@ -28,11 +33,70 @@ public class SyncAsyncPostCommand<T> implements ISyncAsyncPublicationCommand {
 
     @Override
     public IMessagePublication asynchronously() {
-        return mBassador.publishAsync(message);
+        return mBassador.postAsync(this);
     }
 
     @Override
     public IMessagePublication asynchronously(long timeout, TimeUnit unit) {
-        return mBassador.publishAsync(message, timeout, unit);
+        return mBassador.postAsync(this, timeout, unit);
+    }
+
+    @Override
+    public SyncAsyncPostCommand<T> withKey(Object key) {
+        this.key = key;
+        return this;
+    }
+
+    @Override
+    public SyncAsyncPostCommand<T> withTimeToLive(long timeToLive, TimeUnit unit) {
+        this.timeToLiveInNanos = unit.toNanos(timeToLive);
+        return this;
+    }
+
+    @Override
+    public SyncAsyncPostCommand<T> withPriority(int priority) {
+        this.priority = priority;
+        this.hasPriority = true;
+        return this;
+    }
+
+    @Override
+    public IScheduledPublication after(long delay, TimeUnit unit) {
+        return mBassador.postScheduled(this, delay, 0, unit);
+    }
+
+    @Override
+    public IScheduledPublication every(long period, TimeUnit unit) {
+        return mBassador.postScheduled(this, period, period, unit);
+    }
+
+    public T getMessage() {
+        return message;
+    }
+
+    /**
+     * @return The key of the message or null, if none has been set
+     */
+    public Object getKey() {
+        return key;
+    }
+
+    /**
+     * @return The time to live of the message or 0, if the default time to live of the bus applies
+     */
+    public long getTimeToLiveInNanos() {
+        return timeToLiveInNanos;
+    }
+
+    /**
+     * @return True, if a priority has been set. Otherwise, the priority of the message class applies
+     * (see {@link net.engio.mbassy.listener.MessagePriority})
+     */
+    public boolean hasPriority() {
+        return hasPriority;
+    }
+
+    public int getPriority() {
+        return priority;
     }
 }
@@ -34,6 +34,13 @@ public abstract class AbstractConcurrentSet<T> implements Set<T> {
 
     protected abstract Entry<T> createEntry(T value, Entry<T> next);
 
+    /**
+     * Called before each modification of the set. Subclasses may use it to perform maintenance operations.
+     * Note: This method is expected to be synchronized by the calling code (the write lock is held)
+     */
+    protected void beforeWrite() {
+    }
+
     @Override
     public boolean add(T element) {
         if (element == null) return false;
@@ -41,6 +48,7 @@ public abstract class AbstractConcurrentSet<T> implements Set<T> {
         boolean changed;
         try {
             writeLock.lock();
+            beforeWrite();
             changed = insert(element);
         } finally {
             writeLock.unlock();
@@ -91,6 +99,7 @@ public abstract class AbstractConcurrentSet<T> implements Set<T> {
         Lock writeLock = lock.writeLock();
         try {
             writeLock.lock();
+            beforeWrite();
             for (T element : elements) {
                 if (element != null) {
                     changed |= insert(element);
@@ -110,16 +119,12 @@ public abstract class AbstractConcurrentSet<T> implements Set<T> {
             Lock writeLock = lock.writeLock();
             try {
                 writeLock.lock();
+                beforeWrite();
                 ISetEntry<T> listelement = entries.get(element);
                 if (listelement == null) {
                     return false; //removed by other thread in the meantime
                 }
-                if (listelement != head) {
-                    listelement.remove();
-                } else {
-                    head = head.next();
-                    //oldHead.clear(); // optimize for GC not possible because of potentially running iterators
-                }
+                unlink(listelement);
                 entries.remove(element);
             } finally {
                 writeLock.unlock();
@@ -128,6 +133,19 @@ public abstract class AbstractConcurrentSet<T> implements Set<T> {
         }
     }
 
+    /**
+     * Removes the entry from the linked list of entries.
+     * Note: This method is expected to be synchronized by the calling code
+     */
+    protected void unlink(ISetEntry<T> entry) {
+        if (entry != head) {
+            entry.remove();
+        } else {
+            head = head.next();
+            //oldHead.clear(); // optimize for GC not possible because of potentially running iterators
+        }
+    }
+
     @Override
     public Object[] toArray() {
         return this.entries.entrySet().toArray();
@@ -159,6 +177,7 @@ public abstract class AbstractConcurrentSet<T> implements Set<T> {
         Lock writeLock = this.lock.writeLock();
         try {
             writeLock.lock();
+                beforeWrite();
                 head = null;
                 entries.clear();
         } finally {
@@ -0,0 +1,155 @@
+package net.engio.mbassy.common;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.AbstractMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A thread-safe map that references its keys weakly and compares them by identity (like {@link java.util.IdentityHashMap}),
+ * i.e. the equals() and hashCode() methods of the keys are never called.
+ * <p/>
+ * Lookups never block and never modify the map. Entries of garbage collected keys are removed by the next
+ * modification of the map (or a call to {@link #size()}), so reading threads never have to pay for the cleanup.
+ * <p/>
+ * The views returned by {@link #entrySet()}, {@link #keySet()} and {@link #values()} are snapshots that
+ * do not reflect later modifications and do not support modifications themselves.
+ */
+public class ConcurrentWeakIdentityMap<K, V> extends AbstractMap<K, V> {
+
+    private final ConcurrentHashMap<Object, V> entries = new ConcurrentHashMap<Object, V>();
+
+    // the keys of all entries whose key has been garbage collected
+    private final ReferenceQueue<K> collected = new ReferenceQueue<K>();
+
+    @Override
+    public V get(Object key) {
+        return key == null ? null : entries.get(new Lookup(key));
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key != null && entries.containsKey(new Lookup(key));
+    }
+
+    @Override
+    public V put(K key, V value) {
+        if (key == null) {
+            throw new NullPointerException("Keys can not be null");
+        }
+        removeCollectedKeys();
+        return entries.put(new WeakKey<K>(key, collected), value);
+    }
+
+    /**
+     * Associates the value with the key only if the key is not yet contained in the map
+     *
+     * @return The value that is associated with the key or null, if the given value has been added
+     */
+    public V putIfAbsent(K key, V value) {
+        if (key == null) {
+            throw new NullPointerException("Keys can not be null");
+        }
+        removeCollectedKeys();
+        return entries.putIfAbsent(new WeakKey<K>(key, collected), value);
+    }
+
+    @Override
+    public V remove(Object key) {
+        removeCollectedKeys();
+        return key == null ? null : entries.remove(new Lookup(key));
+    }
+
+    @Override
+    public int size() {
+        removeCollectedKeys();
+        return entries.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public void clear() {
+        entries.clear();
+        removeCollectedKeys();
+    }
+
+    // only the key references are removed, which is safe for concurrent modifications
+    // because they are never reused for other entries
+    private void removeCollectedKeys() {
+        Reference<? extends K> key;
+        while ((key = collected.poll()) != null) {
+            entries.remove(key);
+        }
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        Set<Map.Entry<K, V>> snapshot = new HashSet<Map.Entry<K, V>>();
+        for (Map.Entry<Object, V> entry : entries.entrySet()) {
+            K key = ((WeakKey<K>) entry.getKey()).get();
+            if (key != null) {
+                snapshot.add(new SimpleImmutableEntry<K, V>(key, entry.getValue()));
+            }
+        }
+        return snapshot;
+    }
+
+    // the key of an entry. Equal only to itself or keys of the identical object (as long as it is not collected)
+    private static final class WeakKey<K> extends WeakReference<K> {
+
+        private final int hash;
+
+        private WeakKey(K key, ReferenceQueue<K> queue) {
+            super(key, queue);
+            this.hash = System.identityHashCode(key);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (other == this) {
+                return true;
+            }
+            Object key = get();
+            if (key == null) {
+                return false;
+            }
+            if (other instanceof WeakKey) {
+                return key == ((WeakKey) other).get();
+            }
+            return other instanceof Lookup && key == ((Lookup) other).key;
+        }
+    }
+
+    // used to find entries without creating a new weak reference for each lookup
+    private static final class Lookup {
+
+        private final Object key;
+
+        private Lookup(Object key) {
+            this.key = key;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(key);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof WeakKey && key == ((WeakKey) other).get();
+        }
+    }
+}
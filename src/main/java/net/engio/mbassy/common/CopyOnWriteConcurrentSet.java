@@ -0,0 +1,162 @@
+package net.engio.mbassy.common;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A set that uses strong references to its elements and keeps them in an immutable array that is replaced
+ * on each modification. Readers access the current array by means of a single volatile read and can iterate it
+ * by index without any locking or allocation (see {@link #snapshot()}).
+ * <p/>
+ * This makes iteration as fast as possible at the expense of modifications, which copy the entire array.
+ * It is meant for read-mostly sets with many elements, e.g. the listeners of a message handler that are rarely
+ * subscribed or unsubscribed but receive many messages.
+ * <p/>
+ * Running iterators are not affected by any modifications, i.e. they will return all elements that were contained
+ * in the set when the iteration started. Elements are compared using their equals() and hashCode() methods,
+ * unlike {@link WeakConcurrentSet}.
+ */
+public class CopyOnWriteConcurrentSet<T> implements Set<T> {
+
+    private static final Object[] Empty = new Object[0];
+
+    // index of the contained elements for fast lookups, modified only while holding the lock of this set
+    private final ConcurrentHashMap<T, T> entries = new ConcurrentHashMap<T, T>();
+
+    // the current elements. The array is never modified after publication
+    private volatile Object[] snapshot = Empty;
+
+    /**
+     * Get an array of all elements currently contained in this set. The array is shared and must not be modified.
+     */
+    public Object[] snapshot() {
+        return snapshot;
+    }
+
+    @Override
+    public synchronized boolean add(T element) {
+        if (element == null || entries.putIfAbsent(element, element) != null) {
+            return false;
+        }
+        Object[] current = snapshot;
+        Object[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = element;
+        snapshot = updated;
+        return true;
+    }
+
+    @Override
+    public synchronized boolean addAll(Collection<? extends T> elements) {
+        Object[] current = snapshot;
+        Object[] updated = Arrays.copyOf(current, current.length + elements.size());
+        int size = current.length;
+        for (T element : elements) {
+            if (element != null && entries.putIfAbsent(element, element) == null) {
+                updated[size++] = element;
+            }
+        }
+        if (size == current.length) {
+            return false;
+        }
+        snapshot = size == updated.length ? updated : Arrays.copyOf(updated, size);
+        return true;
+    }
+
+    @Override
+    public boolean contains(Object element) {
+        return element != null && entries.containsKey(element);
+    }
+
+    @Override
+    public synchronized boolean remove(Object element) {
+        if (element == null) return false;
+        T contained = entries.remove(element);
+        if (contained == null) {
+            return false;
+        }
+        Object[] current = snapshot;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == contained) {
+                Object[] updated = new Object[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                snapshot = updated;
+                break;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return snapshot.length;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return snapshot.length == 0;
+    }
+
+    @Override
+    public synchronized void clear() {
+        entries.clear();
+        snapshot = Empty;
+    }
+
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+
+            private final Object[] elements = snapshot;
+
+            // the index of the next element
+            private int current = 0;
+
+            public boolean hasNext() {
+                return current < elements.length;
+            }
+
+            public T next() {
+                if (current >= elements.length) {
+                    return null;
+                }
+                return (T) elements[current++];
+            }
+
+            public void remove() {
+                if (current >= elements.length) {
+                    return;
+                }
+                CopyOnWriteConcurrentSet.this.remove(elements[current++]);
+            }
+        };
+    }
+
+    @Override
+    public Object[] toArray() {
+        return snapshot.clone();
+    }
+
+    @SuppressWarnings("hiding")
+    @Override
+    public <T> T[] toArray(T[] a) {
+        return Arrays.asList(snapshot).toArray(a);
+    }
+
+    @Override
+    public boolean containsAll(Collection<?> c) {
+        throw new UnsupportedOperationException("Not implemented");
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        throw new UnsupportedOperationException("Not implemented");
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        throw new UnsupportedOperationException("Not implemented");
+    }
+}
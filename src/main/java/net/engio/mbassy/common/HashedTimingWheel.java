@@ -0,0 +1,339 @@
+package net.engio.mbassy.common;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A timer for large numbers of delayed and periodic tasks, as described in "Hashed and Hierarchical Timing Wheels"
+ * by Varghese and Lauck. It is used by the message bus to schedule delayed publications
+ * ({@link net.engio.mbassy.bus.publication.ISyncAsyncPublicationCommand#after(long, java.util.concurrent.TimeUnit)}).
+ * <p/>
+ * The wheel is an array of buckets. A single worker thread advances one bucket per tick and runs all tasks of the
+ * current bucket whose deadline has been reached. Tasks with a deadline beyond one revolution of the wheel stay
+ * in their bucket and count down the remaining rounds.
+ * <p/>
+ * Scheduling a task costs a single offer to a lock-free queue, which the worker drains into the buckets at every tick.
+ * Cancelled tasks are removed lazily by the worker. Therefore, scheduling and cancellation are O(1), independent of the
+ * number of pending tasks. In return, tasks run with the precision of one tick and must return quickly, since they
+ * delay all other tasks.
+ * <p/>
+ * The worker thread is started with the first scheduled task.
+ */
+public class HashedTimingWheel {
+
+    private static final int Initial = 0;
+    private static final int Started = 1;
+    private static final int Stopped = 2;
+
+    // the maximum number of new timeouts that are moved into the wheel per tick, such that a flood does not stall the wheel
+    private static final int MaxTransfersPerTick = 100000;
+
+    private final long tickInNanos;
+
+    private final Bucket[] wheel;
+
+    private final int mask;
+
+    // new and rescheduled timeouts waiting to be put into their bucket by the worker
+    private final Queue<Timeout> scheduled = new ConcurrentLinkedQueue<Timeout>();
+
+    private final AtomicInteger state = new AtomicInteger(Initial);
+
+    private final AtomicLong pendingTimeouts = new AtomicLong();
+
+    private final CountDownLatch startup = new CountDownLatch(1);
+
+    private final Thread worker;
+
+    // the time (System.nanoTime()) at which the worker started, all deadlines are relative to it
+    private volatile long startTime;
+
+    /**
+     * Create a timing wheel
+     *
+     * @param tickDuration The precision of the timer
+     * @param unit The unit of the tick duration
+     * @param wheelSize The number of buckets. It is rounded up to the next power of two
+     * @param threadFactory The factory of the worker thread
+     */
+    public HashedTimingWheel(long tickDuration, TimeUnit unit, int wheelSize, ThreadFactory threadFactory) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("The tick duration must be greater than 0: " + tickDuration);
+        }
+        if (wheelSize <= 0 || wheelSize > 1 << 30) {
+            throw new IllegalArgumentException("The wheel size must be between 1 and 2^30: " + wheelSize);
+        }
+        int size = 1;
+        while (size < wheelSize) {
+            size <<= 1;
+        }
+        this.tickInNanos = unit.toNanos(tickDuration);
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.worker = threadFactory.newThread(new Worker());
+    }
+
+    /**
+     * Schedule a task that runs once after the given delay
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        return schedule(task, delay, 0, unit);
+    }
+
+    /**
+     * Schedule a task that runs after the given delay and then repeatedly with the given period, if it is greater
+     * than 0. Periodic tasks run at a fixed rate until they are cancelled.
+     *
+     * @throws RejectedExecutionException If the wheel has been stopped
+     */
+    public Timeout schedule(Runnable task, long delay, long period, TimeUnit unit) {
+        start();
+        long deadline = System.nanoTime() - startTime + Math.max(0, unit.toNanos(delay));
+        Timeout timeout = new Timeout(this, task, deadline, Math.max(0, unit.toNanos(period)));
+        pendingTimeouts.incrementAndGet();
+        scheduled.offer(timeout);
+        return timeout;
+    }
+
+    // start the worker thread if necessary and wait until the start time has been set
+    private void start() {
+        switch (state.get()) {
+            case Initial:
+                if (state.compareAndSet(Initial, Started)) {
+                    worker.start();
+                }
+                break;
+            case Started:
+                break;
+            default:
+                throw new RejectedExecutionException("The timing wheel has been stopped");
+        }
+        boolean interrupted = false;
+        while (startup.getCount() > 0) {
+            try {
+                startup.await();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stop the worker thread. Pending timeouts will never expire and no more tasks can be scheduled.
+     *
+     * @return The number of timeouts that have not expired and were not cancelled
+     */
+    public long stop() {
+        if (state.getAndSet(Stopped) == Started) {
+            worker.interrupt();
+        }
+        return pendingTimeouts.get();
+    }
+
+    /**
+     * Get the number of timeouts that have neither expired nor been cancelled. Periodic timeouts are pending until
+     * they are cancelled.
+     */
+    public long getPendingTimeouts() {
+        return pendingTimeouts.get();
+    }
+
+    public long getTickDurationInNanos() {
+        return tickInNanos;
+    }
+
+    private final class Worker implements Runnable {
+
+        // the number of ticks since the start, only accessed by the worker
+        private long tick = 0;
+
+        @Override
+        public void run() {
+            startTime = System.nanoTime();
+            startup.countDown();
+            while (state.get() == Started) {
+                long now = waitForNextTick();
+                if (now < 0) {
+                    return; // stopped
+                }
+                transferScheduled();
+                wheel[(int) (tick & mask)].expire(now);
+                tick++;
+            }
+        }
+
+        // wait until the current tick ends. Returns the time relative to the start or -1 if the wheel has been stopped
+        private long waitForNextTick() {
+            long deadline = tickInNanos * (tick + 1);
+            while (true) {
+                long now = System.nanoTime() - startTime;
+                long sleep = deadline - now;
+                if (sleep <= 0) {
+                    return now;
+                }
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleep);
+                } catch (InterruptedException e) {
+                    if (state.get() == Stopped) {
+                        return -1;
+                    }
+                }
+            }
+        }
+
+        // move new timeouts into their buckets
+        private void transferScheduled() {
+            for (int i = 0; i < MaxTransfersPerTick; i++) {
+                Timeout timeout = scheduled.poll();
+                if (timeout == null) {
+                    return;
+                }
+                if (timeout.isCancelled()) {
+                    continue;
+                }
+                long expiryTick = timeout.deadline / tickInNanos;
+                timeout.remainingRounds = (expiryTick - tick) / wheel.length;
+                // timeouts that are already due expire with the current tick
+                wheel[(int) (Math.max(expiryTick, tick) & mask)].add(timeout);
+            }
+        }
+    }
+
+    // a doubly linked list of timeouts, only accessed by the worker
+    private final class Bucket {
+
+        private Timeout head;
+        private Timeout tail;
+
+        private void add(Timeout timeout) {
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        // run all timeouts of this bucket that are due at the given time, count down the rounds of the others
+        private void expire(long now) {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.isCancelled()) {
+                    remove(timeout);
+                } else if (timeout.remainingRounds <= 0 && timeout.deadline <= now) {
+                    remove(timeout);
+                    timeout.expire();
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        private void remove(Timeout timeout) {
+            Timeout next = timeout.next;
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+            if (next != null) {
+                next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                head = next;
+            }
+            if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+        }
+    }
+
+    /**
+     * A handle of a scheduled task that can be used to cancel it
+     */
+    public static final class Timeout {
+
+        private static final int Waiting = 0;
+        private static final int Cancelled = 1;
+        private static final int Expired = 2;
+
+        private final HashedTimingWheel timer;
+        private final Runnable task;
+        private final long period;
+        private final AtomicInteger state = new AtomicInteger(Waiting);
+
+        // the following fields are only accessed by the worker
+        private long deadline;
+        private long remainingRounds;
+        private Timeout next;
+        private Timeout prev;
+
+        private Timeout(HashedTimingWheel timer, Runnable task, long deadline, long period) {
+            this.timer = timer;
+            this.task = task;
+            this.deadline = deadline;
+            this.period = period;
+        }
+
+        /**
+         * Prevent any further execution of the task. A running execution is not interrupted.
+         *
+         * @return True, if the task was waiting. False, if it has been cancelled already or it was a single task that ran already
+         */
+        public boolean cancel() {
+            if (state.compareAndSet(Waiting, Cancelled)) {
+                // the worker removes the timeout from its bucket lazily
+                timer.pendingTimeouts.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == Cancelled;
+        }
+
+        /**
+         * Whether a single task ran already. Periodic tasks never expire.
+         */
+        public boolean isExpired() {
+            return state.get() == Expired;
+        }
+
+        private void expire() {
+            if (period > 0) {
+                run();
+                if (!isCancelled()) {
+                    deadline += period;
+                    timer.scheduled.offer(this);
+                }
+            } else if (state.compareAndSet(Waiting, Expired)) {
+                timer.pendingTimeouts.decrementAndGet();
+                run();
+            }
+        }
+
+        private void run() {
+            try {
+                task.run();
+            } catch (Throwable t) {
+                // the task is responsible for its errors, the worker must continue with the other timeouts
+            }
+        }
+    }
+}
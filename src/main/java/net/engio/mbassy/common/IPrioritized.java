@@ -0,0 +1,12 @@
+package net.engio.mbassy.common;
+
+/**
+ * Elements of a {@link MultiLevelPriorityQueue} need to provide their priority
+ */
+public interface IPrioritized {
+
+    /**
+     * Get the priority of this element. Elements with higher priority are taken from the queue first.
+     */
+    int getPriority();
+}
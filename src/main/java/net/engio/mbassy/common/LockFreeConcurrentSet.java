@@ -0,0 +1,226 @@
+package net.engio.mbassy.common;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * A set that uses strong references to its elements and does not use any locks. It can be used instead
+ * of {@link StrongConcurrentSet} when elements are frequently added and removed, since neither writers nor readers
+ * will ever block each other.
+ * <p/>
+ * The elements are indexed by a {@link ConcurrentHashMap} and linked in a list that is only modified
+ * using compare-and-set operations. Additions insert at the head of the list. Removal marks the entry of the
+ * element as deleted, the entry is unlinked from the list later on, either by iterators passing the entry or by a cleanup
+ * of the list once enough deleted entries have accumulated.
+ * <p/>
+ * Iteration provides the same guarantees as {@link StrongConcurrentSet}: Running iterators will not be affected by add operations
+ * and elements that are removed before an iterator reached them will not appear in that iterator anymore.
+ * Elements are compared using their equals() and hashCode() methods, unlike {@link WeakConcurrentSet}.
+ */
+public class LockFreeConcurrentSet<T> implements Set<T> {
+
+    private static final AtomicReferenceFieldUpdater<LockFreeConcurrentSet, Node> HeadUpdater
+            = AtomicReferenceFieldUpdater.newUpdater(LockFreeConcurrentSet.class, Node.class, "head");
+
+    private static final AtomicReferenceFieldUpdater<Node, Node> NextUpdater
+            = AtomicReferenceFieldUpdater.newUpdater(Node.class, Node.class, "next");
+
+    // a cleanup of the list is run when at least this many entries have been removed
+    private static final int MinimumGarbageForCleanup = 16;
+
+    private final ConcurrentHashMap<T, Node<T>> entries = new ConcurrentHashMap<T, Node<T>>();
+
+    // the number of removed entries that might still be linked in the list
+    private final AtomicInteger garbage = new AtomicInteger();
+
+    private volatile Node<T> head; // reference to the first element
+
+    @Override
+    public boolean add(T element) {
+        if (element == null) return false;
+        Node<T> node = new Node<T>(element);
+        if (entries.putIfAbsent(element, node) != null) {
+            return false;
+        }
+        Node<T> first;
+        do {
+            first = head;
+            node.next = first;
+        } while (!HeadUpdater.compareAndSet(this, first, node));
+        return true;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends T> elements) {
+        boolean changed = false;
+        for (T element : elements) {
+            changed |= add(element);
+        }
+        return changed;
+    }
+
+    @Override
+    public boolean contains(Object element) {
+        return element != null && entries.containsKey(element);
+    }
+
+    @Override
+    public boolean remove(Object element) {
+        if (element == null) return false;
+        Node<T> node = entries.remove(element);
+        if (node == null) {
+            return false; // not contained or removed by other thread in the meantime
+        }
+        node.value = null; // logically deleted
+        if (node == head && HeadUpdater.compareAndSet(this, node, node.next)) {
+            return true;
+        }
+        if (garbage.incrementAndGet() >= Math.max(MinimumGarbageForCleanup, entries.size())) {
+            garbage.set(0);
+            removeGarbage();
+        }
+        return true;
+    }
+
+    // unlink all deleted entries from the list
+    private void removeGarbage() {
+        Node<T> predecessor = null;
+        Node<T> current = head;
+        while (current != null) {
+            Node<T> next = current.next;
+            if (current.value == null) {
+                if (predecessor == null) {
+                    HeadUpdater.compareAndSet(this, current, next);
+                } else {
+                    NextUpdater.compareAndSet(predecessor, current, next);
+                }
+            } else {
+                predecessor = current;
+            }
+            current = next;
+        }
+    }
+
+    @Override
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    @Override
+    public void clear() {
+        for (T element : entries.keySet()) {
+            remove(element);
+        }
+    }
+
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+
+            // the entry that contains the next element and its value
+            // the value is kept because a concurrent removal will delete it from the entry
+            private Node<T> predecessor = null;
+            private Node<T> current = head;
+            private T value = advance();
+
+            // move to the next entry that has not been removed, unlinking all removed entries on the way
+            private T advance() {
+                while (current != null) {
+                    T candidate = current.value;
+                    if (candidate != null) {
+                        return candidate;
+                    }
+                    Node<T> next = current.next;
+                    if (predecessor == null) {
+                        HeadUpdater.compareAndSet(LockFreeConcurrentSet.this, current, next);
+                    } else {
+                        NextUpdater.compareAndSet(predecessor, current, next);
+                    }
+                    current = next;
+                }
+                return null;
+            }
+
+            public boolean hasNext() {
+                return value != null;
+            }
+
+            public T next() {
+                if (value == null) {
+                    return null;
+                }
+                T next = value;
+                predecessor = current;
+                current = current.next;
+                value = advance();
+                return next;
+            }
+
+            public void remove() {
+                if (value == null) {
+                    return;
+                }
+                LockFreeConcurrentSet.this.remove(value);
+                current = current.next;
+                value = advance();
+            }
+        };
+    }
+
+    @Override
+    public Object[] toArray() {
+        return snapshot().toArray();
+    }
+
+    @SuppressWarnings("hiding")
+    @Override
+    public <T> T[] toArray(T[] a) {
+        return snapshot().toArray(a);
+    }
+
+    private List<T> snapshot() {
+        List<T> elements = new ArrayList<T>(size());
+        for (T element : this) {
+            elements.add(element);
+        }
+        return elements;
+    }
+
+    @Override
+    public boolean containsAll(Collection<?> c) {
+        throw new UnsupportedOperationException("Not implemented");
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        throw new UnsupportedOperationException("Not implemented");
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        throw new UnsupportedOperationException("Not implemented");
+    }
+
+    // the fields are not private because the field updaters would not be allowed to access them
+    static final class Node<T> {
+
+        // null if the element has been removed
+        volatile T value;
+
+        volatile Node<T> next;
+
+        Node(T value) {
+            this.value = value;
+        }
+    }
+}
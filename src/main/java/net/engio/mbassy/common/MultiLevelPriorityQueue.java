@@ -0,0 +1,406 @@
+package net.engio.mbassy.common;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded blocking queue with a fixed number of priority levels. It can be used as the message queue of
+ * asynchronous message dispatch ({@link net.engio.mbassy.bus.config.Feature.AsynchronousMessageDispatch#Prioritized(int)}),
+ * such that urgent messages do not wait behind a large number of ordinary ones.
+ * <p/>
+ * Each level is a FIFO queue. The priority of an element is mapped to the levels 0 (lowest) to n-1 (highest), priorities
+ * beyond the range are assigned to the lowest or highest level respectively. Elements are taken from the highest
+ * level that is not empty, so elements of equal priority keep their order.
+ * <p/>
+ * With aging, an element that has been waiting at its level for longer than the aging interval is moved
+ * to the next higher level, where it waits behind the elements of that level. Therefore, elements of low priority
+ * can not starve, even if there are always elements of higher priority.
+ * <p/>
+ * All operations are guarded by a single lock. The iterator is weakly consistent and does not support removal,
+ * elements can be removed using {@link #remove(Object)}.
+ */
+public class MultiLevelPriorityQueue<E extends IPrioritized> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+    private final ArrayDeque<Entry<E>>[] levels;
+
+    private final int capacity;
+
+    // elements are promoted after waiting this long, 0 if aging is disabled
+    private final long agingIntervalInNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    // guarded by lock
+    private int size = 0;
+
+    /**
+     * Create an unbounded queue without aging
+     */
+    public MultiLevelPriorityQueue(int numberOfLevels) {
+        this(numberOfLevels, 0, TimeUnit.NANOSECONDS, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Create an unbounded queue that promotes elements after waiting for the given aging interval
+     */
+    public MultiLevelPriorityQueue(int numberOfLevels, long agingInterval, TimeUnit unit) {
+        this(numberOfLevels, agingInterval, unit, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Create a queue
+     *
+     * @param numberOfLevels The number of priority levels
+     * @param agingInterval The time after which a waiting element is moved to the next higher level, 0 disables aging
+     * @param unit The unit of the aging interval
+     * @param capacity The maximum number of elements of all levels
+     */
+    public MultiLevelPriorityQueue(int numberOfLevels, long agingInterval, TimeUnit unit, int capacity) {
+        if (numberOfLevels <= 0) {
+            throw new IllegalArgumentException("The number of levels must be greater than 0: " + numberOfLevels);
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity must be greater than 0: " + capacity);
+        }
+        this.levels = new ArrayDeque[numberOfLevels];
+        for (int i = 0; i < numberOfLevels; i++) {
+            levels[i] = new ArrayDeque<Entry<E>>();
+        }
+        this.capacity = capacity;
+        this.agingIntervalInNanos = Math.max(0, unit.toNanos(agingInterval));
+    }
+
+    public int getNumberOfLevels() {
+        return levels.length;
+    }
+
+    // get the level of the given priority
+    private int levelOf(E element) {
+        int priority = element.getPriority();
+        return priority <= 0 ? 0 : Math.min(priority, levels.length - 1);
+    }
+
+    // the caller must hold the lock and ensure there is space
+    private void enqueue(E element) {
+        levels[levelOf(element)].addLast(new Entry<E>(element, agingIntervalInNanos > 0 ? System.nanoTime() : 0));
+        size++;
+        notEmpty.signal();
+    }
+
+    // the caller must hold the lock and ensure the queue is not empty
+    private E dequeue() {
+        if (agingIntervalInNanos > 0) {
+            age(System.nanoTime());
+        }
+        for (int i = levels.length - 1; i >= 0; i--) {
+            Entry<E> entry = levels[i].pollFirst();
+            if (entry != null) {
+                size--;
+                notFull.signal();
+                return entry.element;
+            }
+        }
+        throw new IllegalStateException("The queue is empty although its size is " + size);
+    }
+
+    // promote the elements that have been waiting too long, lower levels first such that an element moves one level at a time
+    private void age(long now) {
+        for (int i = 0; i < levels.length - 1; i++) {
+            ArrayDeque<Entry<E>> level = levels[i];
+            Entry<E> head = level.peekFirst();
+            while (head != null && now - head.waitingSince > agingIntervalInNanos) {
+                level.pollFirst();
+                head.waitingSince = now;
+                levels[i + 1].addLast(head);
+                head = level.peekFirst();
+            }
+        }
+    }
+
+    // the caller must hold the lock
+    private E first() {
+        if (size == 0) {
+            return null;
+        }
+        if (agingIntervalInNanos > 0) {
+            age(System.nanoTime());
+        }
+        for (int i = levels.length - 1; i >= 0; i--) {
+            Entry<E> entry = levels[i].peekFirst();
+            if (entry != null) {
+                return entry.element;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean offer(E element) {
+        if (element == null) {
+            throw new NullPointerException();
+        }
+        lock.lock();
+        try {
+            if (size == capacity) {
+                return false;
+            }
+            enqueue(element);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(E element) throws InterruptedException {
+        if (element == null) {
+            throw new NullPointerException();
+        }
+        lock.lockInterruptibly();
+        try {
+            while (size == capacity) {
+                notFull.await();
+            }
+            enqueue(element);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(E element, long timeout, TimeUnit unit) throws InterruptedException {
+        if (element == null) {
+            throw new NullPointerException();
+        }
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (size == capacity) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+            enqueue(element);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (size == 0) {
+                notEmpty.await();
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (size == 0) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E poll() {
+        lock.lock();
+        try {
+            return size == 0 ? null : dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove the oldest element of the lowest level that is not empty. This is the element to evict when
+     * the queue is full, as opposed to {@link #poll()}, which removes the most urgent element.
+     *
+     * @return The removed element or null, if the queue is empty
+     */
+    public E pollLowest() {
+        return pollLowest(null);
+    }
+
+    /**
+     * Remove the oldest element of the lowest level that is accepted by the given predicate.
+     * Elements that are not accepted remain in the queue.
+     *
+     * @param accepted The elements that may be removed, null accepts all elements
+     * @return The removed element or null, if the queue has no accepted element
+     */
+    public E pollLowest(IPredicate<? super E> accepted) {
+        lock.lock();
+        try {
+            if (size == 0) {
+                return null;
+            }
+            if (agingIntervalInNanos > 0) {
+                age(System.nanoTime());
+            }
+            for (ArrayDeque<Entry<E>> level : levels) {
+                for (Iterator<Entry<E>> entries = level.iterator(); entries.hasNext(); ) {
+                    Entry<E> entry = entries.next();
+                    if (accepted == null || accepted.apply(entry.element)) {
+                        entries.remove();
+                        size--;
+                        notFull.signal();
+                        return entry.element;
+                    }
+                }
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object element) {
+        if (element == null) {
+            return false;
+        }
+        lock.lock();
+        try {
+            for (ArrayDeque<Entry<E>> level : levels) {
+                for (Iterator<Entry<E>> entries = level.iterator(); entries.hasNext(); ) {
+                    if (element.equals(entries.next().element)) {
+                        entries.remove();
+                        size--;
+                        notFull.signal();
+                        return true;
+                    }
+                }
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E peek() {
+        lock.lock();
+        try {
+            return first();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        lock.lock();
+        try {
+            return capacity - size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> collection) {
+        return drainTo(collection, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> collection, int maxElements) {
+        if (collection == this) {
+            throw new IllegalArgumentException();
+        }
+        lock.lock();
+        try {
+            int drained = 0;
+            while (drained < maxElements && size > 0) {
+                collection.add(dequeue());
+                drained++;
+            }
+            return drained;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get a snapshot of the elements, starting with the highest level
+     */
+    @Override
+    public Iterator<E> iterator() {
+        List<E> snapshot = new ArrayList<E>();
+        lock.lock();
+        try {
+            for (int i = levels.length - 1; i >= 0; i--) {
+                for (Entry<E> entry : levels[i]) {
+                    snapshot.add(entry.element);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        final Iterator<E> elements = snapshot.iterator();
+        return new Iterator<E>() {
+            @Override
+            public boolean hasNext() {
+                return elements.hasNext();
+            }
+
+            @Override
+            public E next() {
+                return elements.next();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("The iterator is a snapshot and does not support removal");
+            }
+        };
+    }
+
+    // an element and the time (System.nanoTime()) since it is waiting at its current level
+    private static final class Entry<E> {
+
+        private final E element;
+        private long waitingSince;
+
+        private Entry(E element, long waitingSince) {
+            this.element = element;
+            this.waitingSince = waitingSince;
+        }
+    }
+}
@@ -6,6 +6,7 @@ import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 /**
@@ -64,13 +65,18 @@ public class ReflectionUtils
 
     /**
      * Collect all directly and indirectly related super types (classes and interfaces) of
-     * a given class.
+     * a given class. Each super type is contained only once, even if it is reachable via different
+     * paths of the type hierarchy.
+     *
+     * The result is not cached, since a static cache would keep the classes (and their class loaders) alive.
+     * Callers that need the super types repeatedly should cache them with the lifecycle of their own data.
      *
      * @param from The root class to start with
      * @return A set of classes, each representing a super type of the root class
      */
     public static Class[] getSuperTypes(Class from) {
-        ArrayList<Class> superclasses = new ArrayList<Class>();
+        // the linked set removes duplicates while retaining the order of traversal
+        Set<Class> superclasses = new LinkedHashSet<Class>();
 
         collectInterfaces( from, superclasses );
         while ( !from.equals( Object.class ) && !from.isInterface() ) {
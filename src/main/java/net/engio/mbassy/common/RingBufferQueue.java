@@ -0,0 +1,315 @@
+package net.engio.mbassy.common;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded, multi-producer multi-consumer queue backed by a preallocated ring buffer. It can be used as the
+ * message queue of asynchronous message dispatch ({@link net.engio.mbassy.bus.config.Feature.AsynchronousMessageDispatch})
+ * instead of a {@link java.util.concurrent.LinkedBlockingQueue}.
+ * <p/>
+ * Producers and consumers claim slots of the buffer with a single compare-and-set on the respective position counter.
+ * Each slot carries a sequence number that tells whether it is ready to be written or read (like the Disruptor),
+ * so neither producers nor consumers need a lock and no nodes are allocated per element.
+ * <p/>
+ * Only threads that have to wait because the queue is empty (or full) use a lock. They spin for a short while
+ * before they block. Producers and consumers only signal waiting threads if there are any.
+ * <p/>
+ * The iterator is weakly consistent and does not support removal.
+ */
+public class RingBufferQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+    // the number of times a waiting thread retries before it blocks
+    private static final int SpinTries = 64;
+
+    private final Object[] buffer;
+
+    // sequence of each slot: equals the position if the slot can be written, position + 1 if it can be read
+    private final AtomicLongArray sequences;
+
+    private final int mask;
+
+    // the position of the next slot to write
+    private final AtomicLong tail = new AtomicLong();
+
+    // the position of the next slot to read
+    private final AtomicLong head = new AtomicLong();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final AtomicInteger waitingConsumers = new AtomicInteger();
+    private final AtomicInteger waitingProducers = new AtomicInteger();
+
+    /**
+     * @param capacity The maximum number of elements, rounded up to the next power of two. The buffer has at least
+     *                 two slots, since a single slot could not tell a written slot from a slot of the next round
+     */
+    public RingBufferQueue(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30: " + capacity);
+        }
+        int size = Math.max(2, Integer.highestOneBit(capacity));
+        if (size < capacity) {
+            size <<= 1;
+        }
+        buffer = new Object[size];
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        mask = size - 1;
+    }
+
+    @Override
+    public boolean offer(E element) {
+        if (element == null) {
+            throw new NullPointerException();
+        }
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    buffer[index] = element;
+                    // volatile write, otherwise a consumer that starts waiting might be missed (see signal())
+                    sequences.set(index, position + 1);
+                    signal(waitingConsumers, notEmpty);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false; // the slot still holds the element of the previous round -> full
+            } else {
+                position = tail.get(); // another producer claimed the slot
+            }
+        }
+    }
+
+    @Override
+    public E poll() {
+        long position = head.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    E element = (E) buffer[index];
+                    buffer[index] = null;
+                    sequences.set(index, position + buffer.length);
+                    signal(waitingProducers, notFull);
+                    return element;
+                }
+                position = head.get();
+            } else if (difference < 0) {
+                return null; // the slot has not been written yet -> empty
+            } else {
+                position = head.get(); // another consumer took the element
+            }
+        }
+    }
+
+    @Override
+    public E peek() {
+        while (true) {
+            long position = head.get();
+            int index = (int) position & mask;
+            if (sequences.get(index) != position + 1) {
+                if (position == head.get()) {
+                    return null;
+                }
+                continue; // the element has just been taken
+            }
+            E element = (E) buffer[index];
+            if (element != null && position == head.get()) {
+                return element;
+            }
+        }
+    }
+
+    private void signal(AtomicInteger waiting, Condition condition) {
+        if (waiting.get() > 0) {
+            lock.lock();
+            try {
+                condition.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void put(E element) throws InterruptedException {
+        for (int tries = 0; !offer(element); tries++) {
+            if (tries < SpinTries) {
+                Thread.yield();
+                continue;
+            }
+            lock.lockInterruptibly();
+            waitingProducers.incrementAndGet();
+            try {
+                while (!offer(element)) {
+                    notFull.await();
+                }
+                return;
+            } finally {
+                waitingProducers.decrementAndGet();
+                lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public boolean offer(E element, long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        for (int tries = 0; !offer(element); tries++) {
+            if (tries < SpinTries) {
+                Thread.yield();
+                continue;
+            }
+            lock.lockInterruptibly();
+            waitingProducers.incrementAndGet();
+            try {
+                while (!offer(element)) {
+                    if (nanos <= 0) {
+                        return false;
+                    }
+                    nanos = notFull.awaitNanos(nanos);
+                }
+                return true;
+            } finally {
+                waitingProducers.decrementAndGet();
+                lock.unlock();
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        E element;
+        for (int tries = 0; (element = poll()) == null; tries++) {
+            if (tries < SpinTries) {
+                Thread.yield();
+                continue;
+            }
+            lock.lockInterruptibly();
+            waitingConsumers.incrementAndGet();
+            try {
+                while ((element = poll()) == null) {
+                    notEmpty.await();
+                }
+                return element;
+            } finally {
+                waitingConsumers.decrementAndGet();
+                lock.unlock();
+            }
+        }
+        return element;
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        E element;
+        for (int tries = 0; (element = poll()) == null; tries++) {
+            if (tries < SpinTries) {
+                Thread.yield();
+                continue;
+            }
+            lock.lockInterruptibly();
+            waitingConsumers.incrementAndGet();
+            try {
+                while ((element = poll()) == null) {
+                    if (nanos <= 0) {
+                        return null;
+                    }
+                    nanos = notEmpty.awaitNanos(nanos);
+                }
+                return element;
+            } finally {
+                waitingConsumers.decrementAndGet();
+                lock.unlock();
+            }
+        }
+        return element;
+    }
+
+    @Override
+    public int size() {
+        // read head first, such that the difference is never negative
+        long first = head.get();
+        long size = tail.get() - first;
+        return size < 0 ? 0 : (int) Math.min(size, buffer.length);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return buffer.length - size();
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> collection) {
+        return drainTo(collection, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> collection, int maxElements) {
+        if (collection == this) {
+            throw new IllegalArgumentException();
+        }
+        int drained = 0;
+        E element;
+        while (drained < maxElements && (element = poll()) != null) {
+            collection.add(element);
+            drained++;
+        }
+        return drained;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        List<E> snapshot = new ArrayList<E>();
+        for (long position = head.get(), last = tail.get(); position < last; position++) {
+            int index = (int) position & mask;
+            E element = (E) buffer[index];
+            if (element != null && sequences.get(index) == position + 1) {
+                snapshot.add(element);
+            }
+        }
+        final Iterator<E> elements = snapshot.iterator();
+        return new Iterator<E>() {
+            public boolean hasNext() {
+                return elements.hasNext();
+            }
+
+            public E next() {
+                return elements.next();
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException("Elements can only be removed from the head of the queue");
+            }
+        };
+    }
+}
@@ -6,6 +6,7 @@ import java.util.Iterator;
 
 /**
  * This implementation uses strong references to the elements.
+ * Elements are compared using their equals() and hashCode() methods, unlike {@link WeakConcurrentSet}.
  * <p/>
  *
  * @author bennidi
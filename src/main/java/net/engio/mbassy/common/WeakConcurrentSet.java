@@ -1,14 +1,21 @@
 package net.engio.mbassy.common;
 
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
 import java.util.Iterator;
-import java.util.WeakHashMap;
 import java.util.concurrent.locks.Lock;
 
 /**
- * This implementation uses weak references to the elements. Iterators automatically perform cleanups of
- * garbage collected objects during iteration -> no dedicated maintenance operations need to be called or run in background.
+ * This implementation uses weak references to the elements. The references are registered with a reference queue
+ * and the entries of garbage collected objects are removed in batches, either with the next modification of the set,
+ * every {@value #CleanupInterval} iterations or by calling {@link #cleanup()}. Iterators simply skip entries of garbage
+ * collected objects. Cleanup during iteration only happens if the write lock is available immediately, so readers
+ * never wait for it.
+ * <p/>
+ * Elements are compared by identity, their equals() and hashCode() methods are not used. This allows lookups
+ * without acquiring the read lock (see {@link ConcurrentWeakIdentityMap}).
  * <p/>
  * <p/>
  * <p/>
@@ -18,96 +25,178 @@ import java.util.concurrent.locks.Lock;
  */
 public class WeakConcurrentSet<T> extends AbstractConcurrentSet<T>{
 
+    // the number of iterations after which the entries of collected elements are removed (a power of two)
+    public static final int CleanupInterval = 64;
+
+    // the references of all garbage collected elements that still need to be removed
+    private final ReferenceQueue<T> collected = new ReferenceQueue<T>();
+
+    // the number of created iterators. It is not updated atomically, it only needs to be roughly accurate
+    private int iterations = 0;
+
+    // the index of the entries, it is thread-safe and can be read without holding the lock
+    private final ConcurrentWeakIdentityMap<T, ISetEntry<T>> entries;
 
     public WeakConcurrentSet() {
-        super(new WeakHashMap<T, ISetEntry<T>>());
+        this(new ConcurrentWeakIdentityMap<T, ISetEntry<T>>());
+    }
+
+    private WeakConcurrentSet(ConcurrentWeakIdentityMap<T, ISetEntry<T>> entries) {
+        super(entries);
+        this.entries = entries;
+    }
+
+    @Override
+    public boolean contains(Object element) {
+        ISetEntry<T> entry = entries.get(element);
+        return entry != null && entry.getValue() != null;
+    }
+
+    /**
+     * Remove the entries of all garbage collected elements. This happens automatically with each modification
+     * of the set, so calling this method is only useful for sets that are rarely modified.
+     */
+    public void cleanup() {
+        Reference<? extends T> reference = collected.poll();
+        if (reference == null) {
+            return; // nothing to do, don't acquire the lock
+        }
+        Lock writeLock = lock.writeLock();
+        try {
+            writeLock.lock();
+            do {
+                removeCollectedElement(reference);
+            } while ((reference = collected.poll()) != null);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // remove the entries of collected elements from time to time, even if the set is never modified
+    private void cleanupOnRead() {
+        if ((++iterations & (CleanupInterval - 1)) != 0) {
+            return;
+        }
+        Lock writeLock = lock.writeLock();
+        if (writeLock.tryLock()) {
+            try {
+                beforeWrite();
+            } finally {
+                writeLock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        Lock writeLock = lock.writeLock();
+        try {
+            writeLock.lock();
+            // references of cleared entries that are enqueued later must not unlink the entries of the emptied set
+            for (ISetEntry<T> current = head; current != null; current = current.next()) {
+                ((WeakEntry<T>) current).removed = true;
+            }
+            super.clear();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    protected void beforeWrite() {
+        Reference<? extends T> reference;
+        while ((reference = collected.poll()) != null) {
+            removeCollectedElement(reference);
+        }
+    }
+
+    // Note: This method is expected to be synchronized by the calling code
+    private void removeCollectedElement(Reference<? extends T> reference) {
+        WeakEntry<T> entry = ((ValueReference<T>) reference).entry;
+        if (!entry.removed) {
+            unlink(entry);
+        }
+    }
+
+    @Override
+    protected void unlink(ISetEntry<T> entry) {
+        ((WeakEntry<T>) entry).removed = true;
+        super.unlink(entry);
     }
 
     public Iterator<T> iterator() {
+        cleanupOnRead();
         return new Iterator<T>() {
 
             // the current listelement of this iterator
             // used to keep track of the iteration process
             private ISetEntry<T> current = head;
 
-            // this method will remove all orphaned entries
-            // until it finds the first entry whose value has not yet been garbage collected
-            // the method assumes that the current element is already orphaned and will remove it
-            private void removeOrphans(){
-                Lock writelock = lock.writeLock();
-                try{
-                    writelock.lock();
-                    do {
-                        ISetEntry orphaned = current;
-                        current = current.next();
-                        if (orphaned  == head) {
-                            head = head.next();
-                        }
-                        orphaned.remove();
-                    } while(current != null && current.getValue() == null);
-                }
-                finally {
-                    writelock.unlock();
+            // the value of the current element. It is kept to prevent it from being garbage collected
+            // between hasNext() and next()
+            private T value = skipCollected();
+
+            // move to the first entry whose value has not yet been garbage collected.
+            // entries of collected values are left to the set, the iterator will never modify the set
+            private T skipCollected() {
+                while (current != null) {
+                    T candidate = current.getValue();
+                    if (candidate != null) {
+                        return candidate;
+                    }
+                    current = current.next();
                 }
+                return null;
             }
 
-
             public boolean hasNext() {
-                if (current == null) return false;
-                if (current.getValue() == null) {
-                // trigger removal of orphan references
-                // because a null value indicates that the value has been garbage collected
-                    removeOrphans();
-                    return current != null; // if any entry is left then it will have a value
-                } else {
-                    return true;
-                }
+                return value != null;
             }
 
             public T next() {
-                if (current == null) {
+                if (value == null) {
                     return null;
                 }
-                T value = current.getValue();
-                if (value == null) {    // auto-removal of orphan references
-                    removeOrphans();
-                    return next();
-                } else {
-                    current = current.next();
-                    return value;
-                }
+                T next = value;
+                current = current.next();
+                value = skipCollected();
+                return next;
             }
 
             public void remove() {
                 //throw new UnsupportedOperationException("Explicit removal of set elements is only allowed via the controlling set. Sorry!");
-                if (current == null) {
+                if (value == null) {
                     return;
                 }
                 ISetEntry<T> newCurrent = current.next();
-                WeakConcurrentSet.this.remove(current.getValue());
+                WeakConcurrentSet.this.remove(value);
                 current = newCurrent;
+                value = skipCollected();
             }
         };
     }
 
     @Override
     protected Entry<T> createEntry(T value, Entry<T> next) {
-        return next != null ? new WeakEntry<T>(value, next) : new WeakEntry<T>(value);
+        return next != null ? new WeakEntry<T>(value, next, collected) : new WeakEntry<T>(value, collected);
     }
 
 
     public static class WeakEntry<T> extends Entry<T> {
 
-        private WeakReference<T> value;
+        private final WeakReference<T> value;
+
+        // true if the entry has been removed from the set, its reference might still be enqueued afterwards
+        private boolean removed;
 
-        private WeakEntry(T value, Entry<T> next) {
+        private WeakEntry(T value, Entry<T> next, ReferenceQueue<T> queue) {
             super(next);
-            this.value = new WeakReference<T>(value);
+            this.value = new ValueReference<T>(value, this, queue);
         }
 
-        private WeakEntry(T value) {
+        private WeakEntry(T value, ReferenceQueue<T> queue) {
             super();
-            this.value = new WeakReference<T>(value);
+            this.value = new ValueReference<T>(value, this, queue);
         }
 
         @Override
@@ -115,8 +204,16 @@ public class WeakConcurrentSet<T> extends AbstractConcurrentSet<T>{
             return value.get();
         }
 
+    }
 
+    // a weak reference that knows the entry it belongs to
+    private static class ValueReference<T> extends WeakReference<T> {
 
+        private final WeakEntry<T> entry;
 
+        private ValueReference(T value, WeakEntry<T> entry, ReferenceQueue<T> queue) {
+            super(value, queue);
+            this.entry = entry;
+        }
     }
 }
@@ -1,13 +1,21 @@
 package net.engio.mbassy.dispatch;
 
+import net.engio.mbassy.bus.BusRuntime;
 import net.engio.mbassy.bus.MessagePublication;
 import net.engio.mbassy.bus.config.IBusConfiguration;
+import net.engio.mbassy.common.CopyOnWriteConcurrentSet;
 import net.engio.mbassy.subscription.AbstractSubscriptionContextAware;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 
 /**
  * This invocation will schedule the wrapped (decorated) invocation to be executed asynchronously
+ * <p/>
+ * If the bus is configured to invoke multiple listeners per task
+ * (see {@link net.engio.mbassy.bus.config.Feature.AsynchronousHandlerInvocation#setListenersPerTask(int)}),
+ * the dispatchers use {@link #invokeAll(Iterable, Object, MessagePublication)} to submit the listeners in chunks.
  *
  * @author bennidi
  *         Date: 11/23/12
@@ -18,10 +26,16 @@ public class AsynchronousHandlerInvocation extends AbstractSubscriptionContextAw
 
     private final ExecutorService executor;
 
+    private final int listenersPerTask;
+
     public AsynchronousHandlerInvocation(IHandlerInvocation delegate) {
         super(delegate.getContext());
         this.delegate = delegate;
-        this.executor = delegate.getContext().getRuntime().get(IBusConfiguration.Properties.AsynchronousHandlerExecutor);
+        BusRuntime runtime = delegate.getContext().getRuntime();
+        this.executor = runtime.get(IBusConfiguration.Properties.AsynchronousHandlerExecutor);
+        this.listenersPerTask = runtime.contains(IBusConfiguration.Properties.AsynchronousHandlerListenersPerTask)
+                ? (Integer) runtime.get(IBusConfiguration.Properties.AsynchronousHandlerListenersPerTask)
+                : 1;
     }
 
     /**
@@ -29,11 +43,75 @@ public class AsynchronousHandlerInvocation extends AbstractSubscriptionContextAw
      */
     @Override
     public void invoke(final Object listener, final Object message, final MessagePublication publication){
-        executor.execute(new Runnable() {
-            @Override
-            public void run() {
-                    delegate.invoke(listener, message, publication);
+        // the publication must not finish before the handler has been invoked
+        publication.addPendingHandler();
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        delegate.invoke(listener, message, publication);
+                    } finally {
+                        publication.removePendingHandler();
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            publication.removePendingHandler();
+            throw e;
+        }
+    }
+
+    /**
+     * Invoke the handler for all given listeners, submitting one task per chunk of listeners
+     */
+    public void invokeAll(final Iterable listeners, final Object message, final MessagePublication publication) {
+        if (listenersPerTask == 1) {
+            for (Object listener : listeners) {
+                invoke(listener, message, publication);
             }
-        });
+            return;
+        }
+        if (listeners instanceof CopyOnWriteConcurrentSet) {
+            // the snapshot is immutable and can be shared by the tasks
+            Object[] snapshot = ((CopyOnWriteConcurrentSet) listeners).snapshot();
+            for (int from = 0; from < snapshot.length; from += listenersPerTask) {
+                submit(snapshot, from, (int) Math.min((long) from + listenersPerTask, snapshot.length), message, publication);
+            }
+            return;
+        }
+        List<Object> chunk = new ArrayList<Object>(Math.min(listenersPerTask, 16));
+        for (Object listener : listeners) {
+            chunk.add(listener);
+            if (chunk.size() == listenersPerTask) {
+                submit(chunk.toArray(), 0, chunk.size(), message, publication);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            submit(chunk.toArray(), 0, chunk.size(), message, publication);
+        }
+    }
+
+    // invoke the handler for the listeners in the given range within a single task
+    private void submit(final Object[] listeners, final int from, final int to, final Object message, final MessagePublication publication) {
+        publication.addPendingHandler();
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = from; i < to; i++) {
+                            delegate.invoke(listeners[i], message, publication);
+                        }
+                    } finally {
+                        publication.removePendingHandler();
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            publication.removePendingHandler();
+            throw e;
+        }
     }
 }
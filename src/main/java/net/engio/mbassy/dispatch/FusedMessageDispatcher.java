@@ -0,0 +1,61 @@
+package net.engio.mbassy.dispatch;
+
+import net.engio.mbassy.bus.MessagePublication;
+import net.engio.mbassy.common.CopyOnWriteConcurrentSet;
+import net.engio.mbassy.listener.IMessageFilter;
+import net.engio.mbassy.subscription.AbstractSubscriptionContextAware;
+import net.engio.mbassy.subscription.MessageEnvelope;
+import net.engio.mbassy.subscription.SubscriptionContext;
+
+/**
+ * A dispatcher that implements filtering, wrapping of messages in envelopes and delivery to the listeners
+ * in a single class. It behaves exactly like the chain of {@link FilteredMessageDispatcher},
+ * {@link EnvelopedMessageDispatcher} and {@link MessageDispatcher} but saves the indirections of the chain.
+ */
+public class FusedMessageDispatcher extends AbstractSubscriptionContextAware implements IMessageDispatcher {
+
+    private final IHandlerInvocation invocation;
+
+    // null if the handler is not filtered
+    private final IMessageFilter[] filter;
+
+    private final boolean isEnveloped;
+
+    public FusedMessageDispatcher(SubscriptionContext context, IHandlerInvocation invocation) {
+        super(context);
+        this.invocation = invocation;
+        this.filter = context.getHandler().isFiltered() ? context.getHandler().getFilter() : null;
+        this.isEnveloped = context.getHandler().isEnveloped();
+    }
+
+    @Override
+    public void dispatch(final MessagePublication publication, final Object message, final Iterable listeners) {
+        if (filter != null) {
+            for (IMessageFilter aFilter : filter) {
+                if (!aFilter.accepts(message, getContext())) {
+                    return;
+                }
+            }
+        }
+        publication.markDispatched();
+        Object delivered = isEnveloped ? new MessageEnvelope(message) : message;
+        if (invocation instanceof AsynchronousHandlerInvocation) {
+            ((AsynchronousHandlerInvocation) invocation).invokeAll(listeners, delivered, publication);
+            return;
+        }
+        if (listeners instanceof CopyOnWriteConcurrentSet) {
+            for (Object listener : ((CopyOnWriteConcurrentSet) listeners).snapshot()) {
+                invocation.invoke(listener, delivered, publication);
+            }
+            return;
+        }
+        for (Object listener : listeners) {
+            invocation.invoke(listener, delivered, publication);
+        }
+    }
+
+    @Override
+    public IHandlerInvocation getInvocation() {
+        return invocation;
+    }
+}
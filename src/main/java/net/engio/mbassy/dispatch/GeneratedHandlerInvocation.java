@@ -0,0 +1,85 @@
+package net.engio.mbassy.dispatch;
+
+import net.engio.mbassy.bus.MessagePublication;
+import net.engio.mbassy.dispatch.codegen.IMethodInvoker;
+import net.engio.mbassy.dispatch.codegen.MethodInvokerGenerator;
+import net.engio.mbassy.subscription.SubscriptionContext;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Invokes a message handler using a class that is generated once, when the subscription is created,
+ * and calls the handler method directly. This avoids the overhead of reflective method calls on each
+ * invocation. Error reporting is exactly the same as for reflective invocation.
+ * <p/>
+ * If the handler method is not accessible to generated classes (e.g. non-public methods or classes) or the runtime
+ * does not permit to define classes, the invocation falls back to reflection.
+ */
+public class GeneratedHandlerInvocation extends ReflectiveHandlerInvocation {
+
+    private static final MethodInvokerGenerator Generator = new MethodInvokerGenerator();
+
+    // null if the handler needs to be invoked using reflection
+    private final IMethodInvoker invoker;
+
+    public GeneratedHandlerInvocation(SubscriptionContext context) {
+        super(context);
+        invoker = Generator.generate(context.getHandler().getMethod());
+    }
+
+    /**
+     * Create an invocation that uses the given invoker. If the invoker is null, reflection is used.
+     */
+    public GeneratedHandlerInvocation(SubscriptionContext context, IMethodInvoker invoker) {
+        super(context);
+        this.invoker = invoker;
+    }
+
+    @Override
+    protected void invokeHandler(Method handler, Object listener, Object message) throws IllegalAccessException, InvocationTargetException {
+        if (invoker == null) {
+            super.invokeHandler(handler, listener, message);
+            return;
+        }
+        try {
+            invoker.invoke(listener, message);
+        } catch (Throwable e) {
+            Exception translated = translateError(e, handler, listener, message);
+            if (translated instanceof InvocationTargetException) {
+                throw (InvocationTargetException) translated;
+            }
+            throw (RuntimeException) translated;
+        }
+    }
+
+    /**
+     * Report an exception thrown by generated code that calls the handler method directly
+     * (see {@link GeneratedMessageDispatcher}) exactly like an error of reflective invocation
+     */
+    void handleGeneratedInvocationError(Throwable e, Object listener, Object message, MessagePublication publication) {
+        Method handler = getContext().getHandler().getMethod();
+        handleInvocationError(translateError(e, handler, listener, message), handler, listener, message, publication);
+    }
+
+    // translate into the exceptions that would have been thrown by reflective invocation
+    private static Exception translateError(Throwable e, Method handler, Object listener, Object message) {
+        if (listener == null) {
+            return new NullPointerException();
+        }
+        if (!handler.getDeclaringClass().isInstance(listener)) {
+            return new IllegalArgumentException("object is not an instance of declaring class");
+        }
+        if (message != null && !handler.getParameterTypes()[0].isInstance(message)) {
+            return new IllegalArgumentException("argument type mismatch");
+        }
+        return new InvocationTargetException(e);
+    }
+
+    /**
+     * @return True, if the handler is invoked by a generated class, false if reflection is used
+     */
+    public boolean isGenerated() {
+        return invoker != null;
+    }
+}
@@ -0,0 +1,48 @@
+package net.engio.mbassy.dispatch;
+
+import net.engio.mbassy.bus.MessagePublication;
+import net.engio.mbassy.listener.IMessageFilter;
+import net.engio.mbassy.subscription.AbstractSubscriptionContextAware;
+import net.engio.mbassy.subscription.SubscriptionContext;
+
+/**
+ * The base class of the message dispatchers that are generated by
+ * {@link net.engio.mbassy.dispatch.codegen.MessageDispatcherGenerator}. A generated dispatcher evaluates the filters,
+ * wraps the message in an envelope and calls the handler method of each listener directly from its
+ * {@link #dispatch(MessagePublication, Object, Iterable)} method.
+ * <p/>
+ * One class is generated for all handlers of a listener class that accept the same message type. Each handler
+ * uses its own instance, which selects the code of the handler by its index. Since every filter and every handler
+ * is called from a call site of its own, these call sites see a single receiver class and can be inlined by the JIT.
+ * <p/>
+ * Errors are reported exactly like errors of reflective handler invocation.
+ */
+public abstract class GeneratedMessageDispatcher extends AbstractSubscriptionContextAware implements IMessageDispatcher {
+
+    // the filters of the handler, empty if the handler is not filtered
+    protected final IMessageFilter[] filters;
+
+    // the index of the handler within the generated class
+    protected final int handler;
+
+    private final GeneratedHandlerInvocation invocation;
+
+    protected GeneratedMessageDispatcher(SubscriptionContext context, GeneratedHandlerInvocation invocation, int handler) {
+        super(context);
+        this.invocation = invocation;
+        this.handler = handler;
+        this.filters = context.getHandler().getFilter();
+    }
+
+    /**
+     * Called by the generated code when the handler threw an exception or could not be invoked
+     */
+    protected final void handleError(Throwable error, Object listener, Object message, MessagePublication publication) {
+        invocation.handleGeneratedInvocationError(error, listener, message, publication);
+    }
+
+    @Override
+    public IHandlerInvocation getInvocation() {
+        return invocation;
+    }
+}
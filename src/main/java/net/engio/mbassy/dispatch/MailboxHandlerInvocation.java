@@ -0,0 +1,141 @@
+package net.engio.mbassy.dispatch;
+
+import net.engio.mbassy.bus.BusRuntime;
+import net.engio.mbassy.bus.MessagePublication;
+import net.engio.mbassy.bus.config.IBusConfiguration;
+import net.engio.mbassy.bus.error.PublicationError;
+import net.engio.mbassy.common.ConcurrentWeakIdentityMap;
+import net.engio.mbassy.subscription.AbstractSubscriptionContextAware;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Invokes asynchronous handlers that specify @Synchronized one at a time per listener without blocking any thread
+ * (see {@link net.engio.mbassy.bus.config.Feature.AsynchronousHandlerInvocation#setSynchronizeWithMailboxes(boolean)}).
+ * <p/>
+ * Each listener owns a mailbox that is shared by all its handlers. Invocations are added to the mailbox of the listener
+ * and the first invocation that arrives at an empty mailbox submits a task that drains the mailbox.
+ * All other invocations return immediately, such that there is never more than one executor thread per listener,
+ * instead of many threads that wait for the lock of the listener.
+ * <p/>
+ * The draining task still locks the listener to exclude synchronous handlers that specify @Synchronized,
+ * but it never competes with other asynchronous handlers for the lock.
+ */
+public class MailboxHandlerInvocation extends AbstractSubscriptionContextAware implements IHandlerInvocation {
+
+    // the maximum number of invocations a task processes before it resubmits itself, such that other mailboxes get their turn
+    private static final int Throughput = 64;
+
+    private final IHandlerInvocation delegate;
+
+    private final ExecutorService executor;
+
+    // the mailbox of each listener, shared by all handlers of the bus
+    private final ConcurrentWeakIdentityMap<Object, Mailbox> mailboxes;
+
+    public MailboxHandlerInvocation(IHandlerInvocation delegate) {
+        super(delegate.getContext());
+        this.delegate = delegate;
+        BusRuntime runtime = delegate.getContext().getRuntime();
+        this.executor = runtime.get(IBusConfiguration.Properties.AsynchronousHandlerExecutor);
+        this.mailboxes = runtime.get(IBusConfiguration.Properties.AsynchronousHandlerMailboxes);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void invoke(final Object listener, final Object message, final MessagePublication publication) {
+        Mailbox mailbox = mailboxes.get(listener);
+        if (mailbox == null) {
+            Mailbox created = new Mailbox(executor);
+            mailbox = mailboxes.putIfAbsent(listener, created);
+            if (mailbox == null) {
+                mailbox = created;
+            }
+        }
+        // the publication must not finish before the handler has been invoked
+        publication.addPendingHandler();
+        mailbox.post(new Delivery(delegate, listener, message, publication));
+    }
+
+    // a single handler invocation waiting in a mailbox
+    private static final class Delivery {
+
+        private final IHandlerInvocation invocation;
+        // the mailbox itself must not reference the listener, since it is the value of the listener in a weak map
+        private final Object listener;
+        private final Object message;
+        private final MessagePublication publication;
+
+        private Delivery(IHandlerInvocation invocation, Object listener, Object message, MessagePublication publication) {
+            this.invocation = invocation;
+            this.listener = listener;
+            this.message = message;
+            this.publication = publication;
+        }
+    }
+
+    // the pending deliveries of a listener and the task that processes them
+    private static final class Mailbox implements Runnable {
+
+        private final ConcurrentLinkedQueue<Delivery> deliveries = new ConcurrentLinkedQueue<Delivery>();
+
+        // the number of pending deliveries. The thread that increments it from zero is responsible for processing
+        private final AtomicInteger pending = new AtomicInteger();
+
+        private final ExecutorService executor;
+
+        private Mailbox(ExecutorService executor) {
+            this.executor = executor;
+        }
+
+        private void post(Delivery delivery) {
+            deliveries.offer(delivery);
+            if (pending.getAndIncrement() == 0) {
+                schedule();
+            }
+        }
+
+        private void schedule() {
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                // the executor has been shut down, deliver in the current thread
+                process(Integer.MAX_VALUE);
+            }
+        }
+
+        @Override
+        public void run() {
+            if (process(Throughput)) {
+                schedule();
+            }
+        }
+
+        // process up to the given number of deliveries. Returns true if deliveries are left
+        private boolean process(int maxDeliveries) {
+            for (int i = 0; i < maxDeliveries; i++) {
+                Delivery delivery = deliveries.poll();
+                try {
+                    synchronized (delivery.listener) {
+                        delivery.invocation.invoke(delivery.listener, delivery.message, delivery.publication);
+                    }
+                } catch (Throwable t) {
+                    // the remaining deliveries must not get stuck in the mailbox
+                    delivery.invocation.getContext().handleError(new PublicationError(t, "Error in handler invocation",
+                            null, delivery.listener, delivery.publication));
+                } finally {
+                    delivery.publication.removePendingHandler();
+                }
+                if (pending.decrementAndGet() == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
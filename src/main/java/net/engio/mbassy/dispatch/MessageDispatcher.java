@@ -1,6 +1,7 @@
 package net.engio.mbassy.dispatch;
 
 import net.engio.mbassy.bus.MessagePublication;
+import net.engio.mbassy.common.CopyOnWriteConcurrentSet;
 import net.engio.mbassy.subscription.AbstractSubscriptionContextAware;
 import net.engio.mbassy.subscription.SubscriptionContext;
 
@@ -26,6 +27,17 @@ public class MessageDispatcher extends AbstractSubscriptionContextAware implemen
     @Override
     public void dispatch(final MessagePublication publication, final Object message, final Iterable listeners){
         publication.markDispatched();
+        if (getInvocation() instanceof AsynchronousHandlerInvocation) {
+            ((AsynchronousHandlerInvocation) getInvocation()).invokeAll(listeners, message, publication);
+            return;
+        }
+        if (listeners instanceof CopyOnWriteConcurrentSet) {
+            // iterate the current snapshot without allocating an iterator
+            for (Object listener : ((CopyOnWriteConcurrentSet) listeners).snapshot()) {
+                getInvocation().invoke(listener, message, publication);
+            }
+            return;
+        }
         for (Object listener : listeners) {
             getInvocation().invoke(listener, message, publication);
         }
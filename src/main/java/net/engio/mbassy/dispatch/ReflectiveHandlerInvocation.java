@@ -26,24 +26,41 @@ public class ReflectiveHandlerInvocation extends HandlerInvocation{
     public void invoke(final Object listener, final Object message, MessagePublication publication){
         final Method handler = getContext().getHandler().getMethod();
         try {
-            handler.invoke(listener, message);
-        } catch (IllegalAccessException e) {
+            invokeHandler(handler, listener, message);
+        } catch (Throwable e) {
+            handleInvocationError(e, handler, listener, message, publication);
+        }
+    }
+
+    /**
+     * Report an exception thrown by {@link #invokeHandler(Method, Object, Object)}
+     */
+    protected final void handleInvocationError(Throwable e, Method handler, Object listener, Object message, MessagePublication publication) {
+        if (e instanceof IllegalAccessException) {
             handlePublicationError(publication, new PublicationError(e, "Error during invocation of message handler. " +
                     "The class or method is not accessible",
                     handler, listener, publication));
-        } catch (IllegalArgumentException e) {
+        } else if (e instanceof IllegalArgumentException) {
             handlePublicationError(publication, new PublicationError(e, "Error during invocation of message handler. " +
                     "Wrong arguments passed to method. Was: " + message.getClass()
                     + "Expected: " + handler.getParameterTypes()[0],
                     handler, listener, publication));
-        } catch (InvocationTargetException e) {
+        } else if (e instanceof InvocationTargetException) {
             handlePublicationError(publication, new PublicationError(e, "Error during invocation of message handler. " +
                     "There might be an access rights problem. Do you use non public inner classes?",
                     handler, listener, publication));
-        } catch (Throwable e) {
+        } else {
             handlePublicationError(publication, new PublicationError(e, "Error during invocation of message handler. " +
                     "The handler code threw an exception",
                     handler, listener, publication));
         }
     }
+
+    /**
+     * Invoke the handler method. Exceptions are reported using the same types as {@link Method#invoke(Object, Object...)}
+     * such that subclasses using different invocation mechanisms share the error reporting of this class.
+     */
+    protected void invokeHandler(Method handler, Object listener, Object message) throws IllegalAccessException, InvocationTargetException {
+        handler.invoke(listener, message);
+    }
 }
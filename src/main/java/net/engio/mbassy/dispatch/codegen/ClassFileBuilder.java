@@ -0,0 +1,466 @@
+package net.engio.mbassy.dispatch.codegen;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A minimal writer for java class files. It supports exactly what is needed to generate the small classes
+ * used for handler invocation and message dispatch: a constant pool with class, field and method references,
+ * fields and methods with straight-line code, simple branches, loops and exception handlers.
+ * <p/>
+ * Generated classes use class file version 49 (Java 5) such that no stack map frames need to be computed.
+ * Max stack and max locals must be provided by the caller.
+ */
+final class ClassFileBuilder {
+
+    // access flags
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_PRIVATE = 0x0002;
+    static final int ACC_STATIC = 0x0008;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+    static final int ACC_SYNTHETIC = 0x1000;
+
+    private static final int ClassFileVersion = 49;
+
+    // constant pool tags
+    private static final int CONSTANT_Utf8 = 1;
+    private static final int CONSTANT_Class = 7;
+    private static final int CONSTANT_Fieldref = 9;
+    private static final int CONSTANT_Methodref = 10;
+    private static final int CONSTANT_InterfaceMethodref = 11;
+    private static final int CONSTANT_NameAndType = 12;
+
+    private final ByteArrayOutputStream constantPool = new ByteArrayOutputStream();
+    private final DataOutputStream constants = new DataOutputStream(constantPool);
+    private final Map<String, Integer> constantIndex = new HashMap<String, Integer>();
+    private int constantCount = 1; // index 0 is not used
+
+    private final int thisClass;
+    private final int superClass;
+    private final int[] interfaces;
+    private final List<byte[]> fields = new ArrayList<byte[]>();
+    private final List<byte[]> methods = new ArrayList<byte[]>();
+
+    /**
+     * @param name the internal name of the generated class, e.g. "net/engio/mbassy/Generated"
+     * @param superName the internal name of the super class
+     * @param interfaceNames the internal names of all implemented interfaces
+     */
+    ClassFileBuilder(String name, String superName, String... interfaceNames) {
+        thisClass = classRef(name);
+        superClass = classRef(superName);
+        interfaces = new int[interfaceNames.length];
+        for (int i = 0; i < interfaceNames.length; i++) {
+            interfaces[i] = classRef(interfaceNames[i]);
+        }
+    }
+
+    /**
+     * Get the internal name (slashes instead of dots) of the given class
+     */
+    static String internalName(Class type) {
+        return type.getName().replace('.', '/');
+    }
+
+    /**
+     * Get the type descriptor of the given class, e.g. "Ljava/lang/Object;" or "I"
+     */
+    static String descriptor(Class type) {
+        if (type.isArray()) return internalName(type);
+        if (!type.isPrimitive()) return "L" + internalName(type) + ";";
+        if (type == void.class) return "V";
+        if (type == boolean.class) return "Z";
+        if (type == byte.class) return "B";
+        if (type == char.class) return "C";
+        if (type == short.class) return "S";
+        if (type == int.class) return "I";
+        if (type == long.class) return "J";
+        if (type == float.class) return "F";
+        return "D";
+    }
+
+    /**
+     * Get the method descriptor for the given return and parameter types, e.g. "(Ljava/lang/Object;)V"
+     */
+    static String descriptor(Class returnType, Class... parameterTypes) {
+        StringBuilder descriptor = new StringBuilder("(");
+        for (Class parameterType : parameterTypes) {
+            descriptor.append(descriptor(parameterType));
+        }
+        return descriptor.append(')').append(descriptor(returnType)).toString();
+    }
+
+    int utf8(String value) {
+        Integer index = constantIndex.get("U" + value);
+        if (index == null) {
+            index = write(CONSTANT_Utf8, value, -1, -1);
+            constantIndex.put("U" + value, index);
+        }
+        return index;
+    }
+
+    int classRef(String internalName) {
+        Integer index = constantIndex.get("C" + internalName);
+        if (index == null) {
+            index = write(CONSTANT_Class, null, utf8(internalName), -1);
+            constantIndex.put("C" + internalName, index);
+        }
+        return index;
+    }
+
+    int fieldRef(String owner, String name, String descriptor) {
+        return memberRef(CONSTANT_Fieldref, owner, name, descriptor);
+    }
+
+    int methodRef(String owner, String name, String descriptor, boolean isInterface) {
+        return memberRef(isInterface ? CONSTANT_InterfaceMethodref : CONSTANT_Methodref, owner, name, descriptor);
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor) {
+        String key = tag + owner + "." + name + descriptor;
+        Integer index = constantIndex.get(key);
+        if (index == null) {
+            int classIndex = classRef(owner);
+            String nameAndTypeKey = "N" + name + descriptor;
+            Integer nameAndType = constantIndex.get(nameAndTypeKey);
+            if (nameAndType == null) {
+                nameAndType = write(CONSTANT_NameAndType, null, utf8(name), utf8(descriptor));
+                constantIndex.put(nameAndTypeKey, nameAndType);
+            }
+            index = write(tag, null, classIndex, nameAndType);
+            constantIndex.put(key, index);
+        }
+        return index;
+    }
+
+    private int write(int tag, String value, int first, int second) {
+        try {
+            constants.writeByte(tag);
+            if (value != null) {
+                constants.writeUTF(value);
+            } else {
+                constants.writeShort(first);
+                if (second >= 0) constants.writeShort(second);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // can not happen with in-memory streams
+        }
+        return constantCount++;
+    }
+
+    void addField(int access, String name, String descriptor) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream field = new DataOutputStream(bytes);
+        try {
+            field.writeShort(access);
+            field.writeShort(utf8(name));
+            field.writeShort(utf8(descriptor));
+            field.writeShort(0); // no attributes
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        fields.add(bytes.toByteArray());
+    }
+
+    /**
+     * Add a method to the generated class. The returned code object is used to emit the method body
+     * and must be completed by calling {@link Code#end()}
+     */
+    Code addMethod(int access, String name, String descriptor, int maxStack, int maxLocals) {
+        return new Code(access, name, descriptor, maxStack, maxLocals);
+    }
+
+    byte[] toByteArray() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream classFile = new DataOutputStream(bytes);
+        try {
+            classFile.writeInt(0xCAFEBABE);
+            classFile.writeShort(0);
+            classFile.writeShort(ClassFileVersion);
+            classFile.writeShort(constantCount);
+            constants.flush();
+            constantPool.writeTo(classFile);
+            classFile.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER | ACC_SYNTHETIC);
+            classFile.writeShort(thisClass);
+            classFile.writeShort(superClass);
+            classFile.writeShort(interfaces.length);
+            for (int anInterface : interfaces) {
+                classFile.writeShort(anInterface);
+            }
+            classFile.writeShort(fields.size());
+            for (byte[] field : fields) {
+                classFile.write(field);
+            }
+            classFile.writeShort(methods.size());
+            for (byte[] method : methods) {
+                classFile.write(method);
+            }
+            classFile.writeShort(0); // no class attributes
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * A label marks a position in the code that can be used as target of branch instructions
+     */
+    static final class Label {
+
+        private int position = -1;
+
+        // the positions of all branch offsets that refer to this label: {offset position, instruction position, width}
+        private final List<int[]> references = new ArrayList<int[]>();
+    }
+
+    /**
+     * The byte code of a single method
+     */
+    final class Code {
+
+        // opcodes
+        static final int ACONST_NULL = 0x01;
+        static final int ILOAD = 0x15;
+        static final int ALOAD = 0x19;
+        static final int AALOAD = 0x32;
+        static final int IINC = 0x84;
+        static final int ISTORE = 0x36;
+        static final int ASTORE = 0x3a;
+        static final int POP = 0x57;
+        static final int POP2 = 0x58;
+        static final int DUP = 0x59;
+        static final int IFEQ = 0x99;
+        static final int IFNE = 0x9a;
+        static final int IF_ICMPGE = 0xa2;
+        static final int IF_ACMPEQ = 0xa5;
+        static final int IF_ACMPNE = 0xa6;
+        static final int GOTO = 0xa7;
+        static final int TABLESWITCH = 0xaa;
+        static final int IRETURN = 0xac;
+        static final int ARETURN = 0xb0;
+        static final int RETURN = 0xb1;
+        static final int GETSTATIC = 0xb2;
+        static final int GETFIELD = 0xb4;
+        static final int PUTFIELD = 0xb5;
+        static final int INVOKEVIRTUAL = 0xb6;
+        static final int INVOKESPECIAL = 0xb7;
+        static final int INVOKESTATIC = 0xb8;
+        static final int INVOKEINTERFACE = 0xb9;
+        static final int NEW = 0xbb;
+        static final int ARRAYLENGTH = 0xbe;
+        static final int ATHROW = 0xbf;
+        static final int CHECKCAST = 0xc0;
+        static final int INSTANCEOF = 0xc1;
+
+        private final int access;
+        private final String name;
+        private final String descriptor;
+        private final int maxStack;
+        private final int maxLocals;
+        private final List<Label> labels = new ArrayList<Label>();
+        // the entries of the exception table: {start, end, handler} and the index of the caught type
+        private final List<Label[]> tryBlocks = new ArrayList<Label[]>();
+        private final List<Integer> caughtTypes = new ArrayList<Integer>();
+        private byte[] code = new byte[64];
+        private int length = 0;
+
+        private Code(int access, String name, String descriptor, int maxStack, int maxLocals) {
+            this.access = access;
+            this.name = name;
+            this.descriptor = descriptor;
+            this.maxStack = maxStack;
+            this.maxLocals = maxLocals;
+        }
+
+        private void put(int value) {
+            if (length == code.length) {
+                byte[] grown = new byte[code.length * 2];
+                System.arraycopy(code, 0, grown, 0, length);
+                code = grown;
+            }
+            code[length++] = (byte) value;
+        }
+
+        private void putShort(int value) {
+            put(value >> 8);
+            put(value);
+        }
+
+        private void putInt(int value) {
+            putShort(value >> 16);
+            putShort(value);
+        }
+
+        private void putAt(int position, int value, int width) {
+            for (int i = width - 1; i >= 0; i--) {
+                code[position++] = (byte) (value >> (i * 8));
+            }
+        }
+
+        /**
+         * Emit an instruction without operands
+         */
+        Code op(int opcode) {
+            put(opcode);
+            return this;
+        }
+
+        /**
+         * Emit an instruction that accesses a local variable (load/store)
+         */
+        Code local(int opcode, int index) {
+            put(opcode);
+            put(index);
+            return this;
+        }
+
+        /**
+         * Increment an int local variable by the given (byte) value
+         */
+        Code iinc(int index, int value) {
+            put(IINC);
+            put(index);
+            put(value);
+            return this;
+        }
+
+        /**
+         * Push an int constant (-1..5 or any byte value)
+         */
+        Code iconst(int value) {
+            if (value >= -1 && value <= 5) {
+                put(0x03 + value); // ICONST_M1 .. ICONST_5
+            } else {
+                put(0x10); // BIPUSH
+                put(value);
+            }
+            return this;
+        }
+
+        /**
+         * Emit an instruction that takes a type operand (checkcast, instanceof, new)
+         */
+        Code type(int opcode, Class type) {
+            put(opcode);
+            putShort(classRef(type.isArray() ? descriptor(type) : internalName(type)));
+            return this;
+        }
+
+        Code field(int opcode, String owner, String name, String descriptor) {
+            put(opcode);
+            putShort(fieldRef(owner, name, descriptor));
+            return this;
+        }
+
+        /**
+         * Emit a method invocation. The number of argument slots is needed for invokeinterface
+         */
+        Code invoke(int opcode, String owner, String name, String descriptor, int argumentSlots) {
+            put(opcode);
+            putShort(methodRef(owner, name, descriptor, opcode == INVOKEINTERFACE));
+            if (opcode == INVOKEINTERFACE) {
+                put(argumentSlots + 1); // including the receiver
+                put(0);
+            }
+            return this;
+        }
+
+        Label newLabel() {
+            Label label = new Label();
+            labels.add(label);
+            return label;
+        }
+
+        Code mark(Label label) {
+            label.position = length;
+            return this;
+        }
+
+        /**
+         * Emit a conditional or unconditional branch to the given label
+         */
+        Code jump(int opcode, Label target) {
+            int instruction = length;
+            put(opcode);
+            target.references.add(new int[]{length, instruction, 2});
+            putShort(0);
+            return this;
+        }
+
+        /**
+         * Add an exception handler for the code between start (inclusive) and end (exclusive). The handler
+         * is entered with the caught exception on the stack.
+         *
+         * @param caughtType The internal name of the caught exception class
+         */
+        Code tryCatch(Label start, Label end, Label handler, String caughtType) {
+            tryBlocks.add(new Label[]{start, end, handler});
+            caughtTypes.add(classRef(caughtType));
+            return this;
+        }
+
+        /**
+         * Emit a table switch over the values 0..targets.length-1
+         */
+        Code tableswitch(Label defaultTarget, Label... targets) {
+            int instruction = length;
+            put(TABLESWITCH);
+            while (length % 4 != 0) put(0); // padding
+            defaultTarget.references.add(new int[]{length, instruction, 4});
+            putInt(0);
+            putInt(0);
+            putInt(targets.length - 1);
+            for (Label target : targets) {
+                target.references.add(new int[]{length, instruction, 4});
+                putInt(0);
+            }
+            return this;
+        }
+
+        /**
+         * Complete the method and add it to the enclosing class
+         */
+        void end() {
+            for (Label label : labels) {
+                if (label.position < 0 && !label.references.isEmpty()) {
+                    throw new IllegalStateException("Unresolved label in method " + name);
+                }
+                for (int[] reference : label.references) {
+                    putAt(reference[0], label.position - reference[1], reference[2]);
+                }
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream method = new DataOutputStream(bytes);
+            try {
+                method.writeShort(access);
+                method.writeShort(utf8(name));
+                method.writeShort(utf8(descriptor));
+                method.writeShort(1); // the code attribute
+                method.writeShort(utf8("Code"));
+                method.writeInt(12 + length + 8 * tryBlocks.size());
+                method.writeShort(maxStack);
+                method.writeShort(maxLocals);
+                method.writeInt(length);
+                method.write(code, 0, length);
+                method.writeShort(tryBlocks.size());
+                for (int i = 0; i < tryBlocks.size(); i++) {
+                    Label[] block = tryBlocks.get(i);
+                    method.writeShort(block[0].position);
+                    method.writeShort(block[1].position);
+                    method.writeShort(block[2].position);
+                    method.writeShort(caughtTypes.get(i));
+                }
+                method.writeShort(0); // no attributes
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            methods.add(bytes.toByteArray());
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package net.engio.mbassy.dispatch.codegen;
+
+import net.engio.mbassy.bus.MessagePublication;
+import net.engio.mbassy.common.ConcurrentWeakIdentityMap;
+import net.engio.mbassy.common.CopyOnWriteConcurrentSet;
+import net.engio.mbassy.dispatch.GeneratedHandlerInvocation;
+import net.engio.mbassy.dispatch.GeneratedMessageDispatcher;
+import net.engio.mbassy.listener.IMessageFilter;
+import net.engio.mbassy.subscription.AbstractSubscriptionContextAware;
+import net.engio.mbassy.subscription.MessageEnvelope;
+import net.engio.mbassy.subscription.SubscriptionContext;
+
+import java.lang.ref.WeakReference;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The class loader used to define generated classes. All classes generated for listeners of the same class loader
+ * share one loader. The loaders are referenced weakly, such that a loader is unloaded as soon as none of its
+ * generated classes is in use anymore and it never keeps the class loader of the listeners alive.
+ * <p/>
+ * Generated classes must see the classes of the listener (resolved by the parent, which is the class loader
+ * of the listener class) as well as the classes of mbassador. The mbassador types that generated classes reference
+ * are resolved by the class loader of mbassador, because it might not be visible from the listener's class loader
+ * (e.g. in containers). Any other type is resolved by the parent, even if it lives in a package of mbassador.
+ */
+final class GeneratedClassLoader extends ClassLoader {
+
+    private static final ClassLoader MBassadorClassLoader = GeneratedClassLoader.class.getClassLoader();
+
+    // the types referenced by the classes of MethodInvokerGenerator and MessageDispatcherGenerator and their super types
+    private static final Set<String> MBassadorTypes = typeNames(IMethodInvoker.class, GeneratedMessageDispatcher.class,
+            AbstractSubscriptionContextAware.class, SubscriptionContext.class, GeneratedHandlerInvocation.class,
+            MessagePublication.class, IMessageFilter.class, MessageEnvelope.class, CopyOnWriteConcurrentSet.class);
+
+    // the generated classes and their instances keep their loader alive
+    private static final ConcurrentWeakIdentityMap<ClassLoader, WeakReference<GeneratedClassLoader>> LoadersByParent
+            = new ConcurrentWeakIdentityMap<ClassLoader, WeakReference<GeneratedClassLoader>>();
+
+    private GeneratedClassLoader(ClassLoader parent) {
+        super(parent);
+    }
+
+    /**
+     * Get the loader of the classes that are generated for listeners of the given class loader
+     */
+    static GeneratedClassLoader forParent(ClassLoader parent) {
+        if (parent == null) {
+            return new GeneratedClassLoader(null); // listeners of the bootstrap class loader
+        }
+        GeneratedClassLoader loader = get(parent);
+        if (loader != null) {
+            return loader;
+        }
+        synchronized (LoadersByParent) {
+            loader = get(parent);
+            if (loader == null) {
+                loader = new GeneratedClassLoader(parent);
+                LoadersByParent.put(parent, new WeakReference<GeneratedClassLoader>(loader));
+            }
+            return loader;
+        }
+    }
+
+    private static GeneratedClassLoader get(ClassLoader parent) {
+        WeakReference<GeneratedClassLoader> reference = LoadersByParent.get(parent);
+        return reference == null ? null : reference.get();
+    }
+
+    private static Set<String> typeNames(Class... types) {
+        Set<String> names = new HashSet<String>();
+        for (Class type : types) {
+            addTypeNames(type, names);
+        }
+        return names;
+    }
+
+    private static void addTypeNames(Class type, Set<String> names) {
+        if (type == null || !type.getName().startsWith("net.engio.mbassy.") || !names.add(type.getName())) {
+            return;
+        }
+        addTypeNames(type.getSuperclass(), names);
+        for (Class implemented : type.getInterfaces()) {
+            addTypeNames(implemented, names);
+        }
+    }
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+        if (MBassadorClassLoader != null && MBassadorTypes.contains(name)) {
+            return MBassadorClassLoader.loadClass(name);
+        }
+        return super.loadClass(name, resolve);
+    }
+
+    Class<?> define(String name, byte[] classFile) {
+        return defineClass(name, classFile, 0, classFile.length);
+    }
+}
@@ -0,0 +1,15 @@
+package net.engio.mbassy.dispatch.codegen;
+
+/**
+ * A method invoker calls one specific handler method on a given listener. Implementations are generated
+ * at runtime by the {@link MethodInvokerGenerator} and call the handler method directly, without any
+ * of the overhead of {@link java.lang.reflect.Method#invoke(Object, Object...)}.
+ * <p/>
+ * Any exception thrown by the handler method is propagated unchanged. The same is true for exceptions caused by
+ * passing a listener or message of a wrong type.
+ */
+public interface IMethodInvoker {
+
+    void invoke(Object listener, Object message);
+
+}
@@ -0,0 +1,218 @@
+package net.engio.mbassy.dispatch.codegen;
+
+import net.engio.mbassy.bus.MessagePublication;
+import net.engio.mbassy.common.CopyOnWriteConcurrentSet;
+import net.engio.mbassy.dispatch.GeneratedHandlerInvocation;
+import net.engio.mbassy.dispatch.GeneratedMessageDispatcher;
+import net.engio.mbassy.listener.IMessageFilter;
+import net.engio.mbassy.listener.MessageHandler;
+import net.engio.mbassy.subscription.AbstractSubscriptionContextAware;
+import net.engio.mbassy.subscription.MessageEnvelope;
+import net.engio.mbassy.subscription.SubscriptionContext;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static net.engio.mbassy.dispatch.codegen.ClassFileBuilder.*;
+import static net.engio.mbassy.dispatch.codegen.ClassFileBuilder.Code.*;
+
+/**
+ * Generates subclasses of {@link GeneratedMessageDispatcher} for the handlers of a listener class that accept
+ * the same message type. The generated dispatch method selects the code of a handler by its index, evaluates
+ * each filter of the handler, marks the publication as dispatched, wraps the message in an envelope if required
+ * and calls the handler method of every listener within a try/catch block. It behaves exactly like the chain of
+ * {@link net.engio.mbassy.dispatch.FilteredMessageDispatcher}, {@link net.engio.mbassy.dispatch.EnvelopedMessageDispatcher},
+ * {@link net.engio.mbassy.dispatch.MessageDispatcher} and {@link GeneratedHandlerInvocation}.
+ * <p/>
+ * Only handler methods that can be invoked directly (see {@link MethodInvokerGenerator#canInvokeDirectly(Method)}) are
+ * supported. Handlers that need a decorated invocation (asynchronous or synchronized handlers) must be dispatched
+ * otherwise.
+ */
+public class MessageDispatcherGenerator {
+
+    private static final String DispatcherPrefix = "net.engio.mbassy.dispatch.codegen.MessageDispatcher$";
+
+    private static final AtomicInteger GeneratedDispatchers = new AtomicInteger();
+
+    private static final String Base = ClassFileBuilder.internalName(GeneratedMessageDispatcher.class);
+
+    private static final String ConstructorDescriptor = descriptor(void.class, SubscriptionContext.class, GeneratedHandlerInvocation.class, int.class);
+
+    // the local variables of the dispatch method
+    private static final int This = 0;
+    private static final int Publication = 1;
+    private static final int Message = 2;
+    private static final int Listeners = 3;
+    private static final int Cursor = 4; // the iterator or the snapshot of the listeners
+    private static final int Listener = 5;
+    private static final int Index = 6;
+    private static final int Error = 7;
+
+    /**
+     * Generate a dispatcher class for the given handlers.
+     *
+     * @param listener The listener class that declares the handlers
+     * @param handlers The handlers of the listener class, null for handlers that are not dispatched by the generated class.
+     *                 The index of a handler must be passed to the constructor of the dispatcher
+     * @return The constructor (SubscriptionContext, GeneratedHandlerInvocation, int) of the generated class or null, if
+     * the class could not be generated (e.g. due to a security manager that prevents creation of class loaders)
+     */
+    public Constructor<? extends GeneratedMessageDispatcher> generate(Class listener, MessageHandler[] handlers) {
+        for (MessageHandler handler : handlers) {
+            if (handler != null && !MethodInvokerGenerator.canInvokeDirectly(handler.getMethod())) {
+                throw new IllegalArgumentException("The handler can not be invoked directly: " + handler.getMethod());
+            }
+        }
+        try {
+            String name = DispatcherPrefix + GeneratedDispatchers.incrementAndGet();
+            byte[] classFile = createClassFile(name.replace('.', '/'), handlers);
+            Class<?> dispatcherClass = GeneratedClassLoader.forParent(listener.getClassLoader()).define(name, classFile);
+            return dispatcherClass.asSubclass(GeneratedMessageDispatcher.class)
+                    .getConstructor(SubscriptionContext.class, GeneratedHandlerInvocation.class, int.class);
+        } catch (Throwable e) {
+            // fall back to the configured dispatchers in any case of failure
+            return null;
+        }
+    }
+
+    private static byte[] createClassFile(String name, MessageHandler[] handlers) {
+        ClassFileBuilder builder = new ClassFileBuilder(name, Base);
+
+        builder.addMethod(ACC_PUBLIC, "<init>", ConstructorDescriptor, 4, 4)
+                .local(ALOAD, 0)
+                .local(ALOAD, 1)
+                .local(ALOAD, 2)
+                .local(ILOAD, 3)
+                .invoke(INVOKESPECIAL, Base, "<init>", ConstructorDescriptor, 3)
+                .op(RETURN)
+                .end();
+
+        ClassFileBuilder.Code dispatch = builder.addMethod(ACC_PUBLIC, "dispatch",
+                descriptor(void.class, MessagePublication.class, Object.class, Iterable.class), 6, 8);
+        ClassFileBuilder.Label done = dispatch.newLabel();
+        ClassFileBuilder.Label[] cases = new ClassFileBuilder.Label[handlers.length];
+        for (int i = 0; i < handlers.length; i++) {
+            cases[i] = handlers[i] != null ? dispatch.newLabel() : done;
+        }
+        dispatch.local(ALOAD, This)
+                .field(GETFIELD, name, "handler", "I")
+                .tableswitch(done, cases);
+        for (int i = 0; i < handlers.length; i++) {
+            if (cases[i] != done) {
+                dispatch.mark(cases[i]);
+                dispatchHandler(dispatch, name, handlers[i], done);
+            }
+        }
+        dispatch.mark(done).op(RETURN).end();
+        return builder.toByteArray();
+    }
+
+    // the code of a single handler, it branches to done when the message has been dispatched or filtered
+    private static void dispatchHandler(ClassFileBuilder.Code code, String name, MessageHandler handler, ClassFileBuilder.Label done) {
+        String filter = ClassFileBuilder.internalName(IMessageFilter.class);
+        // each filter is called from a call site of its own
+        for (int i = 0; i < handler.getFilter().length; i++) {
+            code.local(ALOAD, This)
+                    .field(GETFIELD, name, "filters", descriptor(IMessageFilter[].class))
+                    .iconst(i)
+                    .op(AALOAD)
+                    .local(ALOAD, Message)
+                    .local(ALOAD, This)
+                    .invoke(INVOKEVIRTUAL, ClassFileBuilder.internalName(AbstractSubscriptionContextAware.class),
+                            "getContext", "()" + descriptor(SubscriptionContext.class), 0)
+                    .invoke(INVOKEINTERFACE, filter, "accepts", descriptor(boolean.class, Object.class, SubscriptionContext.class), 2)
+                    .jump(IFEQ, done);
+        }
+        code.local(ALOAD, Publication)
+                .invoke(INVOKEVIRTUAL, ClassFileBuilder.internalName(MessagePublication.class), "markDispatched", "()V", 0);
+        if (handler.isEnveloped()) {
+            String envelope = ClassFileBuilder.internalName(MessageEnvelope.class);
+            code.type(NEW, MessageEnvelope.class)
+                    .op(DUP)
+                    .local(ALOAD, Message)
+                    .invoke(INVOKESPECIAL, envelope, "<init>", descriptor(void.class, Object.class), 1)
+                    .local(ASTORE, Message);
+        }
+
+        // iterate the current snapshot of copy-on-write sets without allocating an iterator
+        String snapshotSet = ClassFileBuilder.internalName(CopyOnWriteConcurrentSet.class);
+        ClassFileBuilder.Label iterate = code.newLabel();
+        ClassFileBuilder.Label nextElement = code.newLabel();
+        code.local(ALOAD, Listeners)
+                .type(INSTANCEOF, CopyOnWriteConcurrentSet.class)
+                .jump(IFEQ, iterate)
+                .local(ALOAD, Listeners)
+                .type(CHECKCAST, CopyOnWriteConcurrentSet.class)
+                .invoke(INVOKEVIRTUAL, snapshotSet, "snapshot", "()" + descriptor(Object[].class), 0)
+                .local(ASTORE, Cursor)
+                .iconst(0)
+                .local(ISTORE, Index)
+                .mark(nextElement)
+                .local(ILOAD, Index)
+                .local(ALOAD, Cursor)
+                .op(ARRAYLENGTH)
+                .jump(IF_ICMPGE, done)
+                .local(ALOAD, Cursor)
+                .local(ILOAD, Index)
+                .op(AALOAD)
+                .local(ASTORE, Listener)
+                .iinc(Index, 1);
+        invokeHandler(code, name, handler, nextElement);
+
+        // any other set is iterated using its iterator
+        String iterator = ClassFileBuilder.internalName(Iterator.class);
+        ClassFileBuilder.Label hasNext = code.newLabel();
+        code.mark(iterate)
+                .local(ALOAD, Listeners)
+                .invoke(INVOKEINTERFACE, ClassFileBuilder.internalName(Iterable.class), "iterator", "()" + descriptor(Iterator.class), 0)
+                .local(ASTORE, Cursor)
+                .mark(hasNext)
+                .local(ALOAD, Cursor)
+                .invoke(INVOKEINTERFACE, iterator, "hasNext", "()Z", 0)
+                .jump(IFEQ, done)
+                .local(ALOAD, Cursor)
+                .invoke(INVOKEINTERFACE, iterator, "next", "()Ljava/lang/Object;", 0)
+                .local(ASTORE, Listener);
+        invokeHandler(code, name, handler, hasNext);
+    }
+
+    // call the handler for the current listener and continue with the next one. Errors are reported by the base class
+    private static void invokeHandler(ClassFileBuilder.Code code, String name, MessageHandler handler, ClassFileBuilder.Label next) {
+        Method method = handler.getMethod();
+        Class listener = method.getDeclaringClass();
+        Class message = method.getParameterTypes()[0];
+        Class returnType = method.getReturnType();
+        ClassFileBuilder.Label start = code.newLabel();
+        ClassFileBuilder.Label end = code.newLabel();
+        ClassFileBuilder.Label error = code.newLabel();
+
+        code.mark(start)
+                .local(ALOAD, Listener)
+                .type(CHECKCAST, listener)
+                .local(ALOAD, Message)
+                .type(CHECKCAST, message)
+                .invoke(listener.isInterface() ? INVOKEINTERFACE : INVOKEVIRTUAL, ClassFileBuilder.internalName(listener),
+                        method.getName(), descriptor(returnType, message), 1);
+        // the result of the handler is discarded
+        if (returnType == long.class || returnType == double.class) {
+            code.op(POP2);
+        } else if (returnType != void.class) {
+            code.op(POP);
+        }
+        code.mark(end)
+                .jump(GOTO, next)
+                .mark(error)
+                .local(ASTORE, Error)
+                .local(ALOAD, This)
+                .local(ALOAD, Error)
+                .local(ALOAD, Listener)
+                .local(ALOAD, Message)
+                .local(ALOAD, Publication)
+                .invoke(INVOKEVIRTUAL, name, "handleError",
+                        descriptor(void.class, Throwable.class, Object.class, Object.class, MessagePublication.class), 4)
+                .jump(GOTO, next)
+                .tryCatch(start, end, error, "java/lang/Throwable");
+    }
+}
@@ -0,0 +1,187 @@
+package net.engio.mbassy.dispatch.codegen;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static net.engio.mbassy.dispatch.codegen.ClassFileBuilder.*;
+import static net.engio.mbassy.dispatch.codegen.ClassFileBuilder.Code.*;
+
+/**
+ * Generates implementations of {@link IMethodInvoker} that call a given handler method with
+ * a regular (virtual) method invocation. This allows the JIT to treat the call to the handler
+ * like any other call and, in contrast to {@link Method#invoke(Object, Object...)}, does not require
+ * any argument arrays, access checks or wrapping of exceptions.
+ * <p/>
+ * Invokers can be generated for single handler methods or for all handlers of a listener class at once.
+ * In the latter case a single class is generated that selects the handler method by its index. This reduces
+ * the number of generated classes and allows the JIT to share profiling information among all handlers of
+ * the same listener class.
+ * <p/>
+ * Invokers can only be generated for handler methods that are accessible from any other class,
+ * that is public methods with a single non-primitive parameter that are declared in public classes
+ * and whose parameter type is public. For all other methods no invoker is generated.
+ */
+public class MethodInvokerGenerator {
+
+    private static final String InvokerPrefix = "net.engio.mbassy.dispatch.codegen.MethodInvoker$";
+
+    private static final String ListenerInvokerPrefix = "net.engio.mbassy.dispatch.codegen.ListenerInvoker$";
+
+    private static final AtomicInteger GeneratedInvokers = new AtomicInteger();
+
+    /**
+     * Check whether an invoker can be generated for the given method
+     */
+    public static boolean canInvokeDirectly(Method handler) {
+        int modifiers = handler.getModifiers();
+        Class[] parameterTypes = handler.getParameterTypes();
+        return Modifier.isPublic(modifiers)
+                && !Modifier.isStatic(modifiers)
+                && parameterTypes.length == 1
+                && !parameterTypes[0].isPrimitive()
+                && isPublic(handler.getDeclaringClass())
+                && isPublic(parameterTypes[0]);
+    }
+
+    private static boolean isPublic(Class type) {
+        while (type.isArray()) {
+            type = type.getComponentType();
+        }
+        for (Class current = type; current != null; current = current.getEnclosingClass()) {
+            if (!Modifier.isPublic(current.getModifiers())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Generate an invoker for the given handler method.
+     *
+     * @return The invoker or null, if the handler method can not be invoked directly or the class could not be generated
+     * (e.g. due to a security manager that prevents creation of class loaders)
+     */
+    public IMethodInvoker generate(Method handler) {
+        if (!canInvokeDirectly(handler)) {
+            return null;
+        }
+        try {
+            String name = InvokerPrefix + GeneratedInvokers.incrementAndGet();
+            byte[] classFile = createClassFile(internalName(name), handler);
+            Class<?> invokerClass = GeneratedClassLoader.forParent(handler.getDeclaringClass().getClassLoader())
+                    .define(name, classFile);
+            return (IMethodInvoker) invokerClass.getConstructor().newInstance();
+        } catch (Throwable e) {
+            // fall back to reflection in any case of failure
+            return null;
+        }
+    }
+
+    private static String internalName(String className) {
+        return className.replace('.', '/');
+    }
+
+    private static byte[] createClassFile(String name, Method handler) {
+        ClassFileBuilder builder = new ClassFileBuilder(name, "java/lang/Object", ClassFileBuilder.internalName(IMethodInvoker.class));
+
+        builder.addMethod(ACC_PUBLIC, "<init>", "()V", 1, 1)
+                .local(ALOAD, 0)
+                .invoke(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", 0)
+                .op(RETURN)
+                .end();
+
+        ClassFileBuilder.Code invoke = builder.addMethod(ACC_PUBLIC, "invoke", "(Ljava/lang/Object;Ljava/lang/Object;)V", 2, 3);
+        invokeHandler(invoke, handler);
+        invoke.op(RETURN).end();
+        return builder.toByteArray();
+    }
+
+    /**
+     * Generate an invoker for each of the given handler methods of a listener class. All invokers share the same
+     * generated class.
+     *
+     * @return An array that contains the invoker for each handler at the same index. Entries are null for
+     * handlers that can not be invoked directly. If no class could be generated, all entries are null.
+     */
+    public IMethodInvoker[] generate(Class listener, Method[] handlers) {
+        IMethodInvoker[] invokers = new IMethodInvoker[handlers.length];
+        boolean anyInvokedDirectly = false;
+        for (Method handler : handlers) {
+            anyInvokedDirectly |= canInvokeDirectly(handler);
+        }
+        if (!anyInvokedDirectly) {
+            return invokers;
+        }
+        try {
+            String name = ListenerInvokerPrefix + GeneratedInvokers.incrementAndGet();
+            byte[] classFile = createClassFile(internalName(name), handlers);
+            Class<?> invokerClass = GeneratedClassLoader.forParent(listener.getClassLoader()).define(name, classFile);
+            Constructor<?> constructor = invokerClass.getConstructor(int.class);
+            for (int i = 0; i < handlers.length; i++) {
+                if (canInvokeDirectly(handlers[i])) {
+                    invokers[i] = (IMethodInvoker) constructor.newInstance(i);
+                }
+            }
+        } catch (Throwable e) {
+            // fall back to reflection in any case of failure
+            Arrays.fill(invokers, null);
+        }
+        return invokers;
+    }
+
+    private static byte[] createClassFile(String name, Method[] handlers) {
+        ClassFileBuilder builder = new ClassFileBuilder(name, "java/lang/Object", ClassFileBuilder.internalName(IMethodInvoker.class));
+        builder.addField(ACC_PRIVATE | ACC_FINAL, "handler", "I");
+
+        builder.addMethod(ACC_PUBLIC, "<init>", "(I)V", 2, 2)
+                .local(ALOAD, 0)
+                .invoke(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", 0)
+                .local(ALOAD, 0)
+                .local(ILOAD, 1)
+                .field(PUTFIELD, name, "handler", "I")
+                .op(RETURN)
+                .end();
+
+        // switch over the index of the handler that this instance invokes
+        ClassFileBuilder.Code invoke = builder.addMethod(ACC_PUBLIC, "invoke", "(Ljava/lang/Object;Ljava/lang/Object;)V", 2, 3);
+        ClassFileBuilder.Label done = invoke.newLabel();
+        ClassFileBuilder.Label[] cases = new ClassFileBuilder.Label[handlers.length];
+        for (int i = 0; i < handlers.length; i++) {
+            cases[i] = canInvokeDirectly(handlers[i]) ? invoke.newLabel() : done;
+        }
+        invoke.local(ALOAD, 0)
+                .field(GETFIELD, name, "handler", "I")
+                .tableswitch(done, cases);
+        for (int i = 0; i < handlers.length; i++) {
+            if (cases[i] != done) {
+                invoke.mark(cases[i]);
+                invokeHandler(invoke, handlers[i]);
+                invoke.op(RETURN);
+            }
+        }
+        invoke.mark(done).op(RETURN).end();
+        return builder.toByteArray();
+    }
+
+    // cast listener and message and call the handler
+    private static void invokeHandler(ClassFileBuilder.Code code, Method handler) {
+        Class listener = handler.getDeclaringClass();
+        Class message = handler.getParameterTypes()[0];
+        Class returnType = handler.getReturnType();
+        code.local(ALOAD, 1)
+                .type(CHECKCAST, listener)
+                .local(ALOAD, 2)
+                .type(CHECKCAST, message)
+                .invoke(listener.isInterface() ? INVOKEINTERFACE : INVOKEVIRTUAL, ClassFileBuilder.internalName(listener),
+                        handler.getName(), descriptor(returnType, message), 1);
+        // the result of the handler is discarded
+        if (returnType == long.class || returnType == double.class) {
+            code.op(POP2);
+        } else if (returnType != void.class) {
+            code.op(POP);
+        }
+    }
+}
@@ -1,7 +1,7 @@
 package net.engio.mbassy.listener;
 
 import net.engio.mbassy.dispatch.HandlerInvocation;
-import net.engio.mbassy.dispatch.ReflectiveHandlerInvocation;
+import net.engio.mbassy.dispatch.GeneratedHandlerInvocation;
 
 import java.lang.annotation.*;
 
@@ -63,14 +63,14 @@ public @interface Handler {
 
     /**
      * Each handler call is implemented as an invocation object that implements the invocation mechanism.
-     * The basic implementation uses reflection and is the default. It is possible though to provide a custom
-     * invocation to add additional logic.
+     * The default implementation calls the handler method from a generated class and falls back to reflection
+     * for handlers that are not public. It is possible though to provide a custom invocation to add additional logic.
      *
      * Note: Providing a custom invocation will most likely reduce performance, since the JIT-Compiler
      * can not do some of its sophisticated byte code optimizations.
      *
      */
-    Class<? extends HandlerInvocation> invocation() default ReflectiveHandlerInvocation.class;
+    Class<? extends HandlerInvocation> invocation() default GeneratedHandlerInvocation.class;
 
 
 }
@@ -7,6 +7,9 @@ import java.lang.annotation.*;
  * Configure how the listener is referenced in the event bus.
  * The bus will use either strong or weak references to its registered listeners,
  *  depending on which reference type (@see References) is set.
+ * The reference type also determines how listeners are compared when they are subscribed and unsubscribed:
+ * strongly referenced listeners are compared using equals() and hashCode(), weakly referenced listeners
+ * are compared by identity. See {@link References} for details.
  *
  * @author bennidi
  */
@@ -17,7 +20,8 @@ public @interface Listener {
 
     /**
      * BY DEFAULT, MBassador uses {@link java.lang.ref.WeakReference}. It is possible to use
-     * strong instead.
+     * strong instead. Note that weakly referenced listeners are compared by identity, whereas strongly referenced
+     * listeners are compared using equals() and hashCode().
      *
      */
     References references() default References.Weak;
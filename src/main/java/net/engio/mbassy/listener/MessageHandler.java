@@ -209,6 +209,13 @@ public class MessageHandler {
         return invocation;
     }
 
+    /**
+     * Get the meta data of the listener that declares this handler
+     */
+    public MessageListener getListenerConfig() {
+        return listenerConfig;
+    }
+
     public boolean handlesMessage(Class<?> messageType) {
         for (Class<?> handledMessage : handledMessages) {
             if (handledMessage.equals(messageType)) {
@@ -0,0 +1,24 @@
+package net.engio.mbassy.listener;
+
+import java.lang.annotation.*;
+
+/**
+ * Define the priority of all asynchronous publications of messages of the annotated class. A priority that is given
+ * explicitly (see {@link net.engio.mbassy.bus.publication.ISyncAsyncPublicationCommand#withPriority(int)})
+ * takes precedence. Messages without priority have priority 0.
+ *
+ * The priority only affects the order of dispatch if the message queue takes it into account
+ * (see {@link net.engio.mbassy.bus.config.Feature.AsynchronousMessageDispatch#Prioritized(int)}).
+ * It is not related to the priority of message handlers (see {@link Handler#priority()}), which defines the order
+ * of handler invocation within a single publication.
+ */
+@Retention(value = RetentionPolicy.RUNTIME)
+@Inherited
+@Target(value = {ElementType.TYPE})
+public @interface MessagePriority {
+
+    /**
+     * Messages with higher priority are dispatched first
+     */
+    int value();
+}
@@ -0,0 +1,190 @@
+package net.engio.mbassy.listener;
+
+import net.engio.mbassy.common.ReflectionUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * The metadata index provides the message handlers of listener classes that have been compiled with the
+ * {@link MetadataIndexProcessor}. Using the index, the handlers of a listener can be resolved without scanning
+ * all methods of its class hierarchy.
+ * <p/>
+ * The index is a text resource ({@link #Location}) with one line per handler. Each line consists of the following
+ * tab separated values: the name of the listener class, the name of the class declaring the handler, the name of
+ * the handler method, the name of its parameter type, the name of the class that declares the method
+ * overriding the handler in the listener class or '-', if the handler is not overridden, and the super classes of the
+ * listener class or '-', if it has none. The super classes are separated by commas. Super classes that have not
+ * been compiled together with the listener class are followed by '=' and the hash of their handler methods.
+ * <p/>
+ * The index of a listener class is used only if all its entries can be resolved and the hashes of its super classes
+ * match their handler methods at runtime. Otherwise the class hierarchy is scanned using reflection.
+ * <p/>
+ * All index resources visible to a class loader are read once, when the first listener class from that class loader
+ * is looked up.
+ */
+final class MetadataIndex {
+
+    static final String Location = "META-INF/mbassador/listeners.index";
+
+    static final String NotOverridden = "-";
+
+    static final String NoSuperClasses = "-";
+
+    // the number of tab separated values per line
+    static final int Fields = 6;
+
+    // the lines of the index per listener class name, separately for each class loader
+    private final Map<ClassLoader, Map<String, List<String[]>>> entriesPerClassLoader
+            = new WeakHashMap<ClassLoader, Map<String, List<String[]>>>();
+
+    /**
+     * Get the handlers of the given listener class as recorded in the index. Each element contains the
+     * method declaring the handler configuration and the method overriding it in the listener class (or null).
+     *
+     * @return The handlers or null, if the listener class is not contained in the index or the index is outdated
+     */
+    List<Method[]> getHandlers(Class listener) {
+        ClassLoader classLoader = listener.getClassLoader();
+        if (classLoader == null) {
+            return null;
+        }
+        List<String[]> entries = getEntries(classLoader).get(listener.getName());
+        if (entries == null) {
+            return null;
+        }
+        try {
+            if (!matchesSuperClasses(entries.get(0)[5], classLoader)) {
+                return null; // a super class has been changed since the index was created
+            }
+            List<Method[]> handlers = new ArrayList<Method[]>(entries.size());
+            for (String[] entry : entries) {
+                Class<?> parameterType = Class.forName(entry[3], false, classLoader);
+                Method handler = Class.forName(entry[1], false, classLoader).getDeclaredMethod(entry[2], parameterType);
+                Method overridingHandler = NotOverridden.equals(entry[4])
+                        ? null
+                        : Class.forName(entry[4], false, classLoader).getDeclaredMethod(entry[2], parameterType);
+                handlers.add(new Method[]{handler, overridingHandler});
+            }
+            return handlers;
+        } catch (Exception e) {
+            return null; // the index does not match the classes -> use reflection
+        }
+    }
+
+    private static boolean matchesSuperClasses(String superClasses, ClassLoader classLoader) throws ClassNotFoundException {
+        for (Map.Entry<String, String> superClass : parseSuperClasses(superClasses).entrySet()) {
+            if (superClass.getValue() != null
+                    && !superClass.getValue().equals(getHandlerHash(Class.forName(superClass.getKey(), false, classLoader)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parse the super classes of an entry
+     *
+     * @return The hash of the handlers per super class name, null for classes that are compiled together with the listener
+     */
+    static Map<String, String> parseSuperClasses(String superClasses) {
+        Map<String, String> hashes = new LinkedHashMap<String, String>();
+        if (NoSuperClasses.equals(superClasses)) {
+            return hashes;
+        }
+        for (String superClass : superClasses.split(",")) {
+            int separator = superClass.indexOf('=');
+            if (separator < 0) {
+                hashes.put(superClass, null);
+            } else {
+                hashes.put(superClass.substring(0, separator), superClass.substring(separator + 1));
+            }
+        }
+        return hashes;
+    }
+
+    // a hash of the signatures of all handlers declared by the given class (see MetadataIndexProcessor)
+    private static String getHandlerHash(Class type) {
+        List<String> signatures = new ArrayList<String>();
+        for (Method method : type.getDeclaredMethods()) {
+            if (!method.isBridge() && !method.isSynthetic() && ReflectionUtils.getAnnotation(method, Handler.class) != null) {
+                StringBuilder signature = new StringBuilder(method.getName()).append('(');
+                Class[] parameterTypes = method.getParameterTypes();
+                for (int i = 0; i < parameterTypes.length; i++) {
+                    signature.append(i == 0 ? "" : ",").append(parameterTypes[i].getName());
+                }
+                signatures.add(signature.append(')').toString());
+            }
+        }
+        return hash(signatures);
+    }
+
+    /**
+     * The hash of the given handler signatures, independent of their order
+     */
+    static String hash(List<String> signatures) {
+        Collections.sort(signatures);
+        StringBuilder joined = new StringBuilder();
+        for (String signature : signatures) {
+            joined.append(signature).append(';');
+        }
+        return Integer.toHexString(joined.toString().hashCode());
+    }
+
+    private synchronized Map<String, List<String[]>> getEntries(ClassLoader classLoader) {
+        Map<String, List<String[]>> entries = entriesPerClassLoader.get(classLoader);
+        if (entries == null) {
+            entries = read(classLoader);
+            entriesPerClassLoader.put(classLoader, entries);
+        }
+        return entries;
+    }
+
+    private static Map<String, List<String[]>> read(ClassLoader classLoader) {
+        Map<String, List<String[]>> entries = new HashMap<String, List<String[]>>();
+        try {
+            Enumeration<URL> indexes = classLoader.getResources(Location);
+            while (indexes.hasMoreElements()) {
+                Map<String, List<String[]>> resourceEntries = new HashMap<String, List<String[]>>();
+                BufferedReader reader = new BufferedReader(new InputStreamReader(indexes.nextElement().openStream(), "UTF-8"));
+                try {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        String[] entry = line.split("\t");
+                        if (entry.length != Fields) {
+                            continue;
+                        }
+                        List<String[]> handlers = resourceEntries.get(entry[0]);
+                        if (handlers == null) {
+                            handlers = new ArrayList<String[]>();
+                            resourceEntries.put(entry[0], handlers);
+                        }
+                        handlers.add(entry);
+                    }
+                } finally {
+                    reader.close();
+                }
+                // a listener class that is listed in multiple indexes is taken from the first one (like classes)
+                for (Map.Entry<String, List<String[]>> listener : resourceEntries.entrySet()) {
+                    if (!entries.containsKey(listener.getKey())) {
+                        entries.put(listener.getKey(), listener.getValue());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            return Collections.emptyMap(); // unreadable index -> use reflection
+        }
+        return entries;
+    }
+}
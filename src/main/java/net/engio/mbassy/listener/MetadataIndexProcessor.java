@@ -0,0 +1,342 @@
+package net.engio.mbassy.listener;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An annotation processor that creates an index of the message handlers of all listener classes of a compilation.
+ * The {@link MetadataReader} uses this index to find the handlers of a listener class without scanning all methods
+ * of the class hierarchy using reflection, which can take considerable time when many listener classes are used.
+ * <p/>
+ * The processor is optional and not registered as a service. To use it, add it to the compilation of the listener classes,
+ * e.g. javac -processor net.engio.mbassy.listener.MetadataIndexProcessor. All classes that declare or inherit methods
+ * annotated with {@link Handler} (directly or as meta annotation) are indexed. The configuration of the handlers
+ * ({@link Handler}, {@link Listener}, {@link Filter}, {@link Enveloped}, {@link Synchronized}) is still read from the
+ * resolved handler methods at runtime.
+ * <p/>
+ * Listener classes that have handlers with generic parameter types or that override generic methods with handlers
+ * are not indexed since the compiler creates bridge methods for them, which are only visible to reflection.
+ * <p/>
+ * The index of a previous compilation into the same output directory is merged with the index of the current one,
+ * such that incremental compilation keeps the entries of listeners that have not been recompiled. Entries of listeners
+ * that have been recompiled, or whose super classes have been recompiled, are replaced.
+ * For each super class of a listener that is not compiled together with it (e.g. a class from another jar)
+ * the index stores a hash of its handler methods. The {@link MetadataReader} falls back to reflection if the hash
+ * does not match the class at runtime.
+ * <p/>
+ * The index can not be trusted, and must be deleted, if the listener classes or their super classes within
+ * the same output directory are compiled without the processor, or are modified after compilation, e.g. by
+ * bytecode instrumentation that adds or removes handler annotations.
+ */
+@SupportedAnnotationTypes("*")
+public class MetadataIndexProcessor extends AbstractProcessor {
+
+    // the lines of the index (without the super class hashes) per listener, collected over all rounds
+    // and written when processing is over
+    private final Map<String, List<String>> handlersPerListener = new LinkedHashMap<String, List<String>>();
+
+    // the hash of the handler methods of each super class per listener
+    private final Map<String, Map<String, String>> superClassesPerListener = new LinkedHashMap<String, Map<String, String>>();
+
+    // all types that are compiled in this compilation, the hashes of their handlers need not be checked
+    private final Set<String> compiledTypes = new HashSet<String>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            writeIndex();
+        } else {
+            for (TypeElement type : ElementFilter.typesIn(roundEnv.getRootElements())) {
+                indexListener(type);
+            }
+        }
+        return false; // other processors may handle the same annotations
+    }
+
+    private void indexListener(TypeElement listener) {
+        for (TypeElement nested : ElementFilter.typesIn(listener.getEnclosedElements())) {
+            indexListener(nested);
+        }
+        String listenerName = processingEnv.getElementUtils().getBinaryName(listener).toString();
+        compiledTypes.add(listenerName);
+        if (listener.getKind() != ElementKind.CLASS && listener.getKind() != ElementKind.ENUM) {
+            return;
+        }
+        // all annotated methods of the class hierarchy, starting with the listener class itself
+        List<ExecutableElement> allHandlers = new ArrayList<ExecutableElement>();
+        for (TypeElement current = listener; current != null; current = getSuperclass(current)) {
+            for (ExecutableElement method : ElementFilter.methodsIn(current.getEnclosedElements())) {
+                if (isHandler(method, new HashSet<Element>())) {
+                    if (method.getParameters().size() == 1 && !isIndexable(method)) {
+                        return; // leave it to reflection
+                    }
+                    allHandlers.add(method);
+                }
+            }
+        }
+        List<String> lines = new ArrayList<String>(allHandlers.size());
+        for (int i = 0; i < allHandlers.size(); i++) {
+            ExecutableElement handler = allHandlers.get(i);
+            if (handler.getParameters().size() != 1) {
+                continue; // invalid handlers are ignored anyway
+            }
+            // retain only those that are at the bottom of their respective class hierarchy (deepest overriding method)
+            if (isOverridden(handler, allHandlers.subList(0, i))) {
+                continue;
+            }
+            TypeElement overriding = getOverridingType(handler, listener);
+            lines.add(listenerName
+                    + "\t" + processingEnv.getElementUtils().getBinaryName((TypeElement) handler.getEnclosingElement())
+                    + "\t" + handler.getSimpleName()
+                    + "\t" + getClassName(handler.getParameters().get(0).asType())
+                    + "\t" + (overriding == null ? MetadataIndex.NotOverridden : processingEnv.getElementUtils().getBinaryName(overriding)));
+        }
+        if (lines.isEmpty()) {
+            return;
+        }
+        Map<String, String> superClasses = new LinkedHashMap<String, String>();
+        for (TypeElement superClass = getSuperclass(listener); superClass != null; superClass = getSuperclass(superClass)) {
+            String name = processingEnv.getElementUtils().getBinaryName(superClass).toString();
+            if (!name.startsWith("java.")) {
+                superClasses.put(name, getHandlerHash(superClass));
+            }
+        }
+        handlersPerListener.put(listenerName, lines);
+        superClassesPerListener.put(listenerName, superClasses);
+    }
+
+    // equivalent to MetadataIndex.getHandlerHash: a hash of the signatures of all handlers declared by the given type
+    private String getHandlerHash(TypeElement type) {
+        List<String> signatures = new ArrayList<String>();
+        for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+            if (isHandler(method, new HashSet<Element>())) {
+                StringBuilder signature = new StringBuilder(method.getSimpleName()).append('(');
+                for (int i = 0; i < method.getParameters().size(); i++) {
+                    TypeMirror parameter = processingEnv.getTypeUtils().erasure(method.getParameters().get(i).asType());
+                    signature.append(i == 0 ? "" : ",")
+                            .append(parameter.getKind().isPrimitive() ? parameter.toString() : getClassName(parameter));
+                }
+                signatures.add(signature.append(')').toString());
+            }
+        }
+        return MetadataIndex.hash(signatures);
+    }
+
+    // check whether the method is annotated with @Handler, directly or as meta annotation
+    private boolean isHandler(Element element, Set<Element> visited) {
+        if (!visited.add(element)) {
+            return false;
+        }
+        for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            TypeElement annotationType = (TypeElement) annotation.getAnnotationType().asElement();
+            if (annotationType.getQualifiedName().contentEquals(Handler.class.getName())
+                    || isHandler(annotationType, visited)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // handlers with parameters that involve type variables or that override methods with a different erasure
+    // will have bridge methods
+    private boolean isIndexable(ExecutableElement handler) {
+        TypeMirror parameter = handler.getParameters().get(0).asType();
+        if (getClassName(parameter) == null) {
+            return false;
+        }
+        TypeElement declaringType = (TypeElement) handler.getEnclosingElement();
+        for (TypeElement superType : getAllSuperTypes(declaringType, new LinkedHashSet<TypeElement>())) {
+            for (ExecutableElement method : ElementFilter.methodsIn(superType.getEnclosedElements())) {
+                if (processingEnv.getElementUtils().overrides(handler, method, declaringType)
+                        && !hasSameParameters(handler, method)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private Set<TypeElement> getAllSuperTypes(TypeElement type, Set<TypeElement> superTypes) {
+        for (TypeMirror superType : processingEnv.getTypeUtils().directSupertypes(type.asType())) {
+            TypeElement superElement = (TypeElement) processingEnv.getTypeUtils().asElement(superType);
+            if (superElement != null && superTypes.add(superElement)) {
+                getAllSuperTypes(superElement, superTypes);
+            }
+        }
+        return superTypes;
+    }
+
+    // equivalent to ReflectionUtils.containsOverridingMethod: the given handlers are all declared in subclasses
+    private boolean isOverridden(ExecutableElement handler, List<ExecutableElement> subclassHandlers) {
+        for (ExecutableElement candidate : subclassHandlers) {
+            if (candidate.getEnclosingElement() != handler.getEnclosingElement()
+                    && candidate.getSimpleName().equals(handler.getSimpleName())
+                    && hasSameParameters(candidate, handler)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // equivalent to ReflectionUtils.getOverridingMethod: find the bottom most class that redeclares the handler
+    private TypeElement getOverridingType(ExecutableElement handler, TypeElement listener) {
+        for (TypeElement current = listener; current != null && current != handler.getEnclosingElement(); current = getSuperclass(current)) {
+            for (ExecutableElement method : ElementFilter.methodsIn(current.getEnclosedElements())) {
+                if (method.getSimpleName().equals(handler.getSimpleName()) && hasSameParameters(method, handler)) {
+                    return current;
+                }
+            }
+        }
+        return null;
+    }
+
+    private boolean hasSameParameters(ExecutableElement method, ExecutableElement other) {
+        if (method.getParameters().size() != other.getParameters().size()) {
+            return false;
+        }
+        for (int i = 0; i < method.getParameters().size(); i++) {
+            TypeMirror parameter = processingEnv.getTypeUtils().erasure(method.getParameters().get(i).asType());
+            TypeMirror otherParameter = processingEnv.getTypeUtils().erasure(other.getParameters().get(i).asType());
+            if (!processingEnv.getTypeUtils().isSameType(parameter, otherParameter)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private TypeElement getSuperclass(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        return superclass.getKind() == TypeKind.DECLARED
+                ? (TypeElement) ((DeclaredType) superclass).asElement()
+                : null;
+    }
+
+    // the name of the type as returned by Class.getName() or null, if it can not be loaded by name
+    private String getClassName(TypeMirror type) {
+        if (type.getKind() == TypeKind.DECLARED) {
+            return processingEnv.getElementUtils().getBinaryName((TypeElement) ((DeclaredType) type).asElement()).toString();
+        }
+        if (type.getKind() == TypeKind.ARRAY) {
+            String component = getDescriptor(((ArrayType) type).getComponentType());
+            return component == null ? null : "[" + component;
+        }
+        return null;
+    }
+
+    private String getDescriptor(TypeMirror type) {
+        switch (type.getKind()) {
+            case BOOLEAN: return "Z";
+            case BYTE: return "B";
+            case CHAR: return "C";
+            case SHORT: return "S";
+            case INT: return "I";
+            case LONG: return "J";
+            case FLOAT: return "F";
+            case DOUBLE: return "D";
+            case ARRAY:
+                String component = getDescriptor(((ArrayType) type).getComponentType());
+                return component == null ? null : "[" + component;
+            case DECLARED:
+                return "L" + getClassName(type) + ";";
+            default:
+                return null;
+        }
+    }
+
+    private void writeIndex() {
+        List<String> index = readPreviousIndex();
+        boolean hasPreviousIndex = !index.isEmpty();
+        // keep entries of listeners that are not affected by this compilation
+        for (int i = index.size() - 1; i >= 0; i--) {
+            String[] entry = index.get(i).split("\t");
+            if (entry.length != MetadataIndex.Fields || compiledTypes.contains(entry[0])
+                    || !Collections.disjoint(compiledTypes, MetadataIndex.parseSuperClasses(entry[5]).keySet())) {
+                index.remove(i);
+            }
+        }
+        for (Map.Entry<String, List<String>> listener : handlersPerListener.entrySet()) {
+            StringBuilder superClasses = new StringBuilder();
+            for (Map.Entry<String, String> superClass : superClassesPerListener.get(listener.getKey()).entrySet()) {
+                superClasses.append(superClasses.length() == 0 ? "" : ",").append(superClass.getKey());
+                // super classes of the same compilation are recompiled (and re-indexed) together with the listener
+                if (!compiledTypes.contains(superClass.getKey())) {
+                    superClasses.append('=').append(superClass.getValue());
+                }
+            }
+            for (String line : listener.getValue()) {
+                index.add(line + "\t" + (superClasses.length() == 0 ? MetadataIndex.NoSuperClasses : superClasses));
+            }
+        }
+        if (index.isEmpty() && !hasPreviousIndex) {
+            return;
+        }
+        try {
+            FileObject resource = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", MetadataIndex.Location);
+            Writer writer = new OutputStreamWriter(resource.openOutputStream(), "UTF-8");
+            try {
+                for (String line : index) {
+                    writer.write(line);
+                    writer.write('\n');
+                }
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                    "Could not write the listener index " + MetadataIndex.Location + ": " + e.getMessage());
+        }
+    }
+
+    // the lines of the index of a previous compilation into the same output directory
+    private List<String> readPreviousIndex() {
+        List<String> lines = new ArrayList<String>();
+        try {
+            FileObject resource = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", MetadataIndex.Location);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(resource.openInputStream(), "UTF-8"));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lines.add(line);
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (Exception e) {
+            // there is no previous index (or it can not be read)
+        }
+        return lines;
+    }
+}
@@ -14,6 +14,9 @@ import java.util.Map;
 
 /**
  * The meta data reader is responsible for parsing and validating message handler configurations.
+ * <p/>
+ * Listener classes that have been compiled with the {@link MetadataIndexProcessor} are looked up in the
+ * generated index instead of scanning their class hierarchy.
  *
  * @author bennidi
  *         Date: 11/16/12
@@ -28,6 +31,9 @@ public class MetadataReader {
         }
     };
 
+    // the handlers of listener classes that have been indexed at compile time
+    private final MetadataIndex index = new MetadataIndex();
+
     // cache already created filter instances
     private final Map<Class<? extends IMessageFilter>, IMessageFilter> filterCache = new HashMap<Class<? extends IMessageFilter>, IMessageFilter>();
 
@@ -43,7 +49,7 @@ public class MetadataReader {
             IMessageFilter filter = filterCache.get(filterDef.value());
             if (filter == null) {
                 try {
-                    filter = filterDef.value().newInstance();
+                    filter = filterDef.value().getDeclaredConstructor().newInstance();
                     filterCache.put(filterDef.value(), filter);
                 } catch (Exception e) {
                     throw new RuntimeException(e);// propagate as runtime exception
@@ -59,7 +65,7 @@ public class MetadataReader {
         List<Filter> filters = new ArrayList<Filter>(subscription.filters().length);
         Collections.addAll(filters, subscription.filters());
         Annotation[] annotations = method.getAnnotations();
-        for (int i = 0; i < method.getAnnotations().length; i++) {
+        for (int i = 0; i < annotations.length; i++) {
             Class<? extends Annotation> annotationType = annotations[i].annotationType();
             IncludeFilters repeated = annotationType.getAnnotation(IncludeFilters.class);
             if (repeated != null) {
@@ -77,38 +83,48 @@ public class MetadataReader {
     // listeners defined in super classes)
     public MessageListener getMessageListener(Class target) {
         MessageListener listenerMetadata = new MessageListener(target);
-        // get all handlers (this will include all (inherited) methods directly annotated using @Handler)
-        Method[] allHandlers = ReflectionUtils.getMethods(AllMessageHandlers, target);
-        final int length = allHandlers.length;
-
-        Method handler;
-        for (int i = 0; i < length; i++) {
-            handler = allHandlers[i];
-
-            // retain only those that are at the bottom of their respective class hierarchy (deepest overriding method)
-            if (!ReflectionUtils.containsOverridingMethod(allHandlers, handler)) {
+        // use the handlers from the compile time index if available, otherwise scan the class hierarchy
+        List<Method[]> handlers = index.getHandlers(target);
+        if (handlers == null) {
+            handlers = getHandlers(target);
+        }
 
-                // for each handler there will be no overriding method that specifies @Handler annotation
-                // but an overriding method does inherit the listener configuration of the overwritten method
+        for (Method[] handlerAndOverride : handlers) {
+            Method handler = handlerAndOverride[0];
+            Method overriddenHandler = handlerAndOverride[1];
+            // for each handler there will be no overriding method that specifies @Handler annotation
+            // but an overriding method does inherit the listener configuration of the overwritten method
 
-                Handler handlerConfig = ReflectionUtils.getAnnotation(handler, Handler.class);
-                if (!handlerConfig.enabled() || !isValidMessageHandler(handler)) {
-                    continue; // disabled or invalid listeners are ignored
-                }
-                Method overriddenHandler = ReflectionUtils.getOverridingMethod(handler, target);
-                // if a handler is overwritten it inherits the configuration of its parent method
-                Map<String, Object> handlerProperties = MessageHandler.Properties.Create(overriddenHandler == null ? handler : overriddenHandler,
-                                                                                         handlerConfig,
-                                                                                         getFilter(handler, handlerConfig),
-                                                                                         listenerMetadata);
-                MessageHandler handlerMetadata = new MessageHandler(handlerProperties);
-                listenerMetadata.addHandler(handlerMetadata);
+            Handler handlerConfig = ReflectionUtils.getAnnotation(handler, Handler.class);
+            if (!handlerConfig.enabled() || !isValidMessageHandler(handler)) {
+                continue; // disabled or invalid listeners are ignored
             }
+            // if a handler is overwritten it inherits the configuration of its parent method
+            Map<String, Object> handlerProperties = MessageHandler.Properties.Create(overriddenHandler == null ? handler : overriddenHandler,
+                                                                                     handlerConfig,
+                                                                                     getFilter(handler, handlerConfig),
+                                                                                     listenerMetadata);
+            MessageHandler handlerMetadata = new MessageHandler(handlerProperties);
+            listenerMetadata.addHandler(handlerMetadata);
         }
 
         return listenerMetadata;
     }
 
+    // get all handlers of the given class together with the method that overrides it in the given class (if any)
+    private List<Method[]> getHandlers(Class target) {
+        // get all handlers (this will include all (inherited) methods directly annotated using @Handler)
+        Method[] allHandlers = ReflectionUtils.getMethods(AllMessageHandlers, target);
+        List<Method[]> handlers = new ArrayList<Method[]>(allHandlers.length);
+        for (Method handler : allHandlers) {
+            // retain only those that are at the bottom of their respective class hierarchy (deepest overriding method)
+            if (!ReflectionUtils.containsOverridingMethod(allHandlers, handler)) {
+                handlers.add(new Method[]{handler, ReflectionUtils.getOverridingMethod(handler, target)});
+            }
+        }
+        return handlers;
+    }
+
     private boolean isValidMessageHandler(Method handler) {
         if (handler == null || ReflectionUtils.getAnnotation( handler, Handler.class) == null) {
             return false;
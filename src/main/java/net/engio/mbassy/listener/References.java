@@ -1,10 +1,24 @@
 package net.engio.mbassy.listener;
 
 /**
+* The type of references the bus uses for the listeners of a handler.
+* <p/>
+* Note that the two types of references also differ in how listeners are compared. Strongly referenced listeners
+* are compared using equals() and hashCode(): subscribing a listener that equals an already subscribed one has no
+* effect, and unsubscribing it removes the subscribed one. Weakly referenced listeners are compared by identity:
+* equal but distinct instances are subscribed (and receive messages) independently, and only the subscribed
+* instance itself can be unsubscribed.
 *
 * @author bennidi
 *         Date: 3/29/13
 */
 public enum References {
-    Strong,Weak
+    /**
+     * Listeners are kept until they are unsubscribed and are compared using equals() and hashCode()
+     */
+    Strong,
+    /**
+     * Listeners are removed when they are garbage collected and are compared by identity
+     */
+    Weak
 }
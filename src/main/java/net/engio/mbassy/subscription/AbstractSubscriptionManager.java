@@ -0,0 +1,155 @@
+package net.engio.mbassy.subscription;
+
+import net.engio.mbassy.bus.BusRuntime;
+import net.engio.mbassy.common.LockFreeConcurrentSet;
+import net.engio.mbassy.common.ReflectionUtils;
+import net.engio.mbassy.listener.MessageHandler;
+import net.engio.mbassy.listener.MetadataReader;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The base of all subscription managers. It implements the subscription process of listeners and leaves the
+ * registry of subscriptions, i.e. how subscriptions are stored and looked up per listener class and message type,
+ * to the concrete implementations.
+ * <p/>
+ * A listener class is inspected only once. Its subscriptions are created and registered when its first instance
+ * is subscribed, all other instances are added to the existing subscriptions.
+ *
+ * @see SubscriptionManager
+ * @see CopyOnWriteSubscriptionManager
+ */
+public abstract class AbstractSubscriptionManager {
+
+    // The metadata reader that is used to inspect objects passed to the subscribe method
+    private final MetadataReader metadataReader;
+
+    // Remember already processed classes that do not contain any message handlers
+    private final Set<Class> nonListeners = new LockFreeConcurrentSet<Class>();
+
+    // This factory is used to create specialized subscriptions based on the given message handler configuration
+    private final SubscriptionFactory subscriptionFactory;
+
+    private final BusRuntime runtime;
+
+    // The super types of all message types that have been published. The cache belongs to the manager, such that
+    // it does not keep the message classes (and their class loaders) alive after the message bus is gone
+    private final ConcurrentHashMap<Class, Class[]> superTypesPerMessageType = new ConcurrentHashMap<Class, Class[]>();
+
+    protected AbstractSubscriptionManager(MetadataReader metadataReader, SubscriptionFactory subscriptionFactory, BusRuntime runtime) {
+        this.metadataReader = metadataReader;
+        this.subscriptionFactory = subscriptionFactory;
+        this.runtime = runtime;
+    }
+
+    public boolean unsubscribe(Object listener) {
+        if (listener == null) {
+            return false;
+        }
+        Subscription[] subscriptions = getSubscriptionsByListener(listener.getClass());
+        if (subscriptions == null) {
+            return false;
+        }
+        boolean isRemoved = true;
+        for (Subscription subscription : subscriptions) {
+            isRemoved &= subscription.unsubscribe(listener);
+        }
+        return isRemoved;
+    }
+
+    public void subscribe(Object listener) {
+        try {
+            Class<?> listenerClass = listener.getClass();
+
+            if (nonListeners.contains(listenerClass)) {
+                return; // early reject of known classes that do not define message handlers
+            }
+            Subscription[] subscriptionsByListener = getSubscriptionsByListener(listenerClass);
+            // a listener is either subscribed for the first time
+            if (subscriptionsByListener == null) {
+                MessageHandler[] messageHandlers = metadataReader.getMessageListener(listenerClass).getHandlers();
+                int length = messageHandlers.length;
+
+                if (length == 0) {  // remember the class as non listening class if no handlers are found
+                    nonListeners.add(listenerClass);
+                    return;
+                }
+                subscriptionsByListener = new Subscription[length]; // it's safe to use non-concurrent collection here (read only)
+
+                // create subscriptions for all detected message handlers
+                for (int i=0; i<length; i++) {
+                    subscriptionsByListener[i] = subscriptionFactory.createSubscription(runtime, messageHandlers[i]);
+                }
+
+                // the registry must handle the case when another thread already subscribed
+                // this particular listener in the mean-time
+                subscribe(listener, subscriptionsByListener);
+            } // [1]...or the subscriptions already exists and must only be updated
+            else {
+                for (Subscription sub : subscriptionsByListener) {
+                    sub.subscribe(listener);
+                }
+            }
+
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // obtain the subscriptions of a listener class or null if the class has not been registered yet
+    protected abstract Subscription[] getSubscriptionsByListener(Class listenerClass);
+
+    // register the subscriptions of a listener class that has been subscribed for the first time
+    // Note: Implementations must handle the case when another thread already registered the same listener class
+    protected abstract void subscribe(Object listener, Subscription[] subscriptions);
+
+    // obtain the subscriptions for the given message type, sorted by priority
+    // Note: never returns null! The returned array is shared between publications and must not be modified
+    public abstract Subscription[] getSubscriptionsByMessageType(Class messageType);
+
+    // build the dispatch table for the given message type from the subscriptions registered per message type
+    // Note: The given map must not be modified while this method is running
+    protected Subscription[] collectSubscriptionsByMessageType(Map<Class, ArrayList<Subscription>> subscriptionsPerMessage,
+                                                              Class messageType) {
+        Set<Subscription> subscriptions = new TreeSet<Subscription>(Subscription.SubscriptionByPriorityDesc);
+
+        Subscription subscription;
+        ArrayList<Subscription> subsPerMessage = subscriptionsPerMessage.get(messageType);
+
+        if (subsPerMessage != null) {
+            subscriptions.addAll(subsPerMessage);
+        }
+
+        Class[] types = getSuperTypes(messageType);
+        for (int i=0, n=types.length; i<n; i++) {
+            Class eventSuperType = types[i];
+
+            ArrayList<Subscription> subs = subscriptionsPerMessage.get(eventSuperType);
+            if (subs != null) {
+                for (int j = 0,m=subs.size(); j<m; j++) {
+                    subscription = subs.get(j);
+
+                    if (subscription.handlesMessageType(messageType)) {
+                        subscriptions.add(subscription);
+                    }
+                }
+            }
+        }
+        // the tree set already sorted the subscriptions by priority
+        return subscriptions.toArray(new Subscription[subscriptions.size()]);
+    }
+
+    // the super types of a message type are needed each time its dispatch table is rebuilt
+    private Class[] getSuperTypes(Class messageType) {
+        Class[] superTypes = superTypesPerMessageType.get(messageType);
+        if (superTypes == null) {
+            superTypes = ReflectionUtils.getSuperTypes(messageType);
+            superTypesPerMessageType.put(messageType, superTypes);
+        }
+        return superTypes;
+    }
+}
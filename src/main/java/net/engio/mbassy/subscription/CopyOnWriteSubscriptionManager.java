@@ -0,0 +1,102 @@
+package net.engio.mbassy.subscription;
+
+import net.engio.mbassy.bus.BusRuntime;
+import net.engio.mbassy.listener.MetadataReader;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A subscription manager that does not use any locks when reading its registry of subscriptions. The registry
+ * is an immutable snapshot that is accessed by means of a single volatile read. Registering a new listener class
+ * copies the current snapshot, adds the new subscriptions and replaces the snapshot.
+ * <p/>
+ * This trades more expensive (and serialized) registration of listener classes for reads that do not write to
+ * any shared state, such that publishers do not contend with each other no matter how many threads are publishing.
+ * Subscribing and unsubscribing instances of already known listener classes is not affected because it only
+ * reads the registry. Classes without message handlers are remembered in a lock-free set.
+ *
+ * @see CopyOnWriteSubscriptionManagerProvider
+ */
+public class CopyOnWriteSubscriptionManager extends AbstractSubscriptionManager {
+
+    // the current snapshot of all registered subscriptions
+    private volatile Registry registry = new Registry(new HashMap<Class, ArrayList<Subscription>>(),
+                                                      new HashMap<Class, Subscription[]>());
+
+    public CopyOnWriteSubscriptionManager(MetadataReader metadataReader, SubscriptionFactory subscriptionFactory, BusRuntime runtime) {
+        super(metadataReader, subscriptionFactory, runtime);
+    }
+
+    @Override
+    protected Subscription[] getSubscriptionsByListener(Class listenerClass) {
+        return registry.subscriptionsPerListener.get(listenerClass);
+    }
+
+    @Override
+    protected synchronized void subscribe(Object listener, Subscription[] subscriptions) {
+        Registry current = registry;
+        Subscription[] subscriptionsByListener = current.subscriptionsPerListener.get(listener.getClass());
+        // the rare case when multiple threads concurrently subscribed the same class for the first time
+        // one will be first, all others will subscribe to the newly created subscriptions
+        if (subscriptionsByListener != null) {
+            for (Subscription existingSubscription : subscriptionsByListener) {
+                existingSubscription.subscribe(listener);
+            }
+            return;
+        }
+
+        // copy the existing snapshot. Only the lists of the affected message types need to be copied
+        // the remaining lists are never modified and can be shared between snapshots
+        Map<Class, ArrayList<Subscription>> subscriptionsPerMessage = new HashMap<Class, ArrayList<Subscription>>(current.subscriptionsPerMessage);
+        for (Subscription subscription : subscriptions) {
+            subscription.subscribe(listener);
+            for (Class<?> messageType : subscription.getHandledMessageTypes()) {
+                ArrayList<Subscription> existing = subscriptionsPerMessage.get(messageType);
+                ArrayList<Subscription> updated = existing == null
+                        ? new ArrayList<Subscription>(8)
+                        : new ArrayList<Subscription>(existing);
+                updated.add(subscription);
+                subscriptionsPerMessage.put(messageType, updated);
+            }
+        }
+        Map<Class, Subscription[]> subscriptionsPerListener = new HashMap<Class, Subscription[]>(current.subscriptionsPerListener);
+        subscriptionsPerListener.put(listener.getClass(), subscriptions);
+
+        // publishing the new snapshot also discards all dispatch tables built from the old one
+        registry = new Registry(subscriptionsPerMessage, subscriptionsPerListener);
+    }
+
+    @Override
+    public Subscription[] getSubscriptionsByMessageType(Class messageType) {
+        Registry current = registry;
+        Subscription[] subscriptions = current.subscriptionsPerMessageType.get(messageType);
+        if (subscriptions == null) {
+            // concurrent publishers might build the same table, which is harmless since the snapshot is immutable
+            subscriptions = collectSubscriptionsByMessageType(current.subscriptionsPerMessage, messageType);
+            current.subscriptionsPerMessageType.put(messageType, subscriptions);
+        }
+        return subscriptions;
+    }
+
+    /**
+     * An immutable snapshot of the registered subscriptions together with the dispatch tables that
+     * have been built from it.
+     */
+    private static final class Registry {
+
+        private final Map<Class, ArrayList<Subscription>> subscriptionsPerMessage;
+
+        private final Map<Class, Subscription[]> subscriptionsPerListener;
+
+        private final ConcurrentHashMap<Class, Subscription[]> subscriptionsPerMessageType
+                = new ConcurrentHashMap<Class, Subscription[]>(256);
+
+        private Registry(Map<Class, ArrayList<Subscription>> subscriptionsPerMessage, Map<Class, Subscription[]> subscriptionsPerListener) {
+            this.subscriptionsPerMessage = subscriptionsPerMessage;
+            this.subscriptionsPerListener = subscriptionsPerListener;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package net.engio.mbassy.subscription;
+
+import net.engio.mbassy.bus.BusRuntime;
+import net.engio.mbassy.listener.MetadataReader;
+
+/**
+ * Provides a {@link CopyOnWriteSubscriptionManager}. Use it with {@link net.engio.mbassy.bus.config.Feature.SyncPubSub#setSubscriptionManagerProvider}
+ * when many threads are publishing concurrently.
+ */
+public class CopyOnWriteSubscriptionManagerProvider implements ISubscriptionManagerProvider {
+	@Override
+	public CopyOnWriteSubscriptionManager createManager(MetadataReader reader,
+			SubscriptionFactory factory, BusRuntime runtime) {
+		return new CopyOnWriteSubscriptionManager(reader, factory, runtime);
+	}
+}
@@ -0,0 +1,151 @@
+package net.engio.mbassy.subscription;
+
+import net.engio.mbassy.bus.error.MessageBusException;
+import net.engio.mbassy.dispatch.FusedMessageDispatcher;
+import net.engio.mbassy.dispatch.GeneratedHandlerInvocation;
+import net.engio.mbassy.dispatch.GeneratedMessageDispatcher;
+import net.engio.mbassy.dispatch.IHandlerInvocation;
+import net.engio.mbassy.dispatch.IMessageDispatcher;
+import net.engio.mbassy.dispatch.codegen.IMethodInvoker;
+import net.engio.mbassy.dispatch.codegen.MessageDispatcherGenerator;
+import net.engio.mbassy.dispatch.codegen.MethodInvokerGenerator;
+import net.engio.mbassy.listener.MessageHandler;
+import net.engio.mbassy.listener.MessageListener;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * A subscription factory that generates code for the handlers of a listener class when the first instance
+ * of that class is subscribed.
+ * <p/>
+ * Handlers that are neither synchronized nor asynchronous are dispatched by a generated
+ * {@link GeneratedMessageDispatcher}. One dispatcher class is generated for all such handlers of a listener class
+ * that accept the same message type. It evaluates the filters of the handlers and calls the handler methods
+ * directly, such that neither the filters nor the handlers are called from a call site that is shared
+ * with other listener classes.
+ * <p/>
+ * All other handlers are called from a single generated invoker class per listener class and use a
+ * {@link FusedMessageDispatcher} instead of a chain of dispatchers.
+ * <p/>
+ * Each handler still has its own subscription because handlers of different listener classes need to be
+ * invoked in the order of their priority.
+ * <p/>
+ * Handlers with a custom invocation and handlers that can not be called from generated code (e.g. non-public
+ * methods) are invoked as configured.
+ *
+ * Use it with {@link net.engio.mbassy.bus.config.Feature.SyncPubSub#setSubscriptionFactory}
+ */
+public class GeneratedSubscriptionFactory extends SubscriptionFactory {
+
+    private final MethodInvokerGenerator generator = new MethodInvokerGenerator();
+
+    private final MessageDispatcherGenerator dispatcherGenerator = new MessageDispatcherGenerator();
+
+    // the generated invokers for each handler of a listener class (same order as the handlers of the listener)
+    private final Map<MessageListener, IMethodInvoker[]> invokersPerListener = new WeakHashMap<MessageListener, IMethodInvoker[]>();
+
+    @Override
+    protected IHandlerInvocation createBaseHandlerInvocation(SubscriptionContext context) throws MessageBusException {
+        MessageHandler handler = context.getHandler();
+        if (!GeneratedHandlerInvocation.class.equals(handler.getHandlerInvocation())) {
+            return super.createBaseHandlerInvocation(context);
+        }
+        return new GeneratedHandlerInvocation(context, getInvoker(handler));
+    }
+
+    // the constructors of the generated dispatchers for each handler of a listener class (null if not generated)
+    private final Map<MessageListener, Constructor<? extends GeneratedMessageDispatcher>[]> dispatchersPerListener
+            = new WeakHashMap<MessageListener, Constructor<? extends GeneratedMessageDispatcher>[]>();
+
+    @Override
+    protected IMessageDispatcher buildDispatcher(SubscriptionContext context, IHandlerInvocation invocation) throws MessageBusException {
+        // the invocation is not decorated and the handler is invoked by generated code
+        if (invocation instanceof GeneratedHandlerInvocation && ((GeneratedHandlerInvocation) invocation).isGenerated()) {
+            MessageHandler handler = context.getHandler();
+            int index = indexOf(handler);
+            Constructor<? extends GeneratedMessageDispatcher> dispatcher = getDispatchers(handler.getListenerConfig())[index];
+            if (dispatcher != null) {
+                try {
+                    return dispatcher.newInstance(context, invocation, index);
+                } catch (Exception e) {
+                    throw new MessageBusException(e);
+                }
+            }
+        }
+        return new FusedMessageDispatcher(context, invocation);
+    }
+
+    private synchronized Constructor<? extends GeneratedMessageDispatcher>[] getDispatchers(MessageListener listener) {
+        Constructor<? extends GeneratedMessageDispatcher>[] dispatchers = dispatchersPerListener.get(listener);
+        if (dispatchers == null) {
+            MessageHandler[] handlers = listener.getHandlers();
+            dispatchers = new Constructor[handlers.length];
+            // group the handlers by the message type they accept
+            Map<Class, MessageHandler[]> handlersPerMessageType = new HashMap<Class, MessageHandler[]>();
+            for (int i = 0; i < handlers.length; i++) {
+                if (isDispatchedByGeneratedCode(handlers[i])) {
+                    Class messageType = handlers[i].getMethod().getParameterTypes()[0];
+                    MessageHandler[] group = handlersPerMessageType.get(messageType);
+                    if (group == null) {
+                        group = new MessageHandler[handlers.length];
+                        handlersPerMessageType.put(messageType, group);
+                    }
+                    group[i] = handlers[i];
+                }
+            }
+            for (MessageHandler[] group : handlersPerMessageType.values()) {
+                Constructor<? extends GeneratedMessageDispatcher> dispatcher
+                        = dispatcherGenerator.generate(listener.getListerDefinition(), group);
+                for (int i = 0; i < group.length; i++) {
+                    if (group[i] != null) {
+                        dispatchers[i] = dispatcher;
+                    }
+                }
+            }
+            dispatchersPerListener.put(listener, dispatchers);
+        }
+        return dispatchers;
+    }
+
+    // decorated invocations (synchronized, asynchronous) are not supported by generated dispatchers
+    private static boolean isDispatchedByGeneratedCode(MessageHandler handler) {
+        return GeneratedHandlerInvocation.class.equals(handler.getHandlerInvocation())
+                && !handler.isSynchronized()
+                && !handler.isAsynchronous()
+                && MethodInvokerGenerator.canInvokeDirectly(handler.getMethod());
+    }
+
+    private static int indexOf(MessageHandler handler) {
+        MessageHandler[] handlers = handler.getListenerConfig().getHandlers();
+        for (int i = 0; i < handlers.length; i++) {
+            if (handlers[i] == handler) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("The handler does not belong to its listener " + handler.getMethod());
+    }
+
+    private synchronized IMethodInvoker getInvoker(MessageHandler handler) {
+        MessageListener listener = handler.getListenerConfig();
+        MessageHandler[] handlers = listener.getHandlers();
+        IMethodInvoker[] invokers = invokersPerListener.get(listener);
+        if (invokers == null) {
+            Method[] methods = new Method[handlers.length];
+            for (int i = 0; i < handlers.length; i++) {
+                methods[i] = handlers[i].getMethod();
+            }
+            invokers = generator.generate(listener.getListerDefinition(), methods);
+            invokersPerListener.put(listener, invokers);
+        }
+        for (int i = 0; i < handlers.length; i++) {
+            if (handlers[i] == handler) {
+                return invokers[i];
+            }
+        }
+        return null;
+    }
+}
@@ -4,6 +4,6 @@ import net.engio.mbassy.bus.BusRuntime;
 import net.engio.mbassy.listener.MetadataReader;
 
 public interface ISubscriptionManagerProvider {
-	SubscriptionManager createManager(MetadataReader reader,
+	AbstractSubscriptionManager createManager(MetadataReader reader,
 			SubscriptionFactory factory, BusRuntime runtime);
 }
@@ -19,6 +19,21 @@ import java.util.Collection;
  */
 public class SubscriptionFactory {
 
+    // the set implementation used to store listeners that are referenced strongly
+    private Class<? extends Collection> strongListenerSet = StrongConcurrentSet.class;
+
+    /**
+     * Set the implementation of the sets that store the listeners of handlers that reference their listeners strongly,
+     * e.g. {@link net.engio.mbassy.common.LockFreeConcurrentSet} or {@link net.engio.mbassy.common.CopyOnWriteConcurrentSet}.
+     * The default is {@link StrongConcurrentSet}.
+     *
+     * @param strongListenerSet A thread-safe set implementation with a public no-arg constructor
+     */
+    public SubscriptionFactory setStrongListenerSet(Class<? extends Collection> strongListenerSet) {
+        this.strongListenerSet = strongListenerSet;
+        return this;
+    }
+
     public Subscription createSubscription(BusRuntime runtime, MessageHandler handlerMetadata) throws MessageBusException{
         try {
             Collection<IPublicationErrorHandler> errorHandlers = runtime.get(IBusConfiguration.Properties.PublicationErrorHandlers);
@@ -26,7 +41,7 @@ public class SubscriptionFactory {
             IHandlerInvocation invocation = buildInvocationForHandler(context);
             IMessageDispatcher dispatcher = buildDispatcher(context, invocation);
             return new Subscription(context, dispatcher, handlerMetadata.useStrongReferences()
-                ? new StrongConcurrentSet<Object>()
+                ? createStrongListenerSet()
                 : new WeakConcurrentSet<Object>());
         } catch (MessageBusException e) {
             throw e;
@@ -35,8 +50,24 @@ public class SubscriptionFactory {
         }
     }
 
+    protected Collection<Object> createStrongListenerSet() throws MessageBusException {
+        try {
+            return (Collection<Object>) strongListenerSet.getConstructor().newInstance();
+        } catch (NoSuchMethodException e) {
+            throw new MessageBusException("The provided listener set did not specify the necessary constructor "
+                    + strongListenerSet.getSimpleName() + "();", e);
+        } catch (Exception e) {
+            throw new MessageBusException("Could not instantiate the provided listener set "
+                    + strongListenerSet.getSimpleName(), e);
+        }
+    }
+
     protected IHandlerInvocation buildInvocationForHandler(SubscriptionContext context) throws MessageBusException {
         IHandlerInvocation invocation = createBaseHandlerInvocation(context);
+        if (context.getHandler().isSynchronized() && context.getHandler().isAsynchronous()
+                && context.getRuntime().contains(IBusConfiguration.Properties.AsynchronousHandlerMailboxes)) {
+            return new MailboxHandlerInvocation(invocation);
+        }
         if(context.getHandler().isSynchronized()){
             invocation = new SynchronizedHandlerInvocation(invocation);
         }
@@ -12,18 +12,39 @@ import org.junit.runners.Suite;
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
         AsyncFIFOBusTest.class,
+        AsynchronousHandlerInvocationTest.class,
+        BatchDispatchTest.class,
+        ConcurrentWeakIdentityMapTest.class,
         ConditionalHandlerTest.class,
+        ConflationTest.class,
+        CopyOnWriteConcurrentSetTest.class,
+        CopyOnWriteSubscriptionManagerTest.class,
         CustomHandlerAnnotationTest.class,
         DeadMessageTest.class,
+        ElasticDispatchTest.class,
         FilterTest.class,
+        GracefulShutdownTest.class,
+        HandlerInvocationTest.class,
+        HashedTimingWheelTest.class,
+        LockFreeConcurrentSetTest.class,
+        MessageExpiryTest.class,
+        MetadataIndexTest.class,
         MetadataReaderTest.class,
         MethodDispatchTest.class,
+        MultiLevelPriorityQueueTest.class,
+        OverflowPolicyTest.class,
+        PartitionedDispatchTest.class,
+        PublicationCompletionTest.class,
+        RingBufferQueueTest.class,
         StrongConcurrentSetTest.class,
         SubscriptionManagerTest.class,
         SyncAsyncTest.class,
+        SyncBusTest.CopyOnWriteListenersTest.class,
+        SyncBusTest.GeneratedDispatchTest.class,
         SyncBusTest.MBassadorTest.class,
         SyncBusTest.SyncMessageBusTest.class,
         SynchronizedHandlerTest.class,
+        WaitStrategyTest.class,
         WeakConcurrentSetTest.class
 })
 public class AllTests {
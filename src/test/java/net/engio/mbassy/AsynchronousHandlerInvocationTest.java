@@ -0,0 +1,118 @@
+package net.engio.mbassy;
+
+import net.engio.mbassy.bus.IMessagePublication;
+import net.engio.mbassy.bus.MBassador;
+import net.engio.mbassy.bus.config.BusConfiguration;
+import net.engio.mbassy.bus.config.Feature;
+import net.engio.mbassy.bus.config.IBusConfiguration;
+import net.engio.mbassy.common.CopyOnWriteConcurrentSet;
+import net.engio.mbassy.common.MessageBusTest;
+import net.engio.mbassy.listener.Handler;
+import net.engio.mbassy.listener.Invoke;
+import net.engio.mbassy.listener.Listener;
+import net.engio.mbassy.listener.References;
+import net.engio.mbassy.subscription.SubscriptionFactory;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test the different configurations of asynchronous handler invocation
+ */
+public class AsynchronousHandlerInvocationTest extends MessageBusTest {
+
+    private static final int Invocations = 200;
+    private static final int Listeners = 1000;
+
+    @Test
+    public void testThreadPerInvocation() throws InterruptedException {
+        IBusConfiguration configuration = new BusConfiguration()
+                .addFeature(Feature.SyncPubSub.Default())
+                .addFeature(Feature.AsynchronousHandlerInvocation.ThreadPerInvocation())
+                .addFeature(Feature.AsynchronousMessageDispatch.Default())
+                .addPublicationErrorHandler(new AssertionErrorHandler(true));
+        MBassador<Object> bus = new MBassador<Object>(configuration);
+        BlockingListener listener = new BlockingListener();
+        bus.subscribe(listener);
+        // all invocations need to run at the same time to finish
+        for (int i = 0; i < Invocations; i++) {
+            bus.publish("message");
+        }
+        assertTrue(listener.finished.await(30, TimeUnit.SECONDS));
+        bus.shutdown();
+    }
+
+    @Test
+    public void testListenersPerTask() throws InterruptedException {
+        assertEquals(Listeners, runChunkedInvocation(1, new SubscriptionFactory()));
+        assertEquals(10, runChunkedInvocation(100, new SubscriptionFactory()));
+        assertEquals(4, runChunkedInvocation(300, new SubscriptionFactory()));
+        assertEquals(1, runChunkedInvocation(Integer.MAX_VALUE, new SubscriptionFactory()));
+    }
+
+    @Test
+    public void testListenersPerTaskWithCopyOnWriteListeners() throws InterruptedException {
+        SubscriptionFactory factory = new SubscriptionFactory().setStrongListenerSet(CopyOnWriteConcurrentSet.class);
+        assertEquals(10, runChunkedInvocation(100, factory));
+        assertEquals(4, runChunkedInvocation(300, factory));
+        assertEquals(1, runChunkedInvocation(Integer.MAX_VALUE, factory));
+    }
+
+    // publish a single message to all listeners and return the number of executed tasks
+    private int runChunkedInvocation(int listenersPerTask, SubscriptionFactory subscriptionFactory) throws InterruptedException {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(2, 2, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<Runnable>());
+        IBusConfiguration configuration = new BusConfiguration()
+                .addFeature(Feature.SyncPubSub.Default().setSubscriptionFactory(subscriptionFactory))
+                .addFeature(new Feature.AsynchronousHandlerInvocation()
+                        .setExecutor(executor)
+                        .setListenersPerTask(listenersPerTask))
+                .addFeature(Feature.AsynchronousMessageDispatch.Default())
+                .addPublicationErrorHandler(new AssertionErrorHandler(true));
+        MBassador<Object> bus = new MBassador<Object>(configuration);
+        AtomicInteger invocations = new AtomicInteger();
+        for (int i = 0; i < Listeners; i++) {
+            bus.subscribe(new CountingListener(invocations));
+        }
+        IMessagePublication publication = bus.post("message").now();
+        assertTrue(publication.await(30, TimeUnit.SECONDS));
+        assertEquals(Listeners, invocations.get());
+        bus.shutdown();
+        // a task is counted when it has returned, which might be after the publication finished
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        return (int) executor.getCompletedTaskCount();
+    }
+
+    // referenced strongly, the test does not keep references to the listeners
+    @Listener(references = References.Strong)
+    public static class CountingListener {
+
+        private final AtomicInteger invocations;
+
+        public CountingListener(AtomicInteger invocations) {
+            this.invocations = invocations;
+        }
+
+        @Handler(delivery = Invoke.Asynchronously)
+        public void handle(String message) {
+            invocations.incrementAndGet();
+        }
+    }
+
+    public static class BlockingListener {
+
+        private final CountDownLatch running = new CountDownLatch(Invocations);
+        private final CountDownLatch finished = new CountDownLatch(Invocations);
+
+        @Handler(delivery = Invoke.Asynchronously)
+        public void handle(String message) throws InterruptedException {
+            running.countDown();
+            if (running.await(30, TimeUnit.SECONDS)) {
+                finished.countDown();
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package net.engio.mbassy;
+
+import net.engio.mbassy.bus.IMessagePublication;
+import net.engio.mbassy.bus.MBassador;
+import net.engio.mbassy.bus.common.IBatchObserver;
+import net.engio.mbassy.bus.config.BusConfiguration;
+import net.engio.mbassy.bus.config.Feature;
+import net.engio.mbassy.bus.config.IBusConfiguration;
+import net.engio.mbassy.common.MessageBusTest;
+import net.engio.mbassy.listener.Handler;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test that dispatcher threads process the pending messages in batches and notify the batch observer
+ */
+public class BatchDispatchTest extends MessageBusTest {
+
+    private static final int BatchSize = 16;
+    private static final int Messages = 1000;
+
+    @Test
+    public void testBatchesPreserveOrder() throws InterruptedException {
+        final List<Integer> batchSizes = new CopyOnWriteArrayList<Integer>();
+        final List<String> errors = new CopyOnWriteArrayList<String>();
+        IBusConfiguration configuration = new BusConfiguration()
+                .addFeature(Feature.SyncPubSub.Default())
+                .addFeature(Feature.AsynchronousHandlerInvocation.Default())
+                .addFeature(Feature.AsynchronousMessageDispatch.Default()
+                        .setNumberOfMessageDispatchers(1)
+                        .setBatchSize(BatchSize)
+                        .setBatchObserver(new IBatchObserver() {
+                            private int started;
+
+                            @Override
+                            public void beforeBatch(List<IMessagePublication> batch) {
+                                started = batch.size();
+                            }
+
+                            @Override
+                            public void afterBatch(List<IMessagePublication> batch) {
+                                if (batch.size() != started) errors.add("Batch has changed");
+                                batchSizes.add(batch.size());
+                            }
+                        }));
+        MBassador<Object> bus = new MBassador<Object>(configuration);
+        BlockingListener listener = new BlockingListener();
+        bus.subscribe(listener);
+        for (int i = 0; i < Messages; i++) {
+            bus.post(i).asynchronously();
+        }
+        // the first message blocks the dispatcher until all messages are queued
+        assertTrue(bus.hasPendingMessages());
+        listener.allPublished.countDown();
+        while (bus.hasPendingMessages()) {
+            pause(10);
+        }
+        assertTrue(listener.finished.await(10, TimeUnit.SECONDS));
+        assertEquals(Messages, listener.received.size());
+        for (int i = 0; i < Messages; i++) {
+            assertEquals(i, (int) listener.received.get(i));
+        }
+        int total = 0;
+        for (int size : batchSizes) {
+            assertTrue(size <= BatchSize);
+            total += size;
+        }
+        assertEquals(Messages, total);
+        assertTrue(batchSizes.contains(BatchSize));
+        assertTrue(errors.isEmpty());
+        bus.shutdown();
+    }
+
+    @Test
+    public void testNoPendingMessagesAfterShutdown() throws InterruptedException {
+        final MBassador<Object> bus = new MBassador<Object>(new BusConfiguration()
+                .addFeature(Feature.SyncPubSub.Default())
+                .addFeature(Feature.AsynchronousHandlerInvocation.Default())
+                .addFeature(Feature.AsynchronousMessageDispatch.Default()
+                        .setNumberOfMessageDispatchers(1)
+                        .setBatchSize(BatchSize)));
+        BlockingListener listener = new BlockingListener();
+        bus.subscribe(listener);
+        int messages = BatchSize / 2;
+        for (int i = 0; i < messages; i++) {
+            bus.post(i).asynchronously();
+        }
+        // the stop signal is queued behind the messages and drained into the same batch
+        Thread shutdown = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                bus.shutdown(10, TimeUnit.SECONDS);
+            }
+        });
+        shutdown.start();
+        pause(100);
+        listener.allPublished.countDown();
+        shutdown.join();
+        assertEquals(messages, listener.received.size());
+        assertFalse(bus.hasPendingMessages());
+    }
+
+    public static class BlockingListener {
+
+        private final CountDownLatch allPublished = new CountDownLatch(1);
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private final List<Integer> received = new CopyOnWriteArrayList<Integer>();
+
+        @Handler
+        public void handle(Integer message) throws InterruptedException {
+            allPublished.await();
+            received.add(message);
+            if (received.size() == Messages) {
+                finished.countDown();
+            }
+        }
+    }
+}
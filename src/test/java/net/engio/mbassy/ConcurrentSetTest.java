@@ -25,7 +25,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 public abstract class ConcurrentSetTest extends AssertSupport {
 
     // Shared state
-    protected final int numberOfElements = 100000;
+    protected int numberOfElements = 100000;
     protected final int numberOfThreads = 50;
 
     // needed to avoid premature garbage collection for weakly referenced listeners
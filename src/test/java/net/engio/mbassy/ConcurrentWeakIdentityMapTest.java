@@ -0,0 +1,92 @@
+package net.engio.mbassy;
+
+import net.engio.mbassy.common.AssertSupport;
+import net.engio.mbassy.common.ConcurrentExecutor;
+import net.engio.mbassy.common.ConcurrentWeakIdentityMap;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Test the identity semantics and the removal of garbage collected keys of the {@link ConcurrentWeakIdentityMap}
+ */
+public class ConcurrentWeakIdentityMapTest extends AssertSupport {
+
+    private static final int NumberOfKeys = 10000;
+
+    @Test
+    public void testKeysAreComparedByIdentity() {
+        ConcurrentWeakIdentityMap<String, Integer> map = new ConcurrentWeakIdentityMap<String, Integer>();
+        String first = new String("key");
+        String second = new String("key");
+        assertNull(map.put(first, 1));
+        assertNull(map.put(second, 2));
+        assertEquals(2, map.size());
+        assertEquals(1, (int) map.get(first));
+        assertEquals(2, (int) map.get(second));
+        assertNull(map.get("key"));
+        assertEquals(1, (int) map.put(first, 3));
+        assertEquals(2, (int) map.putIfAbsent(second, 4));
+        assertEquals(3, (int) map.remove(first));
+        assertFalse(map.containsKey(first));
+        assertTrue(map.containsKey(second));
+        assertNull(map.get(null));
+        assertEquals(1, map.entrySet().size());
+        assertTrue(second == map.keySet().iterator().next());
+    }
+
+    @Test
+    public void testCollectedKeysAreRemoved() {
+        ConcurrentWeakIdentityMap<Object, Object> map = new ConcurrentWeakIdentityMap<Object, Object>();
+        List<Object> permanent = new ArrayList<Object>();
+        for (int i = 0; i < NumberOfKeys; i++) {
+            Object key = new Object();
+            if (i % 3 == 0) {
+                permanent.add(key);
+            }
+            map.put(key, Boolean.TRUE);
+        }
+        // the keys are enqueued asynchronously after garbage collection
+        for (int attempt = 0; attempt < 100 && map.size() > permanent.size(); attempt++) {
+            runGC();
+        }
+        assertEquals(permanent.size(), map.size());
+        for (Object key : permanent) {
+            assertTrue(map.containsKey(key));
+        }
+    }
+
+    @Test
+    public void testConcurrentModification() {
+        final ConcurrentWeakIdentityMap<Object, Object> map = new ConcurrentWeakIdentityMap<Object, Object>();
+        final List<Object> missing = new CopyOnWriteArrayList<Object>();
+        ConcurrentExecutor.runConcurrent(new Runnable() {
+            @Override
+            public void run() {
+                List<Object> keys = new ArrayList<Object>();
+                for (int i = 0; i < NumberOfKeys; i++) {
+                    Object key = new Object();
+                    keys.add(key);
+                    map.put(key, key);
+                    map.put(new Object(), Boolean.TRUE); // garbage
+                }
+                for (int i = 0; i < keys.size(); i++) {
+                    if (map.get(keys.get(i)) != keys.get(i)) {
+                        missing.add(keys.get(i));
+                    }
+                    if (i % 2 == 0) {
+                        map.remove(keys.get(i));
+                    }
+                }
+                for (int i = 0; i < keys.size(); i++) {
+                    if (map.containsKey(keys.get(i)) != (i % 2 != 0)) {
+                        missing.add(keys.get(i));
+                    }
+                }
+            }
+        }, 10);
+        assertTrue(missing.isEmpty());
+    }
+}
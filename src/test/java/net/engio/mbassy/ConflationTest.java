@@ -0,0 +1,100 @@
+package net.engio.mbassy;
+
+import net.engio.mbassy.bus.IMessagePublication;
+import net.engio.mbassy.bus.MBassador;
+import net.engio.mbassy.bus.config.BusConfiguration;
+import net.engio.mbassy.bus.config.Feature;
+import net.engio.mbassy.bus.config.IBusConfiguration;
+import net.engio.mbassy.common.MessageBusTest;
+import net.engio.mbassy.listener.Handler;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test that pending messages are replaced by newer messages with the same key if conflation is enabled
+ */
+public class ConflationTest extends MessageBusTest {
+
+    private static final int Updates = 100;
+
+    @Test
+    public void testLatestMessageWins() throws InterruptedException {
+        BlockingListener listener = new BlockingListener();
+        MBassador<Object> bus = createBlockedBus(listener);
+
+        for (int i = 0; i < Updates; i++) {
+            IMessagePublication publication = bus.post("A" + i).withKey("A").asynchronously();
+            assertTrue(publication.isScheduled());
+            bus.post("B" + i).withKey("B").asynchronously();
+        }
+        bus.post("C").asynchronously();
+        bus.post("C").asynchronously();
+        assertEquals(2L * (Updates - 1), bus.getConflatedMessageCount());
+
+        listener.release.countDown();
+        awaitDelivery(bus, listener, 5);
+        // the conflated messages keep the position of the first message with the same key
+        assertEquals(Arrays.asList("blocking", "A" + (Updates - 1), "B" + (Updates - 1), "C", "C"), listener.received);
+        bus.shutdown();
+    }
+
+    @Test
+    public void testDispatchedMessagesAreNotReplaced() throws InterruptedException {
+        BlockingListener listener = new BlockingListener();
+        MBassador<Object> bus = createBlockedBus(listener);
+
+        bus.post("A0").withKey("A").asynchronously();
+        listener.release.countDown();
+        awaitDelivery(bus, listener, 2);
+        bus.post("A1").withKey("A").asynchronously();
+        awaitDelivery(bus, listener, 3);
+
+        assertEquals(Arrays.asList("blocking", "A0", "A1"), listener.received);
+        assertEquals(0L, bus.getConflatedMessageCount());
+        bus.shutdown();
+    }
+
+    // create a bus whose only dispatcher is blocked by the first message
+    private MBassador<Object> createBlockedBus(BlockingListener listener) throws InterruptedException {
+        IBusConfiguration configuration = new BusConfiguration()
+                .addFeature(Feature.SyncPubSub.Default())
+                .addFeature(Feature.AsynchronousHandlerInvocation.Default())
+                .addFeature(Feature.AsynchronousMessageDispatch.Default()
+                        .setNumberOfMessageDispatchers(1)
+                        .setConflateByKey(true));
+        MBassador<Object> bus = new MBassador<Object>(configuration);
+        bus.subscribe(listener);
+        bus.post("blocking").withKey("blocking").asynchronously();
+        assertTrue(listener.blocked.await(10, TimeUnit.SECONDS));
+        return bus;
+    }
+
+    private void awaitDelivery(MBassador<Object> bus, BlockingListener listener, int messages) {
+        long deadline = System.currentTimeMillis() + 10000;
+        while ((bus.hasPendingMessages() || listener.received.size() < messages)
+                && System.currentTimeMillis() < deadline) {
+            pause(10);
+        }
+    }
+
+    public static class BlockingListener {
+
+        private final CountDownLatch blocked = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final List<String> received = new CopyOnWriteArrayList<String>();
+
+        @Handler
+        public void handle(String message) throws InterruptedException {
+            if (message.equals("blocking")) {
+                blocked.countDown();
+                release.await();
+            }
+            received.add(message);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package net.engio.mbassy;
+
+import net.engio.mbassy.common.CopyOnWriteConcurrentSet;
+
+import java.util.Collection;
+
+/**
+ * Run all tests of the strong concurrent set against the copy-on-write implementation.
+ * Each modification copies all elements, hence the tests run with less elements.
+ */
+public class CopyOnWriteConcurrentSetTest extends StrongConcurrentSetTest {
+
+    public CopyOnWriteConcurrentSetTest() {
+        numberOfElements = 1000;
+    }
+
+    @Override
+    protected Collection createSet() {
+        return new CopyOnWriteConcurrentSet();
+    }
+}
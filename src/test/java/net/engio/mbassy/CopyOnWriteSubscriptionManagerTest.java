@@ -0,0 +1,17 @@
+package net.engio.mbassy;
+
+import net.engio.mbassy.listener.MetadataReader;
+import net.engio.mbassy.subscription.AbstractSubscriptionManager;
+import net.engio.mbassy.subscription.CopyOnWriteSubscriptionManagerProvider;
+import net.engio.mbassy.subscription.SubscriptionFactory;
+
+/**
+ * Run all subscription manager tests against the lock-free (copy-on-write) registry.
+ */
+public class CopyOnWriteSubscriptionManagerTest extends SubscriptionManagerTest {
+
+    @Override
+    protected AbstractSubscriptionManager createSubscriptionManager() {
+        return new CopyOnWriteSubscriptionManagerProvider().createManager(new MetadataReader(), new SubscriptionFactory(), mockedRuntime());
+    }
+}
@@ -0,0 +1,209 @@
+package net.engio.mbassy;
+
+import net.engio.mbassy.bus.IMessagePublication;
+import net.engio.mbassy.bus.MBassador;
+import net.engio.mbassy.bus.common.IDispatcherPoolObserver;
+import net.engio.mbassy.bus.config.BusConfiguration;
+import net.engio.mbassy.bus.config.Feature;
+import net.engio.mbassy.bus.config.IBusConfiguration;
+import net.engio.mbassy.common.MessageBusTest;
+import net.engio.mbassy.listener.Handler;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test that elastic dispatch adds dispatchers under load and retires them when they are idle
+ */
+public class ElasticDispatchTest extends MessageBusTest {
+
+    @Test
+    public void testGrowOnQueueDepthAndRetire() throws InterruptedException {
+        PoolObserver observer = new PoolObserver();
+        IBusConfiguration configuration = new BusConfiguration()
+                .addFeature(Feature.SyncPubSub.Default())
+                .addFeature(Feature.AsynchronousHandlerInvocation.Default())
+                .addFeature(Feature.AsynchronousMessageDispatch.Elastic(1, 4)
+                        .setDispatcherGrowthThreshold(10)
+                        .setDispatcherKeepAliveTime(100, TimeUnit.MILLISECONDS)
+                        .setDispatcherPoolObserver(observer));
+        MBassador<Object> bus = new MBassador<Object>(configuration);
+        BlockingListener listener = new BlockingListener();
+        bus.subscribe(listener);
+        assertEquals(1, bus.getNumberOfMessageDispatchers());
+
+        for (int i = 0; i < 100; i++) {
+            bus.post("message").asynchronously();
+        }
+        assertEquals(4, bus.getNumberOfMessageDispatchers());
+        assertTrue(listener.blocked.await(10, TimeUnit.SECONDS)); // all dispatchers are busy
+
+        listener.release.countDown();
+        long deadline = System.currentTimeMillis() + 10000;
+        while ((bus.hasPendingMessages() || bus.getNumberOfMessageDispatchers() > 1)
+                && System.currentTimeMillis() < deadline) {
+            pause(10);
+        }
+        assertEquals(100, listener.received.get());
+        assertEquals(1, bus.getNumberOfMessageDispatchers());
+        // dispatchers notify the observer concurrently, so the notifications may arrive in any order
+        assertEquals(3, observer.added.size());
+        assertTrue(observer.added.containsAll(Arrays.asList(2, 3, 4)));
+        assertEquals(3, observer.retired.size());
+        assertTrue(observer.retired.containsAll(Arrays.asList(3, 2, 1)));
+        bus.shutdown();
+    }
+
+    @Test
+    public void testGrowOnWaitTime() throws InterruptedException {
+        IBusConfiguration configuration = new BusConfiguration()
+                .addFeature(Feature.SyncPubSub.Default())
+                .addFeature(Feature.AsynchronousHandlerInvocation.Default())
+                .addFeature(Feature.AsynchronousMessageDispatch.Elastic(1, 2)
+                        .setDispatcherGrowthThreshold(1000)
+                        .setMaxWaitTime(20, TimeUnit.MILLISECONDS));
+        MBassador<Object> bus = new MBassador<Object>(configuration);
+        SlowListener listener = new SlowListener();
+        bus.subscribe(listener);
+
+        for (int i = 0; i < 5; i++) {
+            bus.post("message").asynchronously();
+        }
+        long deadline = System.currentTimeMillis() + 10000;
+        while (bus.getNumberOfMessageDispatchers() < 2 && System.currentTimeMillis() < deadline) {
+            pause(10);
+        }
+        assertEquals(2, bus.getNumberOfMessageDispatchers());
+        bus.shutdown();
+    }
+
+    @Test
+    public void testDispatchersAddedDuringShutdownAreStopped() throws InterruptedException {
+        for (int round = 0; round < 20; round++) {
+            final MBassador<Object> bus = new MBassador<Object>(new BusConfiguration()
+                    .addFeature(Feature.SyncPubSub.Default())
+                    .addFeature(Feature.AsynchronousHandlerInvocation.Default())
+                    .addFeature(Feature.AsynchronousMessageDispatch.Elastic(1, 16)
+                            .setDispatcherGrowthThreshold(1)));
+            bus.subscribe(new CountingListener());
+            // the publisher keeps the dispatcher pool growing while the bus shuts down
+            Thread publisher = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (!bus.isShutdown()) {
+                        bus.post("message").asynchronously();
+                    }
+                }
+            });
+            publisher.start();
+            pause(5);
+            long start = System.currentTimeMillis();
+            bus.shutdown(10, TimeUnit.SECONDS);
+            // every dispatcher took a stop signal, none had to be interrupted after the timeout
+            assertTrue(System.currentTimeMillis() - start < 5000);
+            assertEquals(0, bus.getNumberOfMessageDispatchers());
+            publisher.join();
+        }
+    }
+
+    @Test
+    public void testShutdownAfterRetirement() throws InterruptedException {
+        StopSignalCountingQueue queue = new StopSignalCountingQueue();
+        MBassador<Object> bus = new MBassador<Object>(new BusConfiguration()
+                .addFeature(Feature.SyncPubSub.Default())
+                .addFeature(Feature.AsynchronousHandlerInvocation.Default())
+                .addFeature(Feature.AsynchronousMessageDispatch.Elastic(1, 4)
+                        .setMessageQueue(queue)
+                        .setDispatcherGrowthThreshold(10)
+                        .setDispatcherKeepAliveTime(50, TimeUnit.MILLISECONDS)));
+        BlockingListener listener = new BlockingListener();
+        bus.subscribe(listener);
+        for (int i = 0; i < 100; i++) {
+            bus.post("message").asynchronously();
+        }
+        assertTrue(listener.blocked.await(10, TimeUnit.SECONDS)); // all dispatchers are busy
+        listener.release.countDown();
+        long deadline = System.currentTimeMillis() + 10000;
+        while ((bus.hasPendingMessages() || bus.getNumberOfMessageDispatchers() > 1)
+                && System.currentTimeMillis() < deadline) {
+            pause(10);
+        }
+        assertEquals(1, bus.getNumberOfMessageDispatchers());
+
+        long start = System.currentTimeMillis();
+        assertTrue(bus.shutdown(10, TimeUnit.SECONDS).isEmpty());
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        // retired dispatchers are not counted
+        assertEquals(1, queue.stopSignals.get());
+        assertEquals(0, bus.getNumberOfMessageDispatchers());
+        assertEquals(100, listener.received.get());
+    }
+
+    // counts the stop signals that the shutdown offers, their message is the only one that is not a published one
+    public static class StopSignalCountingQueue extends LinkedBlockingQueue<IMessagePublication> {
+
+        private final AtomicInteger stopSignals = new AtomicInteger();
+
+        @Override
+        public boolean offer(IMessagePublication publication, long timeout, TimeUnit unit) throws InterruptedException {
+            if ("stop".equals(publication.getMessage())) {
+                stopSignals.incrementAndGet();
+            }
+            return super.offer(publication, timeout, unit);
+        }
+    }
+
+    public static class PoolObserver implements IDispatcherPoolObserver {
+
+        private final List<Integer> added = new CopyOnWriteArrayList<Integer>();
+        private final List<Integer> retired = new CopyOnWriteArrayList<Integer>();
+
+        @Override
+        public void dispatcherAdded(int numberOfDispatchers) {
+            added.add(numberOfDispatchers);
+        }
+
+        @Override
+        public void dispatcherRetired(int numberOfDispatchers) {
+            retired.add(numberOfDispatchers);
+        }
+    }
+
+    public static class BlockingListener {
+
+        private final CountDownLatch blocked = new CountDownLatch(4);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final AtomicInteger received = new AtomicInteger();
+
+        @Handler
+        public void handle(String message) throws InterruptedException {
+            blocked.countDown();
+            release.await();
+            received.incrementAndGet();
+        }
+    }
+
+    public static class CountingListener {
+
+        private final AtomicInteger received = new AtomicInteger();
+
+        @Handler
+        public void handle(String message) {
+            received.incrementAndGet();
+        }
+    }
+
+    public static class SlowListener {
+
+        @Handler
+        public void handle(String message) throws InterruptedException {
+            Thread.sleep(50);
+        }
+    }
+}
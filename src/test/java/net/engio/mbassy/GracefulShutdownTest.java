@@ -0,0 +1,241 @@
+package net.engio.mbassy;
+
+import net.engio.mbassy.bus.IMessagePublication;
+import net.engio.mbassy.bus.IScheduledPublication;
+import net.engio.mbassy.bus.MBassador;
+import net.engio.mbassy.bus.config.BusConfiguration;
+import net.engio.mbassy.bus.config.Feature;
+import net.engio.mbassy.bus.config.IBusConfiguration;
+import net.engio.mbassy.common.MessageBusTest;
+import net.engio.mbassy.common.RingBufferQueue;
+import net.engio.mbassy.listener.Handler;
+import net.engio.mbassy.listener.Invoke;
+import net.engio.mbassy.listener.Listener;
+import net.engio.mbassy.listener.References;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Test that a bus that is shut down stops accepting messages, dispatches the pending messages within the timeout
+ * and reports the messages that it did not deliver.
+ */
+public class GracefulShutdownTest extends MessageBusTest {
+
+    private IBusConfiguration configuration(Feature.AsynchronousMessageDispatch dispatch) {
+        return new BusConfiguration()
+                .addFeature(Feature.SyncPubSub.Default())
+                .addFeature(Feature.AsynchronousHandlerInvocation.Default())
+                .addFeature(dispatch)
+                .addPublicationErrorHandler(new EmptyErrorHandler());
+    }
+
+    @Test
+    public void testShutdownDispatchesPendingMessages() {
+        MBassador<Object> bus = new MBassador<Object>(configuration(Feature.AsynchronousMessageDispatch.Default()
+                .setNumberOfMessageDispatchers(1)));
+        CountingListener listener = new CountingListener();
+        bus.subscribe(listener);
+
+        for (int i = 0; i < 100; i++) {
+            bus.post("message").asynchronously();
+        }
+        List<IMessagePublication> undelivered = bus.shutdown(10, TimeUnit.SECONDS);
+        assertTrue(undelivered.isEmpty());
+        assertEquals(100, listener.synchronous.get());
+        // asynchronous handlers have finished as well
+        assertEquals(100, listener.asynchronous.get());
+        assertTrue(bus.isShutdown());
+        assertEquals(0, bus.getNumberOfMessageDispatchers());
+        assertFalse(bus.hasPendingMessages());
+
+        IMessagePublication rejected = bus.post("message").asynchronously();
+        assertTrue(rejected.isFinished());
+        assertTrue(rejected.hasError());
+        assertEquals(1L, bus.getRejectedMessageCount());
+        assertEquals(100, listener.synchronous.get());
+    }
+
+    @Test
+    public void testCloseWithBatchesAndPriorities() {
+        MBassador<Object> bus = new MBassador<Object>(configuration(Feature.AsynchronousMessageDispatch.Prioritized(3)
+                .setNumberOfMessageDispatchers(3)
+                .setBatchSize(4)));
+        CountingListener listener = new CountingListener();
+        bus.subscribe(listener);
+
+        for (int i = 0; i < 300; i++) {
+            bus.post("message").withPriority(i % 3).asynchronously();
+        }
+        bus.close();
+        assertEquals(300, listener.synchronous.get());
+        assertEquals(300, listener.asynchronous.get());
+        assertEquals(0, bus.getNumberOfMessageDispatchers());
+    }
+
+    @Test
+    public void testShutdownReportsUndeliveredMessages() throws InterruptedException {
+        MBassador<Object> bus = new MBassador<Object>(configuration(Feature.AsynchronousMessageDispatch.Default()
+                .setNumberOfMessageDispatchers(1)));
+        BlockingListener listener = new BlockingListener();
+        bus.subscribe(listener);
+
+        bus.post("first").asynchronously();
+        assertTrue(listener.blocked.await(10, TimeUnit.SECONDS)); // the dispatcher is busy
+        for (int i = 0; i < 9; i++) {
+            bus.post("pending").asynchronously();
+        }
+        long start = System.nanoTime();
+        List<IMessagePublication> undelivered = bus.shutdown(100, TimeUnit.MILLISECONDS);
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        assertEquals(9, undelivered.size());
+        for (IMessagePublication publication : undelivered) {
+            assertEquals("pending", publication.getMessage());
+            assertTrue(publication.isFinished());
+            assertTrue(publication.hasError());
+        }
+        pause(100);
+        assertEquals(0, listener.received.get());
+    }
+
+    @Test
+    public void testPublisherWaitingForSpaceDuringShutdown() throws InterruptedException {
+        assertPublisherWaitingForSpaceDuringShutdown(new ArrayBlockingQueue<IMessagePublication>(1));
+    }
+
+    @Test
+    public void testPublisherWaitingForSpaceInRingBufferDuringShutdown() throws InterruptedException {
+        assertPublisherWaitingForSpaceDuringShutdown(new RingBufferQueue<IMessagePublication>(1));
+    }
+
+    private void assertPublisherWaitingForSpaceDuringShutdown(BlockingQueue<IMessagePublication> queue) throws InterruptedException {
+        MBassador<Object> bus = new MBassador<Object>(configuration(Feature.AsynchronousMessageDispatch.Default()
+                .setNumberOfMessageDispatchers(1)
+                .setMessageQueue(queue)));
+        BlockingListener listener = new BlockingListener();
+        bus.subscribe(listener);
+
+        bus.post("first").asynchronously();
+        assertTrue(listener.blocked.await(10, TimeUnit.SECONDS)); // the dispatcher is busy
+        int pending = queue.remainingCapacity();
+        for (int i = 0; i < pending; i++) {
+            bus.post("pending").asynchronously(); // fill the queue
+        }
+        final MBassador<Object> publisher = bus;
+        final AtomicReference<IMessagePublication> late = new AtomicReference<IMessagePublication>();
+        Thread blocked = new Thread() {
+            @Override
+            public void run() {
+                late.set(publisher.post("late").asynchronously());
+            }
+        };
+        blocked.start();
+        pause(50);
+
+        // the publisher queues its message when the shutdown discards the pending ones
+        assertEquals(pending, bus.shutdown(100, TimeUnit.MILLISECONDS).size());
+        blocked.join(10000);
+        assertFalse(blocked.isAlive());
+        assertTrue(late.get().isFinished());
+        assertTrue(late.get().hasError());
+        assertFalse(bus.hasPendingMessages());
+    }
+
+    @Test
+    public void testCloseWithoutShutdownTimeout() {
+        MBassador<Object> bus = new MBassador<Object>(configuration(Feature.AsynchronousMessageDispatch.Default()
+                .setNumberOfMessageDispatchers(1)
+                .setShutdownTimeout(0, TimeUnit.SECONDS)));
+        CountingListener listener = new CountingListener();
+        bus.subscribe(listener);
+
+        for (int i = 0; i < 100; i++) {
+            bus.post("message").asynchronously();
+        }
+        // the default timeout applies
+        bus.close();
+        assertEquals(100, listener.synchronous.get());
+        assertEquals(0, bus.getNumberOfMessageDispatchers());
+    }
+
+    @Test
+    public void testShutdownCancelsScheduledPublications() {
+        MBassador<Object> bus = new MBassador<Object>(configuration(Feature.AsynchronousMessageDispatch.Default()));
+        CountingListener listener = new CountingListener();
+        bus.subscribe(listener);
+
+        IScheduledPublication periodic = bus.post("message").every(10, TimeUnit.MILLISECONDS);
+        pause(100);
+        bus.shutdown(10, TimeUnit.SECONDS);
+        long published = periodic.getNumberOfPublications();
+        assertTrue(published > 0);
+        pause(100);
+        assertEquals(published, periodic.getNumberOfPublications());
+        // a publication that fired during the shutdown has been rejected
+        assertTrue(listener.synchronous.get() >= published - 1);
+        assertTrue(listener.synchronous.get() <= published);
+    }
+
+    @Test
+    public void testScheduledPublicationAfterShutdownIsRejected() {
+        MBassador<Object> bus = new MBassador<Object>(configuration(Feature.AsynchronousMessageDispatch.Default()));
+        CountingListener listener = new CountingListener();
+        bus.subscribe(listener);
+        bus.post("message").after(10, TimeUnit.MILLISECONDS); // starts the timer
+        bus.shutdown(10, TimeUnit.SECONDS);
+        long rejected = bus.getRejectedMessageCount();
+
+        IScheduledPublication delayed = bus.post("message").after(10, TimeUnit.MILLISECONDS);
+        IScheduledPublication periodic = bus.post("message").every(10, TimeUnit.MILLISECONDS);
+        for (IScheduledPublication scheduled : new IScheduledPublication[]{delayed, periodic}) {
+            assertTrue(scheduled.isCancelled());
+            assertFalse(scheduled.cancel());
+            assertEquals(0L, scheduled.getNumberOfPublications());
+            assertTrue(scheduled.getLastPublication().isFinished());
+            assertTrue(scheduled.getLastPublication().hasError());
+        }
+        assertEquals(rejected + 2, bus.getRejectedMessageCount());
+        pause(100);
+        assertTrue(listener.synchronous.get() <= 1);
+    }
+
+    @Listener(references = References.Strong)
+    public static class CountingListener {
+
+        private final AtomicInteger synchronous = new AtomicInteger();
+        private final AtomicInteger asynchronous = new AtomicInteger();
+
+        @Handler
+        public void handle(String message) throws InterruptedException {
+            Thread.sleep(1);
+            synchronous.incrementAndGet();
+        }
+
+        @Handler(delivery = Invoke.Asynchronously)
+        public void handleAsynchronously(String message) throws InterruptedException {
+            Thread.sleep(1);
+            asynchronous.incrementAndGet();
+        }
+    }
+
+    @Listener(references = References.Strong)
+    public static class BlockingListener {
+
+        private final CountDownLatch blocked = new CountDownLatch(1);
+        private final AtomicInteger received = new AtomicInteger();
+
+        @Handler
+        public void handle(String message) throws InterruptedException {
+            blocked.countDown();
+            // interrupted by the shutdown
+            new CountDownLatch(1).await();
+            received.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package net.engio.mbassy;
+
+import net.engio.mbassy.bus.BusRuntime;
+import net.engio.mbassy.bus.MessagePublication;
+import net.engio.mbassy.bus.error.IPublicationErrorHandler;
+import net.engio.mbassy.bus.error.PublicationError;
+import net.engio.mbassy.common.AssertSupport;
+import net.engio.mbassy.common.CopyOnWriteConcurrentSet;
+import net.engio.mbassy.dispatch.GeneratedHandlerInvocation;
+import net.engio.mbassy.dispatch.GeneratedMessageDispatcher;
+import net.engio.mbassy.dispatch.ReflectiveHandlerInvocation;
+import net.engio.mbassy.dispatch.codegen.IMethodInvoker;
+import net.engio.mbassy.dispatch.codegen.MessageDispatcherGenerator;
+import net.engio.mbassy.dispatch.codegen.MethodInvokerGenerator;
+import net.engio.mbassy.listener.Enveloped;
+import net.engio.mbassy.listener.Filter;
+import net.engio.mbassy.listener.Handler;
+import net.engio.mbassy.listener.IMessageFilter;
+import net.engio.mbassy.listener.MessageHandler;
+import net.engio.mbassy.listener.MetadataReader;
+import net.engio.mbassy.listeners.ObjectListener;
+import net.engio.mbassy.subscription.MessageEnvelope;
+import net.engio.mbassy.subscription.Subscription;
+import net.engio.mbassy.subscription.SubscriptionContext;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Test that handlers invoked by generated classes behave exactly like handlers invoked using reflection,
+ * including the errors that are reported.
+ */
+public class HandlerInvocationTest extends AssertSupport {
+
+    @Test
+    public void testHandlerIsInvokedByGeneratedClass() {
+        GeneratedHandlerInvocation invocation = new GeneratedHandlerInvocation(context("handle", new LinkedList<PublicationError>()));
+        assertTrue(invocation.isGenerated());
+
+        InvocationListener listener = new InvocationListener();
+        invocation.invoke(listener, "message", publication("message"));
+        invocation.invoke(listener, "message", publication("message"));
+        assertEquals(2, listener.handled);
+    }
+
+    @Test
+    public void testNonPublicHandlerFallsBackToReflection() {
+        GeneratedHandlerInvocation invocation = new GeneratedHandlerInvocation(context("handleNonPublic", new LinkedList<PublicationError>()));
+        assertFalse(invocation.isGenerated());
+
+        InvocationListener listener = new InvocationListener();
+        invocation.invoke(listener, "message", publication("message"));
+        assertEquals(1, listener.handled);
+    }
+
+    @Test
+    public void testHandlerWithReturnValue() {
+        GeneratedHandlerInvocation invocation = new GeneratedHandlerInvocation(context("handleWithResult", new LinkedList<PublicationError>()));
+        assertTrue(invocation.isGenerated());
+
+        InvocationListener listener = new InvocationListener();
+        invocation.invoke(listener, 1L, publication(1L));
+        assertEquals(1, listener.handled);
+    }
+
+    @Test
+    public void testGeneratedClassesShareClassLoader() throws Exception {
+        MethodInvokerGenerator generator = new MethodInvokerGenerator();
+        IMethodInvoker first = generator.generate(InvocationListener.class.getMethod("handle", String.class));
+        IMethodInvoker second = generator.generate(InvocationListener.class.getMethod("handleWithResult", Long.class));
+        assertTrue(first.getClass() != second.getClass());
+        assertTrue(first.getClass().getClassLoader() == second.getClass().getClassLoader());
+    }
+
+    @Test
+    public void testListenerIsResolvedByItsClassLoader() throws Exception {
+        // a listener in a package of mbassador, loaded by another class loader than mbassador
+        String name = ObjectListener.class.getName();
+        Class<?> isolated = new IsolatingClassLoader(name).loadClass(name);
+        assertTrue(isolated != ObjectListener.class);
+
+        IMethodInvoker invoker = new MethodInvokerGenerator().generate(isolated.getMethod("handle", Object.class));
+        assertNotNull(invoker);
+        Object listener = isolated.getConstructor().newInstance();
+        invoker.invoke(listener, "message");
+        Field handled = isolated.getDeclaredField("handledMessages");
+        handled.setAccessible(true);
+        assertEquals(Arrays.asList("message"), handled.get(listener));
+    }
+
+    @Test
+    public void testInvokersOfListenerShareGeneratedClass() throws Exception {
+        Method[] handlers = new Method[]{
+                InvocationListener.class.getMethod("handle", String.class),
+                InvocationListener.class.getDeclaredMethod("handleNonPublic", String.class),
+                InvocationListener.class.getMethod("handleWithResult", Long.class)};
+        IMethodInvoker[] invokers = new MethodInvokerGenerator().generate(InvocationListener.class, handlers);
+        assertNotNull(invokers[0]);
+        assertNull(invokers[1]);
+        assertNotNull(invokers[2]);
+        assertEquals(invokers[0].getClass(), invokers[2].getClass());
+
+        InvocationListener listener = new InvocationListener();
+        invokers[0].invoke(listener, "message");
+        invokers[2].invoke(listener, 1L);
+        assertEquals(2, listener.handled);
+    }
+
+    @Test
+    public void testGeneratedDispatcherIsSharedByHandlersOfMessageType() throws Exception {
+        Constructor<? extends GeneratedMessageDispatcher> dispatcher = generateDispatcher(String.class);
+        assertNotNull(dispatcher);
+        assertTrue(dispatcher.getDeclaringClass() != generateDispatcher(MessageEnvelope.class).getDeclaringClass());
+
+        // one class for all handlers of the listener class that accept strings, selected by the index of the handler
+        List<PublicationError> errors = new LinkedList<PublicationError>();
+        DispatchListener listener = new DispatchListener();
+        for (String handler : new String[]{"handle", "handleFiltered"}) {
+            SubscriptionContext context = context(DispatchListener.class, handler, errors);
+            dispatcher.newInstance(context, new GeneratedHandlerInvocation(context), indexOf(context.getHandler()))
+                    .dispatch(publication("message"), "message", Arrays.asList(listener));
+        }
+        assertEquals(1, listener.handled);
+        assertEquals(1, listener.filtered);
+        assertTrue(errors.isEmpty());
+    }
+
+    @Test
+    public void testGeneratedDispatcherAppliesFiltersAndEnvelopes() throws Exception {
+        List<PublicationError> errors = new LinkedList<PublicationError>();
+        DispatchListener listener = new DispatchListener();
+        CopyOnWriteConcurrentSet<Object> snapshotListeners = new CopyOnWriteConcurrentSet<Object>();
+        snapshotListeners.add(listener);
+        for (Iterable listeners : new Iterable[]{Arrays.asList(listener), snapshotListeners}) {
+            for (String handler : new String[]{"handle", "handleFiltered", "handleEnveloped"}) {
+                GeneratedMessageDispatcher dispatcher = dispatcher(handler, errors);
+                dispatcher.dispatch(publication("message"), "message", listeners);
+                dispatcher.dispatch(publication(""), "", listeners);
+            }
+        }
+        assertEquals(4, listener.handled);
+        assertEquals(2, listener.filtered);
+        assertEquals(4, listener.enveloped);
+        assertTrue(errors.isEmpty());
+    }
+
+    @Test
+    public void testGeneratedDispatcherReportsErrorsAndContinues() throws Exception {
+        List<PublicationError> errors = new LinkedList<PublicationError>();
+        DispatchListener first = new DispatchListener();
+        DispatchListener second = new DispatchListener();
+        dispatcher("throwing", errors).dispatch(publication("message"), "message", Arrays.asList(first, new Object(), second));
+        assertEquals(2, first.handled + second.handled);
+        assertEquals(3, errors.size());
+
+        List<PublicationError> reflectiveErrors = new LinkedList<PublicationError>();
+        SubscriptionContext context = context(DispatchListener.class, "throwing", reflectiveErrors);
+        new ReflectiveHandlerInvocation(context).invoke(new Object(), "message", publication("message"));
+        assertEquals(reflectiveErrors.get(0).getMessage(), errors.get(1).getMessage());
+        assertEquals(reflectiveErrors.get(0).getCause().getClass(), errors.get(1).getCause().getClass());
+    }
+
+    private Constructor<? extends GeneratedMessageDispatcher> generateDispatcher(Class messageType) {
+        MessageHandler[] handlers = new MetadataReader().getMessageListener(DispatchListener.class).getHandlers();
+        MessageHandler[] group = new MessageHandler[handlers.length];
+        for (int i = 0; i < handlers.length; i++) {
+            if (handlers[i].getMethod().getParameterTypes()[0].equals(messageType)) {
+                group[i] = handlers[i];
+            }
+        }
+        return new MessageDispatcherGenerator().generate(DispatchListener.class, group);
+    }
+
+    private GeneratedMessageDispatcher dispatcher(String handlerName, List<PublicationError> errors) throws Exception {
+        SubscriptionContext context = context(DispatchListener.class, handlerName, errors);
+        MessageHandler handler = context.getHandler();
+        return generateDispatcher(handler.getMethod().getParameterTypes()[0])
+                .newInstance(context, new GeneratedHandlerInvocation(context), indexOf(handler));
+    }
+
+    private int indexOf(MessageHandler handler) {
+        return Arrays.asList(handler.getListenerConfig().getHandlers()).indexOf(handler);
+    }
+
+    @Test
+    public void testErrorsAreReportedLikeReflectiveInvocation() {
+        assertSameErrors("throwing", new InvocationListener(), "message");
+        assertSameErrors("handle", new InvocationListener(), 1L);
+        assertSameErrors("handle", new Object(), "message");
+        assertSameErrors("handle", null, "message");
+    }
+
+    private void assertSameErrors(String handler, Object listener, Object message) {
+        List<PublicationError> reflectiveErrors = new LinkedList<PublicationError>();
+        new ReflectiveHandlerInvocation(context(handler, reflectiveErrors)).invoke(listener, message, publication(message));
+        List<PublicationError> generatedErrors = new LinkedList<PublicationError>();
+        new GeneratedHandlerInvocation(context(handler, generatedErrors)).invoke(listener, message, publication(message));
+
+        assertEquals(1, reflectiveErrors.size());
+        assertEquals(1, generatedErrors.size());
+        PublicationError expected = reflectiveErrors.get(0);
+        PublicationError actual = generatedErrors.get(0);
+        assertEquals(expected.getMessage(), actual.getMessage());
+        assertEquals(expected.getCause().getClass(), actual.getCause().getClass());
+        if (expected.getCause().getCause() != null) {
+            assertEquals(expected.getCause().getCause().getClass(), actual.getCause().getCause().getClass());
+        }
+    }
+
+    private SubscriptionContext context(String handlerName, final List<PublicationError> errors) {
+        return context(InvocationListener.class, handlerName, errors);
+    }
+
+    private SubscriptionContext context(Class listener, String handlerName, final List<PublicationError> errors) {
+        IPublicationErrorHandler errorCollector = new IPublicationErrorHandler() {
+            @Override
+            public void handleError(PublicationError error) {
+                errors.add(error);
+            }
+        };
+        for (MessageHandler handler : new MetadataReader().getMessageListener(listener).getHandlers()) {
+            if (handler.getMethod().getName().equals(handlerName)) {
+                return new SubscriptionContext(new BusRuntime(null), handler, Collections.singleton(errorCollector));
+            }
+        }
+        throw new IllegalArgumentException("No such handler " + handlerName);
+    }
+
+    private MessagePublication publication(Object message) {
+        return new MessagePublication.Factory().createPublication(new BusRuntime(null), new Subscription[0], message);
+    }
+
+    // defines the given class itself instead of delegating to its parent, like the class loader of a container
+    private static class IsolatingClassLoader extends ClassLoader {
+
+        private final String isolated;
+
+        private IsolatingClassLoader(String isolated) {
+            super(HandlerInvocationTest.class.getClassLoader());
+            this.isolated = isolated;
+        }
+
+        @Override
+        protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.equals(isolated)) {
+                return super.loadClass(name, resolve);
+            }
+            Class<?> loaded = findLoadedClass(name);
+            if (loaded != null) {
+                return loaded;
+            }
+            InputStream classFile = getParent().getResourceAsStream(name.replace('.', '/') + ".class");
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                byte[] buffer = new byte[4096];
+                for (int read; (read = classFile.read(buffer)) > 0; ) {
+                    bytes.write(buffer, 0, read);
+                }
+                return defineClass(name, bytes.toByteArray(), 0, bytes.size());
+            } catch (IOException e) {
+                throw new ClassNotFoundException(name, e);
+            } finally {
+                try {
+                    classFile.close();
+                } catch (IOException e) {
+                    // ignored
+                }
+            }
+        }
+    }
+
+    public static class InvocationListener {
+
+        private int handled = 0;
+
+        @Handler
+        public void handle(String message) {
+            handled++;
+        }
+
+        @Handler
+        void handleNonPublic(String message) {
+            handled++;
+        }
+
+        @Handler
+        public long handleWithResult(Long message) {
+            handled++;
+            return message;
+        }
+
+        @Handler
+        public void throwing(String message) {
+            throw new IllegalArgumentException("This is an expected exception");
+        }
+    }
+
+    public static class DispatchListener {
+
+        private int handled = 0;
+        private int filtered = 0;
+        private int enveloped = 0;
+
+        @Handler
+        public void handle(String message) {
+            handled++;
+        }
+
+        @Handler(filters = @Filter(RejectEmpty.class))
+        public void handleFiltered(String message) {
+            filtered++;
+        }
+
+        @Handler
+        @Enveloped(messages = String.class)
+        public void handleEnveloped(MessageEnvelope envelope) {
+            enveloped++;
+        }
+
+        @Handler
+        public void throwing(String message) {
+            handled++;
+            throw new IllegalArgumentException("This is an expected exception");
+        }
+    }
+
+    public static class RejectEmpty implements IMessageFilter {
+
+        @Override
+        public boolean accepts(Object message, SubscriptionContext context) {
+            return ((String) message).length() > 0;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package net.engio.mbassy;
+
+import net.engio.mbassy.bus.IScheduledPublication;
+import net.engio.mbassy.bus.MBassador;
+import net.engio.mbassy.common.HashedTimingWheel;
+import net.engio.mbassy.common.MessageBusTest;
+import net.engio.mbassy.listener.Handler;
+import net.engio.mbassy.listener.Listener;
+import net.engio.mbassy.listener.References;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test the {@link HashedTimingWheel} on its own and as the timer of delayed and periodic publications
+ */
+public class HashedTimingWheelTest extends MessageBusTest {
+
+    private static final ThreadFactory Daemons = new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
+    @Test
+    public void testManyTimeouts() throws InterruptedException {
+        // the delays span several revolutions of the wheel
+        HashedTimingWheel timer = new HashedTimingWheel(1, TimeUnit.MILLISECONDS, 64, Daemons);
+        int timeouts = 200000;
+        final CountDownLatch expired = new CountDownLatch(timeouts);
+        final AtomicInteger early = new AtomicInteger();
+        Random random = new Random(42);
+        for (int i = 0; i < timeouts; i++) {
+            final long delay = random.nextInt(300);
+            final long scheduledAt = System.nanoTime();
+            timer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    if (System.nanoTime() - scheduledAt < TimeUnit.MILLISECONDS.toNanos(delay)) {
+                        early.incrementAndGet();
+                    }
+                    expired.countDown();
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+        assertTrue(expired.await(30, TimeUnit.SECONDS));
+        assertEquals(0, early.get());
+        assertEquals(0L, timer.getPendingTimeouts());
+        timer.stop();
+    }
+
+    @Test
+    public void testCancel() throws InterruptedException {
+        HashedTimingWheel timer = new HashedTimingWheel(1, TimeUnit.MILLISECONDS, 16, Daemons);
+        final AtomicInteger runs = new AtomicInteger();
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                runs.incrementAndGet();
+            }
+        };
+        HashedTimingWheel.Timeout cancelled = timer.schedule(task, 50, TimeUnit.MILLISECONDS);
+        HashedTimingWheel.Timeout expiring = timer.schedule(task, 10, TimeUnit.MILLISECONDS);
+        assertEquals(2L, timer.getPendingTimeouts());
+        assertTrue(cancelled.cancel());
+        assertFalse(cancelled.cancel());
+        assertEquals(1L, timer.getPendingTimeouts());
+        pause(200);
+        assertEquals(1, runs.get());
+        assertTrue(expiring.isExpired());
+        assertFalse(expiring.cancel());
+        assertTrue(cancelled.isCancelled());
+        assertEquals(0L, timer.getPendingTimeouts());
+
+        assertEquals(0L, timer.stop());
+        try {
+            timer.schedule(task, 10, TimeUnit.MILLISECONDS);
+            fail("A stopped timer must reject new timeouts");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testPeriodicTimeout() throws InterruptedException {
+        HashedTimingWheel timer = new HashedTimingWheel(1, TimeUnit.MILLISECONDS, 16, Daemons);
+        final AtomicInteger runs = new AtomicInteger();
+        final CountDownLatch fiveRuns = new CountDownLatch(5);
+        HashedTimingWheel.Timeout timeout = timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                runs.incrementAndGet();
+                fiveRuns.countDown();
+            }
+        }, 10, 10, TimeUnit.MILLISECONDS);
+        assertTrue(fiveRuns.await(10, TimeUnit.SECONDS));
+        assertFalse(timeout.isExpired());
+        assertEquals(1L, timer.getPendingTimeouts());
+        assertTrue(timeout.cancel());
+        int cancelledAfter = runs.get();
+        pause(100);
+        assertTrue(runs.get() <= cancelledAfter + 1); // a run might have been in progress
+        assertEquals(0L, timer.getPendingTimeouts());
+        timer.stop();
+    }
+
+    @Test
+    public void testDelayedPublication() throws InterruptedException {
+        MBassador<Object> bus = createBus(SyncAsync());
+        MessageListener listener = new MessageListener();
+        bus.subscribe(listener);
+
+        long start = System.nanoTime();
+        IScheduledPublication scheduled = bus.post("delayed").after(100, TimeUnit.MILLISECONDS);
+        assertFalse(scheduled.isPeriodic());
+        assertNull(scheduled.getLastPublication());
+        assertEquals(1L, bus.getNumberOfScheduledPublications());
+        assertTrue(listener.received.await(10, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(1L, scheduled.getNumberOfPublications());
+        assertTrue(scheduled.getLastPublication().await(10, TimeUnit.SECONDS));
+        assertEquals("delayed", scheduled.getLastPublication().getMessage());
+        assertEquals(1, listener.messages.size());
+        assertEquals(0L, bus.getNumberOfScheduledPublications());
+        assertFalse(scheduled.cancel());
+        bus.shutdown();
+    }
+
+    @Test
+    public void testCancelDelayedPublication() throws InterruptedException {
+        MBassador<Object> bus = createBus(SyncAsync());
+        MessageListener listener = new MessageListener();
+        bus.subscribe(listener);
+
+        IScheduledPublication scheduled = bus.post("cancelled").after(100, TimeUnit.MILLISECONDS);
+        assertTrue(scheduled.cancel());
+        assertTrue(scheduled.isCancelled());
+        pause(300);
+        assertEquals(0, listener.messages.size());
+        assertEquals(0L, scheduled.getNumberOfPublications());
+        assertEquals(0L, bus.getNumberOfScheduledPublications());
+        bus.shutdown();
+    }
+
+    @Test
+    public void testPeriodicPublication() throws InterruptedException {
+        MBassador<Object> bus = createBus(SyncAsync());
+        MessageListener listener = new MessageListener(5);
+        bus.subscribe(listener);
+
+        IScheduledPublication scheduled = bus.post("periodic").withKey("key").every(20, TimeUnit.MILLISECONDS);
+        assertTrue(scheduled.isPeriodic());
+        assertTrue(listener.received.await(10, TimeUnit.SECONDS));
+        assertTrue(scheduled.cancel());
+        pause(100);
+        assertTrue(scheduled.getLastPublication().await(10, TimeUnit.SECONDS));
+        int published = (int) scheduled.getNumberOfPublications();
+        assertEquals(published, listener.messages.size());
+        pause(100);
+        assertEquals(published, listener.messages.size());
+        bus.shutdown();
+    }
+
+    @Listener(references = References.Strong)
+    public static class MessageListener {
+
+        private final CountDownLatch received;
+        private final List<String> messages = new CopyOnWriteArrayList<String>();
+
+        public MessageListener() {
+            this(1);
+        }
+
+        public MessageListener(int expectedMessages) {
+            received = new CountDownLatch(expectedMessages);
+        }
+
+        @Handler
+        public void handle(String message) {
+            messages.add(message);
+            received.countDown();
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package net.engio.mbassy;
+
+import net.engio.mbassy.common.LockFreeConcurrentSet;
+
+import java.util.Collection;
+
+/**
+ * Run all tests of the strong concurrent set against the lock-free implementation.
+ */
+public class LockFreeConcurrentSetTest extends StrongConcurrentSetTest {
+
+    @Override
+    protected Collection createSet() {
+        return new LockFreeConcurrentSet();
+    }
+}
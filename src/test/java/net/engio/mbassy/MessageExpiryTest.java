@@ -0,0 +1,136 @@
+package net.engio.mbassy;
+
+import net.engio.mbassy.bus.IMessagePublication;
+import net.engio.mbassy.bus.MBassador;
+import net.engio.mbassy.bus.common.DeadMessage;
+import net.engio.mbassy.bus.common.ExpiredMessage;
+import net.engio.mbassy.bus.config.BusConfiguration;
+import net.engio.mbassy.bus.config.Feature;
+import net.engio.mbassy.bus.config.IBusConfiguration;
+import net.engio.mbassy.common.MessageBusTest;
+import net.engio.mbassy.listener.Handler;
+import net.engio.mbassy.listener.Listener;
+import net.engio.mbassy.listener.References;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test that asynchronously published messages that have not been dispatched within their time to live
+ * are not delivered to their handlers but published as expired messages.
+ */
+public class MessageExpiryTest extends MessageBusTest {
+
+    private IBusConfiguration configuration(Feature.AsynchronousMessageDispatch dispatch) {
+        return new BusConfiguration()
+                .addFeature(Feature.SyncPubSub.Default())
+                .addFeature(Feature.AsynchronousHandlerInvocation.Default())
+                .addFeature(dispatch)
+                .addPublicationErrorHandler(new EmptyErrorHandler());
+    }
+
+    @Test
+    public void testExpiryOfSinglePublications() throws InterruptedException {
+        MBassador<Object> bus = new MBassador<Object>(configuration(Feature.AsynchronousMessageDispatch.Default().setNumberOfMessageDispatchers(1)));
+        BlockingListener listener = new BlockingListener();
+        ExpiredMessageListener expiredListener = new ExpiredMessageListener();
+        bus.subscribe(listener);
+        bus.subscribe(expiredListener);
+
+        IMessagePublication first = bus.post("first").asynchronously();
+        assertTrue(listener.blocked.await(10, TimeUnit.SECONDS)); // the dispatcher is busy
+        IMessagePublication expiring = bus.post("expiring").withTimeToLive(10, TimeUnit.MILLISECONDS).asynchronously();
+        IMessagePublication lasting = bus.post("lasting").withTimeToLive(1, TimeUnit.MINUTES).asynchronously();
+        IMessagePublication unlimited = bus.post("unlimited").asynchronously();
+        pause(100);
+        listener.release.countDown();
+
+        assertTrue(unlimited.await(10, TimeUnit.SECONDS));
+        assertTrue(expiring.isFinished());
+        assertTrue(expiring.hasError());
+        assertFalse(first.hasError());
+        assertFalse(lasting.hasError());
+        assertEquals(3, listener.received.size());
+        assertFalse(listener.received.contains("expiring"));
+        assertEquals(1, expiredListener.expired.size());
+        assertEquals("expiring", expiredListener.expired.get(0));
+        assertEquals(1L, bus.getExpiredMessageCount());
+        bus.shutdown();
+    }
+
+    @Test
+    public void testDefaultTimeToLive() throws InterruptedException {
+        MBassador<Object> bus = new MBassador<Object>(configuration(Feature.AsynchronousMessageDispatch.Default().setNumberOfMessageDispatchers(1)
+                .setMessageTimeToLive(10, TimeUnit.MILLISECONDS)));
+        BlockingListener listener = new BlockingListener();
+        ExpiredMessageListener expiredListener = new ExpiredMessageListener();
+        bus.subscribe(listener);
+        bus.subscribe(expiredListener);
+
+        bus.post("first").asynchronously();
+        assertTrue(listener.blocked.await(10, TimeUnit.SECONDS));
+        IMessagePublication last = null;
+        for (int i = 0; i < 10; i++) {
+            last = bus.post("expiring").asynchronously();
+        }
+        IMessagePublication lasting = bus.post("lasting").withTimeToLive(1, TimeUnit.MINUTES).asynchronously();
+        pause(100);
+        listener.release.countDown();
+
+        assertTrue(lasting.await(10, TimeUnit.SECONDS));
+        assertTrue(last.hasError());
+        assertEquals(2, listener.received.size());
+        assertEquals(10, expiredListener.expired.size());
+        assertEquals(10L, bus.getExpiredMessageCount());
+        bus.shutdown();
+    }
+
+    @Test
+    public void testSynchronousPublicationDoesNotExpire() {
+        MBassador<Object> bus = new MBassador<Object>(configuration(Feature.AsynchronousMessageDispatch.Default().setNumberOfMessageDispatchers(1)
+                .setMessageTimeToLive(1, TimeUnit.NANOSECONDS)));
+        ExpiredMessageListener expiredListener = new ExpiredMessageListener();
+        bus.subscribe(expiredListener);
+
+        IMessagePublication publication = bus.post("message").withTimeToLive(1, TimeUnit.NANOSECONDS).now();
+        assertTrue(publication.isFinished());
+        assertFalse(publication.hasError());
+        assertEquals(0, expiredListener.expired.size());
+        assertEquals(0L, bus.getExpiredMessageCount());
+        bus.shutdown();
+    }
+
+    @Listener(references = References.Strong)
+    public static class BlockingListener {
+
+        private final CountDownLatch blocked = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final List<String> received = new CopyOnWriteArrayList<String>();
+
+        @Handler
+        public void handle(String message) throws InterruptedException {
+            blocked.countDown();
+            release.await();
+            received.add(message);
+        }
+    }
+
+    @Listener(references = References.Strong)
+    public static class ExpiredMessageListener {
+
+        private final List<Object> expired = new CopyOnWriteArrayList<Object>();
+
+        @Handler
+        public void handle(ExpiredMessage message) {
+            expired.add(message.getMessage());
+        }
+
+        // the message of a synchronous publication without listeners
+        @Handler
+        public void handle(DeadMessage message) {
+        }
+    }
+}
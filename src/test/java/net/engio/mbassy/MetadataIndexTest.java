@@ -0,0 +1,188 @@
+package net.engio.mbassy;
+
+import net.engio.mbassy.common.AssertSupport;
+import net.engio.mbassy.listener.Handler;
+import net.engio.mbassy.listener.MessageHandler;
+import net.engio.mbassy.listener.MetadataIndexProcessor;
+import net.engio.mbassy.listener.MetadataReader;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Scanner;
+
+/**
+ * Test that listeners compiled with the {@link MetadataIndexProcessor} have exactly the same handlers
+ * as listeners that are read using reflection only.
+ */
+public class MetadataIndexTest extends AssertSupport {
+
+    private static final String Listeners =
+            "package indexed;\n" +
+            "import net.engio.mbassy.listener.*;\n" +
+            "import java.lang.annotation.*;\n" +
+            "public class Listeners {\n" +
+            "  @Retention(RetentionPolicy.RUNTIME) @Target(ElementType.METHOD) @Handler(priority = 5)\n" +
+            "  public @interface Prioritized {}\n" +
+            "  public static class Base {\n" +
+            "    @Handler public void handleString(String message) {}\n" +
+            "    @Handler public void handleObject(Object message) {}\n" +
+            "    @Handler public void overridden(Integer message) {}\n" +
+            "    @Handler(enabled = false) public void disabled(Long message) {}\n" +
+            "    public void notAHandler(String message) {}\n" +
+            "  }\n" +
+            "  public static class Derived extends Base {\n" +
+            "    @Override public void handleString(String message) {}\n" +
+            "    @Handler(priority = 1) @Override public void overridden(Integer message) {}\n" +
+            "    @Prioritized public void metaAnnotated(Number[] message) {}\n" +
+            "  }\n" +
+            "  public static class Generic<T> {\n" +
+            "    @Handler public void handle(T message) {}\n" +
+            "  }\n" +
+            "}\n";
+
+    private static final String Library =
+            "package library;\n" +
+            "import net.engio.mbassy.listener.*;\n" +
+            "public class Base {\n" +
+            "  @Handler public void handleString(String message) {}\n" +
+            "%s" +
+            "}\n";
+
+    private static final String LibraryListener =
+            "package indexed;\n" +
+            "import net.engio.mbassy.listener.*;\n" +
+            "public class LibraryListener extends library.Base {\n" +
+            "  @Handler public void handleInteger(Integer message) {}\n" +
+            "}\n";
+
+    private static final String OtherListener =
+            "package indexed;\n" +
+            "import net.engio.mbassy.listener.*;\n" +
+            "public class OtherListener {\n" +
+            "  @Handler public void handleLong(Long message) {}\n" +
+            "}\n";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private JavaCompiler compiler;
+    private String classpath;
+    private File indexed;
+    private File plain;
+
+    @Before
+    public void compile() throws Exception {
+        compiler = ToolProvider.getSystemJavaCompiler();
+        Assume.assumeNotNull(compiler); // only a JRE available
+        classpath = new File(Handler.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+        indexed = compile(temporaryFolder.newFolder(), classpath, "indexed.Listeners", Listeners, true);
+        plain = compile(temporaryFolder.newFolder(), classpath, "indexed.Listeners", Listeners, false);
+    }
+
+    private File compile(File output, String classpath, String className, final String code, boolean index) throws Exception {
+        List<String> arguments = new ArrayList<String>(Arrays.asList("-classpath", classpath, "-d", output.getPath()));
+        Collections.addAll(arguments, index ? new String[]{"-processor", MetadataIndexProcessor.class.getName()} : new String[]{"-proc:none"});
+        JavaFileObject source = new SimpleJavaFileObject(URI.create("string:///" + className.replace('.', '/') + ".java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return code;
+            }
+        };
+        assertTrue(compiler.getTask(null, null, null, arguments, null, Collections.singletonList(source)).call());
+        return output;
+    }
+
+    @Test
+    public void testIndexIsCreated() throws Exception {
+        File index = new File(indexed, "META-INF/mbassador/listeners.index");
+        assertTrue(index.exists());
+        assertFalse(new File(plain, "META-INF/mbassador/listeners.index").exists());
+        String content = new Scanner(index, "UTF-8").useDelimiter("\\A").next();
+        assertTrue(content.contains("indexed.Listeners$Derived\tindexed.Listeners$Derived\tmetaAnnotated\t[Ljava.lang.Number;\t-"));
+        assertTrue(content.contains("indexed.Listeners$Derived\tindexed.Listeners$Base\thandleString\tjava.lang.String\tindexed.Listeners$Derived"));
+        // generic handlers are left to reflection
+        assertFalse(content.contains("indexed.Listeners$Generic"));
+    }
+
+    @Test
+    public void testIndexedListenersMatchReflection() throws Exception {
+        for (String listener : new String[]{"indexed.Listeners$Base", "indexed.Listeners$Derived", "indexed.Listeners$Generic"}) {
+            assertEquals(describeHandlers(plain, listener), describeHandlers(indexed, listener));
+        }
+    }
+
+    @Test
+    public void testIndexIsPreferredOverReflection() throws Exception {
+        Writer index = new OutputStreamWriter(new FileOutputStream(new File(indexed, "META-INF/mbassador/listeners.index")), "UTF-8");
+        index.write("indexed.Listeners$Base\tindexed.Listeners$Base\thandleObject\tjava.lang.Object\t-\t-\n");
+        index.close();
+        assertEquals(1, describeHandlers(indexed, "indexed.Listeners$Base").size());
+        assertEquals(3, describeHandlers(plain, "indexed.Listeners$Base").size());
+    }
+
+    @Test
+    public void testIndexIsMergedWithPreviousCompilation() throws Exception {
+        String path = indexed.getPath() + File.pathSeparator + classpath;
+        compile(indexed, path, "indexed.OtherListener", OtherListener, true);
+        String content = new Scanner(new File(indexed, "META-INF/mbassador/listeners.index"), "UTF-8").useDelimiter("\\A").next();
+        assertTrue(content.contains("indexed.Listeners$Derived\t"));
+        assertTrue(content.contains("indexed.OtherListener\t"));
+
+        // recompiling a listener replaces its entries
+        compile(indexed, path, "indexed.Listeners", Listeners, true);
+        content = new Scanner(new File(indexed, "META-INF/mbassador/listeners.index"), "UTF-8").useDelimiter("\\A").next();
+        assertEquals(content.indexOf("indexed.Listeners$Derived\tindexed.Listeners$Derived\tmetaAnnotated"),
+                content.lastIndexOf("indexed.Listeners$Derived\tindexed.Listeners$Derived\tmetaAnnotated"));
+        assertTrue(content.contains("indexed.OtherListener\t"));
+    }
+
+    @Test
+    public void testChangedSuperClassFallsBackToReflection() throws Exception {
+        File library = compile(temporaryFolder.newFolder(), classpath, "library.Base", String.format(Library, ""), false);
+        File listener = compile(temporaryFolder.newFolder(), library.getPath() + File.pathSeparator + classpath,
+                "indexed.LibraryListener", LibraryListener, true);
+        assertEquals(2, describeHandlers("indexed.LibraryListener", listener, library).size());
+
+        // the library gains a handler after the listener has been indexed
+        compile(library, classpath, "library.Base", String.format(Library, "  @Handler public void handleLong(Long message) {}\n"), false);
+        assertEquals(3, describeHandlers("indexed.LibraryListener", listener, library).size());
+    }
+
+    private List<String> describeHandlers(File classes, String listener) throws Exception {
+        return describeHandlers(listener, classes);
+    }
+
+    private List<String> describeHandlers(String listener, File... classes) throws Exception {
+        URL[] urls = new URL[classes.length];
+        for (int i = 0; i < classes.length; i++) {
+            urls[i] = classes[i].toURI().toURL();
+        }
+        ClassLoader classLoader = new URLClassLoader(urls, getClass().getClassLoader());
+        List<String> handlers = new ArrayList<String>();
+        for (MessageHandler handler : new MetadataReader().getMessageListener(classLoader.loadClass(listener)).getHandlers()) {
+            handlers.add(handler.getMethod().getDeclaringClass().getName() + "." + handler.getMethod().getName()
+                    + Arrays.toString(handler.getHandledMessages()) + " priority=" + handler.getPriority());
+        }
+        Collections.sort(handlers);
+        assertFalse(handlers.isEmpty());
+        return handlers;
+    }
+}
@@ -0,0 +1,181 @@
+package net.engio.mbassy;
+
+import net.engio.mbassy.bus.IMessagePublication;
+import net.engio.mbassy.bus.MBassador;
+import net.engio.mbassy.bus.config.BusConfiguration;
+import net.engio.mbassy.bus.config.Feature;
+import net.engio.mbassy.common.IPredicate;
+import net.engio.mbassy.common.IPrioritized;
+import net.engio.mbassy.common.MessageBusTest;
+import net.engio.mbassy.common.MultiLevelPriorityQueue;
+import net.engio.mbassy.listener.Handler;
+import net.engio.mbassy.listener.Listener;
+import net.engio.mbassy.listener.MessagePriority;
+import net.engio.mbassy.listener.References;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test the {@link MultiLevelPriorityQueue} on its own and as the message queue of an asynchronous message bus
+ */
+public class MultiLevelPriorityQueueTest extends MessageBusTest {
+
+    @Test
+    public void testOrderOfLevels() {
+        MultiLevelPriorityQueue<Element> queue = new MultiLevelPriorityQueue<Element>(3);
+        queue.offer(new Element("low", -1));
+        queue.offer(new Element("normal", 0));
+        queue.offer(new Element("high", 2));
+        queue.offer(new Element("medium", 1));
+        queue.offer(new Element("highest", 5));
+        assertEquals(5, queue.size());
+        assertEquals("high", queue.peek().name);
+
+        List<Element> drained = new ArrayList<Element>();
+        assertEquals(2, queue.drainTo(drained, 2));
+        assertEquals("high", drained.get(0).name);
+        // priorities beyond the levels are assigned to the highest level
+        assertEquals("highest", drained.get(1).name);
+        assertEquals("medium", queue.poll().name);
+        assertEquals("low", queue.poll().name);
+        assertEquals("normal", queue.poll().name);
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testCapacity() throws InterruptedException {
+        MultiLevelPriorityQueue<Element> queue = new MultiLevelPriorityQueue<Element>(2, 0, TimeUnit.SECONDS, 2);
+        assertTrue(queue.offer(new Element("first", 0)));
+        assertTrue(queue.offer(new Element("second", 1)));
+        assertEquals(0, queue.remainingCapacity());
+        assertFalse(queue.offer(new Element("third", 1)));
+        assertFalse(queue.offer(new Element("third", 1), 10, TimeUnit.MILLISECONDS));
+        assertEquals("second", queue.take().name);
+        assertEquals(1, queue.remainingCapacity());
+        assertEquals("first", queue.poll(10, TimeUnit.MILLISECONDS).name);
+        assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testPollLowest() {
+        MultiLevelPriorityQueue<Element> queue = new MultiLevelPriorityQueue<Element>(3, 0, TimeUnit.SECONDS, 4);
+        final Element pinned = new Element("pinned", 0);
+        queue.offer(pinned);
+        queue.offer(new Element("high", 2));
+        queue.offer(new Element("first", 0));
+        queue.offer(new Element("second", 0));
+        IPredicate<Element> evictable = new IPredicate<Element>() {
+            @Override
+            public boolean apply(Element element) {
+                return element != pinned;
+            }
+        };
+        assertEquals("first", queue.pollLowest(evictable).name);
+        assertEquals(1, queue.remainingCapacity());
+        assertEquals("second", queue.pollLowest(evictable).name);
+        assertEquals("high", queue.pollLowest(evictable).name);
+        // the element that is not accepted remains in the queue
+        assertNull(queue.pollLowest(evictable));
+        assertEquals(1, queue.size());
+        assertTrue(queue.pollLowest() == pinned);
+        assertNull(queue.pollLowest());
+    }
+
+    @Test
+    public void testAgingPreventsStarvation() throws InterruptedException {
+        MultiLevelPriorityQueue<Element> queue = new MultiLevelPriorityQueue<Element>(2, 50, TimeUnit.MILLISECONDS);
+        queue.offer(new Element("low", 0));
+        // there is always an element of high priority, the low one is taken after it moved up
+        int taken = 0;
+        while (true) {
+            queue.offer(new Element("high", 1));
+            pause(10);
+            Element next = queue.take();
+            if (next.name.equals("low")) {
+                break;
+            }
+            taken++;
+            assertTrue(taken < 50);
+        }
+        assertTrue(taken >= 4);
+        assertEquals(1, queue.size());
+    }
+
+    @Test
+    public void testPrioritizedDispatch() throws InterruptedException {
+        MBassador<Object> bus = new MBassador<Object>(new BusConfiguration()
+                .addFeature(Feature.SyncPubSub.Default())
+                .addFeature(Feature.AsynchronousHandlerInvocation.Default())
+                .addFeature(Feature.AsynchronousMessageDispatch.Prioritized(3).setNumberOfMessageDispatchers(1)));
+        RecordingListener listener = new RecordingListener();
+        bus.subscribe(listener);
+
+        bus.post("block").asynchronously();
+        assertTrue(listener.blocked.await(10, TimeUnit.SECONDS)); // the dispatcher is busy
+        for (int i = 0; i < 5; i++) {
+            bus.post(new Telemetry()).asynchronously();
+        }
+        bus.post("urgent").withPriority(1).asynchronously();
+        bus.post(new Control()).asynchronously();
+        IMessagePublication last = bus.post(new Control()).withPriority(0).asynchronously();
+        listener.release.countDown();
+
+        assertTrue(last.await(10, TimeUnit.SECONDS));
+        assertEquals(9, listener.received.size());
+        assertEquals("block", listener.received.get(0));
+        assertTrue(listener.received.get(1) instanceof Control);
+        assertEquals("urgent", listener.received.get(2));
+        for (int i = 3; i < 8; i++) {
+            assertTrue(listener.received.get(i) instanceof Telemetry);
+        }
+        // the explicit priority overrides the priority of the message class
+        assertTrue(listener.received.get(8) instanceof Control);
+        bus.shutdown();
+    }
+
+    public static class Element implements IPrioritized {
+
+        private final String name;
+        private final int priority;
+
+        public Element(String name, int priority) {
+            this.name = name;
+            this.priority = priority;
+        }
+
+        @Override
+        public int getPriority() {
+            return priority;
+        }
+    }
+
+    public static class Telemetry {
+    }
+
+    @MessagePriority(2)
+    public static class Control {
+    }
+
+    @Listener(references = References.Strong)
+    public static class RecordingListener {
+
+        private final CountDownLatch blocked = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final List<Object> received = new CopyOnWriteArrayList<Object>();
+
+        @Handler
+        public void handle(Object message) throws InterruptedException {
+            if ("block".equals(message)) {
+                blocked.countDown();
+                release.await();
+            }
+            received.add(message);
+        }
+    }
+}
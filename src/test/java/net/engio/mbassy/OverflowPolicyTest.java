@@ -0,0 +1,205 @@
+package net.engio.mbassy;
+
+import net.engio.mbassy.bus.IMessagePublication;
+import net.engio.mbassy.bus.MBassador;
+import net.engio.mbassy.bus.common.OverflowPolicy;
+import net.engio.mbassy.bus.config.BusConfiguration;
+import net.engio.mbassy.bus.config.Feature;
+import net.engio.mbassy.bus.config.IBusConfiguration;
+import net.engio.mbassy.common.MessageBusTest;
+import net.engio.mbassy.common.MultiLevelPriorityQueue;
+import net.engio.mbassy.listener.Handler;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test the overflow policies of asynchronous message dispatch. Each test fills a queue with a capacity of two
+ * while the only dispatcher thread is blocked by the first message.
+ */
+public class OverflowPolicyTest extends MessageBusTest {
+
+    @Test
+    public void testDropNewest() throws InterruptedException {
+        BlockingListener listener = new BlockingListener();
+        MBassador<Object> bus = createFullBus(OverflowPolicy.DropNewest, listener);
+
+        IMessagePublication publication = bus.post(3).asynchronously();
+        assertFalse(publication.isScheduled());
+        assertTrue(publication.isFinished());
+        assertTrue(publication.hasError());
+
+        listener.release.countDown();
+        awaitDelivery(bus, listener, 3);
+        assertEquals(Arrays.asList(0, 1, 2), listener.received);
+        assertEquals(1L, bus.getDroppedMessageCount());
+        assertEquals(0L, bus.getRejectedMessageCount());
+        bus.shutdown();
+    }
+
+    @Test
+    public void testDropOldest() throws InterruptedException {
+        BlockingListener listener = new BlockingListener();
+        MBassador<Object> bus = createFullBus(OverflowPolicy.DropOldest, listener);
+
+        IMessagePublication publication = bus.post(3).asynchronously();
+        assertTrue(publication.isScheduled());
+        assertFalse(publication.hasError());
+
+        listener.release.countDown();
+        awaitDelivery(bus, listener, 3);
+        assertEquals(Arrays.asList(0, 2, 3), listener.received);
+        assertEquals(1L, bus.getDroppedMessageCount());
+        assertEquals(0L, bus.getRejectedMessageCount());
+        bus.shutdown();
+    }
+
+    @Test
+    public void testDropOldestOfLowestPriority() throws InterruptedException {
+        BlockingListener listener = new BlockingListener();
+        MultiLevelPriorityQueue<IMessagePublication> queue = new MultiLevelPriorityQueue<IMessagePublication>(2, 0, TimeUnit.SECONDS, 2);
+        MBassador<Object> bus = createBlockedBus(OverflowPolicy.DropOldest, queue, listener);
+        assertTrue(bus.post(1).withPriority(1).asynchronously().isScheduled());
+        assertTrue(bus.post(2).asynchronously().isScheduled());
+
+        // the message of low priority is dropped, not the next one to be dispatched
+        IMessagePublication publication = bus.post(3).asynchronously();
+        assertTrue(publication.isScheduled());
+
+        listener.release.countDown();
+        awaitDelivery(bus, listener, 3);
+        assertEquals(Arrays.asList(0, 1, 3), listener.received);
+        assertEquals(1L, bus.getDroppedMessageCount());
+        bus.shutdown();
+    }
+
+    @Test
+    public void testCallerRuns() throws InterruptedException {
+        BlockingListener listener = new BlockingListener();
+        MBassador<Object> bus = createFullBus(OverflowPolicy.CallerRuns, listener);
+
+        IMessagePublication publication = bus.post(3).asynchronously();
+        assertTrue(publication.isFinished());
+        assertEquals(Arrays.asList(3), listener.received);
+        assertTrue(listener.threads.get(0) == Thread.currentThread());
+
+        listener.release.countDown();
+        awaitDelivery(bus, listener, 4);
+        assertEquals(Arrays.asList(3, 0, 1, 2), listener.received);
+        assertEquals(1L, bus.getRejectedMessageCount());
+        assertEquals(0L, bus.getDroppedMessageCount());
+        bus.shutdown();
+    }
+
+    @Test
+    public void testFailFast() throws InterruptedException {
+        BlockingListener listener = new BlockingListener();
+        MBassador<Object> bus = createFullBus(OverflowPolicy.FailFast, listener);
+
+        try {
+            bus.post(3).asynchronously();
+            fail("The message should have been rejected");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+
+        listener.release.countDown();
+        awaitDelivery(bus, listener, 3);
+        assertEquals(Arrays.asList(0, 1, 2), listener.received);
+        assertEquals(1L, bus.getRejectedMessageCount());
+        bus.shutdown();
+    }
+
+    @Test
+    public void testBlockWithTimeout() throws InterruptedException {
+        BlockingListener listener = new BlockingListener();
+        MBassador<Object> bus = createFullBus(OverflowPolicy.Block, listener);
+
+        IMessagePublication publication = bus.post(3).asynchronously(10, TimeUnit.MILLISECONDS);
+        assertFalse(publication.isScheduled());
+        assertTrue(publication.hasError());
+
+        listener.release.countDown();
+        awaitDelivery(bus, listener, 3);
+        assertEquals(Arrays.asList(0, 1, 2), listener.received);
+        assertEquals(1L, bus.getRejectedMessageCount());
+        bus.shutdown();
+    }
+
+    @Test
+    public void testScheduledMessagesDoNotBlockTimer() throws InterruptedException {
+        BlockingListener listener = new BlockingListener();
+        MBassador<Object> bus = createFullBus(OverflowPolicy.Block, listener);
+
+        // both messages are rejected, the first one does not delay the second one
+        bus.post(3).after(10, TimeUnit.MILLISECONDS);
+        bus.post(4).after(20, TimeUnit.MILLISECONDS);
+        long deadline = System.currentTimeMillis() + 10000;
+        while (bus.getRejectedMessageCount() < 2 && System.currentTimeMillis() < deadline) {
+            pause(10);
+        }
+        assertEquals(2L, bus.getRejectedMessageCount());
+
+        listener.release.countDown();
+        awaitDelivery(bus, listener, 3);
+        assertEquals(Arrays.asList(0, 1, 2), listener.received);
+        bus.shutdown();
+    }
+
+    // create a bus whose dispatcher is blocked by message 0 and whose queue is filled with messages 1 and 2
+    private MBassador<Object> createFullBus(OverflowPolicy policy, BlockingListener listener) throws InterruptedException {
+        MBassador<Object> bus = createBlockedBus(policy, new ArrayBlockingQueue<IMessagePublication>(2), listener);
+        assertTrue(bus.post(1).asynchronously().isScheduled());
+        assertTrue(bus.post(2).asynchronously().isScheduled());
+        return bus;
+    }
+
+    // create a bus whose dispatcher is blocked by message 0
+    private MBassador<Object> createBlockedBus(OverflowPolicy policy, BlockingQueue<IMessagePublication> queue, BlockingListener listener) throws InterruptedException {
+        IBusConfiguration configuration = new BusConfiguration()
+                .addFeature(Feature.SyncPubSub.Default())
+                .addFeature(Feature.AsynchronousHandlerInvocation.Default())
+                .addFeature(Feature.AsynchronousMessageDispatch.Default()
+                        .setNumberOfMessageDispatchers(1)
+                        .setMessageQueue(queue)
+                        .setOverflowPolicy(policy));
+        MBassador<Object> bus = new MBassador<Object>(configuration);
+        bus.subscribe(listener);
+        bus.post(0).asynchronously();
+        assertTrue(listener.blocked.await(10, TimeUnit.SECONDS));
+        return bus;
+    }
+
+    private void awaitDelivery(MBassador<Object> bus, BlockingListener listener, int messages) {
+        long deadline = System.currentTimeMillis() + 10000;
+        while ((bus.hasPendingMessages() || listener.received.size() < messages)
+                && System.currentTimeMillis() < deadline) {
+            pause(10);
+        }
+    }
+
+    public static class BlockingListener {
+
+        private final CountDownLatch blocked = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final List<Integer> received = new CopyOnWriteArrayList<Integer>();
+        private final List<Thread> threads = new CopyOnWriteArrayList<Thread>();
+
+        @Handler
+        public void handle(Integer message) throws InterruptedException {
+            if (message == 0) {
+                blocked.countDown();
+                release.await();
+            }
+            received.add(message);
+            threads.add(Thread.currentThread());
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package net.engio.mbassy;
+
+import net.engio.mbassy.bus.MBassador;
+import net.engio.mbassy.bus.config.BusConfiguration;
+import net.engio.mbassy.bus.config.Feature;
+import net.engio.mbassy.bus.config.IBusConfiguration;
+import net.engio.mbassy.common.ConcurrentExecutor;
+import net.engio.mbassy.common.MessageBusTest;
+import net.engio.mbassy.listener.Handler;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test that partitioned dispatch preserves the order of messages with the same key
+ */
+public class PartitionedDispatchTest extends MessageBusTest {
+
+    private static final int Lanes = 4;
+    private static final int KeysPerThread = 8;
+    private static final int MessagesPerKey = 1000;
+
+    @Test
+    public void testOrderPerKey() {
+        IBusConfiguration configuration = new BusConfiguration()
+                .addFeature(Feature.SyncPubSub.Default())
+                .addFeature(Feature.AsynchronousHandlerInvocation.Default())
+                .addFeature(Feature.AsynchronousMessageDispatch.Partitioned(Lanes));
+        final MBassador<Object> bus = new MBassador<Object>(configuration);
+        final OrderListener listener = new OrderListener();
+        bus.subscribe(listener);
+        final AtomicInteger keys = new AtomicInteger();
+        ConcurrentExecutor.runConcurrent(new Runnable() {
+            @Override
+            public void run() {
+                int firstKey = keys.getAndAdd(KeysPerThread);
+                for (int i = 0; i < MessagesPerKey; i++) {
+                    for (int key = firstKey; key < firstKey + KeysPerThread; key++) {
+                        bus.post(new KeyedMessage(key, i)).withKey(key).asynchronously();
+                    }
+                    bus.post("unkeyed").asynchronously();
+                }
+            }
+        }, ConcurrentUnits);
+        while (listener.keyed.get() < ConcurrentUnits * KeysPerThread * MessagesPerKey
+                || listener.unkeyed.get() < ConcurrentUnits * MessagesPerKey) {
+            pause(10);
+        }
+        assertTrue(listener.errors.toString(), listener.errors.isEmpty());
+        assertEquals(ConcurrentUnits * KeysPerThread, listener.lastSequence.size());
+        for (int sequence : listener.lastSequence.values()) {
+            assertEquals(MessagesPerKey - 1, sequence);
+        }
+        assertEquals(ConcurrentUnits * MessagesPerKey, listener.unkeyed.get());
+        bus.shutdown();
+    }
+
+    public static class KeyedMessage {
+
+        private final int key;
+        private final int sequence;
+
+        public KeyedMessage(int key, int sequence) {
+            this.key = key;
+            this.sequence = sequence;
+        }
+    }
+
+    public static class OrderListener {
+
+        private final Map<Integer, Integer> lastSequence = new ConcurrentHashMap<Integer, Integer>();
+        private final Map<Integer, Thread> dispatchers = new ConcurrentHashMap<Integer, Thread>();
+        private final List<String> errors = new CopyOnWriteArrayList<String>();
+        private final AtomicInteger keyed = new AtomicInteger();
+        private final AtomicInteger unkeyed = new AtomicInteger();
+
+        @Handler
+        public void handle(KeyedMessage message) {
+            Integer last = lastSequence.put(message.key, message.sequence);
+            if (message.sequence != (last == null ? 0 : last + 1)) {
+                errors.add("Key " + message.key + ": " + message.sequence + " after " + last);
+            }
+            Thread dispatcher = dispatchers.put(message.key, Thread.currentThread());
+            if (dispatcher != null && dispatcher != Thread.currentThread()) {
+                errors.add("Key " + message.key + " dispatched by multiple threads");
+            }
+            keyed.incrementAndGet();
+        }
+
+        @Handler
+        public void handle(String message) {
+            unkeyed.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package net.engio.mbassy;
+
+import net.engio.mbassy.bus.BusRuntime;
+import net.engio.mbassy.bus.IMessagePublication;
+import net.engio.mbassy.bus.MBassador;
+import net.engio.mbassy.bus.MessagePublication;
+import net.engio.mbassy.bus.common.ICompletionCallback;
+import net.engio.mbassy.bus.error.PublicationError;
+import net.engio.mbassy.common.MessageBusTest;
+import net.engio.mbassy.listener.Handler;
+import net.engio.mbassy.listener.Invoke;
+import net.engio.mbassy.listener.Listener;
+import net.engio.mbassy.listener.References;
+import net.engio.mbassy.subscription.Subscription;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test that message publications finish only when all handlers have been invoked, including asynchronous ones,
+ * and that waiting threads and completion callbacks are notified.
+ */
+public class PublicationCompletionTest extends MessageBusTest {
+
+    @Test
+    public void testPublicationFinishesAfterAsynchronousHandlers() throws InterruptedException {
+        MBassador<Object> bus = createBus(SyncAsync());
+        SlowListener listener = new SlowListener();
+        bus.subscribe(listener);
+
+        IMessagePublication publication = bus.post("message").now();
+        assertFalse(publication.isFinished());
+        assertTrue(publication.await(10, TimeUnit.SECONDS));
+        assertTrue(publication.isFinished());
+        assertEquals(2, listener.invocations.get());
+        assertFalse(publication.hasError());
+        bus.shutdown();
+    }
+
+    @Test
+    public void testAwaitAsynchronousPublication() throws InterruptedException {
+        MBassador<Object> bus = createBus(SyncAsync());
+        SlowListener listener = new SlowListener();
+        bus.subscribe(listener);
+
+        IMessagePublication publication = bus.post("message").asynchronously();
+        publication.await();
+        assertTrue(publication.isFinished());
+        assertEquals(2, listener.invocations.get());
+        bus.shutdown();
+    }
+
+    @Test
+    public void testAwaitPublicationsOfFastDispatcher() throws InterruptedException {
+        MBassador<Object> bus = createBus(SyncAsync());
+        CountingListener listener = new CountingListener();
+        bus.subscribe(listener);
+
+        // the dispatcher may finish a publication before the publisher marks it as scheduled
+        List<IMessagePublication> publications = new ArrayList<IMessagePublication>();
+        for (int i = 0; i < 10000; i++) {
+            publications.add(bus.post("message").asynchronously());
+        }
+        for (IMessagePublication publication : publications) {
+            assertTrue(publication.await(10, TimeUnit.SECONDS));
+            assertTrue(publication.isFinished());
+        }
+        assertEquals(10000, listener.invocations.get());
+        bus.shutdown();
+    }
+
+    @Test
+    public void testFinishedPublicationIsNotScheduled() {
+        MessagePublication publication = new MessagePublication.Factory()
+                .createPublication(new BusRuntime(null), new Subscription[0], "message");
+        publication.markDiscarded(new PublicationError(null, "Discarded", null, null, publication));
+        assertTrue(publication.isFinished());
+
+        publication.markScheduled();
+        assertTrue(publication.isFinished());
+        assertFalse(publication.isScheduled());
+    }
+
+    @Test
+    public void testCallbackReportsErrors() throws InterruptedException {
+        MBassador<Object> bus = createBus(SyncAsync(false).addPublicationErrorHandler(new EmptyErrorHandler()));
+        bus.subscribe(new FailingListener());
+        final List<IMessagePublication> completed = new CopyOnWriteArrayList<IMessagePublication>();
+        final CountDownLatch done = new CountDownLatch(1);
+
+        bus.post("message").asynchronously().onCompletion(new ICompletionCallback() {
+            @Override
+            public void completed(IMessagePublication publication) {
+                completed.add(publication);
+                done.countDown();
+            }
+        });
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(1, completed.size());
+        assertTrue(completed.get(0).isFinished());
+        assertTrue(completed.get(0).hasError());
+        bus.shutdown();
+    }
+
+    @Test
+    public void testCallbackOfFinishedPublication() {
+        MBassador<Object> bus = createBus(SyncAsync());
+        final AtomicInteger callbacks = new AtomicInteger();
+
+        IMessagePublication publication = bus.post("message").now();
+        assertTrue(publication.isFinished());
+        publication.onCompletion(new ICompletionCallback() {
+            @Override
+            public void completed(IMessagePublication publication) {
+                callbacks.incrementAndGet();
+            }
+        });
+        // called immediately by the registering thread
+        assertEquals(1, callbacks.get());
+        bus.shutdown();
+    }
+
+    @Listener(references = References.Strong)
+    public static class CountingListener {
+
+        private final AtomicInteger invocations = new AtomicInteger();
+
+        @Handler
+        public void handle(String message) {
+            invocations.incrementAndGet();
+        }
+    }
+
+    public static class SlowListener {
+
+        private final AtomicInteger invocations = new AtomicInteger();
+
+        @Handler
+        public void handle(String message) {
+            invocations.incrementAndGet();
+        }
+
+        @Handler(delivery = Invoke.Asynchronously)
+        public void handleAsynchronously(String message) throws InterruptedException {
+            Thread.sleep(200);
+            invocations.incrementAndGet();
+        }
+    }
+
+    @Listener(references = References.Strong)
+    public static class FailingListener {
+
+        @Handler(delivery = Invoke.Asynchronously)
+        public void handle(String message) {
+            throw new IllegalStateException("Expected failure");
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package net.engio.mbassy;
+
+import net.engio.mbassy.bus.IMessagePublication;
+import net.engio.mbassy.bus.MBassador;
+import net.engio.mbassy.bus.config.BusConfiguration;
+import net.engio.mbassy.bus.config.Feature;
+import net.engio.mbassy.bus.config.IBusConfiguration;
+import net.engio.mbassy.common.ConcurrentExecutor;
+import net.engio.mbassy.common.MessageBusTest;
+import net.engio.mbassy.common.RingBufferQueue;
+import net.engio.mbassy.listener.Handler;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test the {@link RingBufferQueue} on its own and as the message queue of an asynchronous message bus
+ */
+public class RingBufferQueueTest extends MessageBusTest {
+
+    private static final int Producers = 8;
+    private static final int Consumers = 4;
+    private static final int ElementsPerProducer = 50000;
+
+    @Test
+    public void testCapacity() throws InterruptedException {
+        RingBufferQueue<Integer> queue = new RingBufferQueue<Integer>(5);
+        assertEquals(8, queue.capacity());
+        for (int i = 0; i < 8; i++) {
+            assertTrue(queue.offer(i));
+        }
+        assertFalse(queue.offer(8));
+        assertFalse(queue.offer(8, 10, TimeUnit.MILLISECONDS));
+        assertEquals(8, queue.size());
+        assertEquals(0, queue.remainingCapacity());
+        assertEquals(0, (int) queue.peek());
+        for (int i = 0; i < 8; i++) {
+            assertEquals(i, (int) queue.poll());
+        }
+        assertNull(queue.poll());
+        assertNull(queue.peek());
+        assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testMinimumCapacity() {
+        RingBufferQueue<Integer> queue = new RingBufferQueue<Integer>(1);
+        assertEquals(2, queue.capacity());
+        for (int round = 0; round < 3; round++) {
+            assertTrue(queue.offer(0));
+            assertTrue(queue.offer(1));
+            assertFalse(queue.offer(2));
+            assertEquals(0, (int) queue.poll());
+            assertEquals(1, (int) queue.poll());
+            assertNull(queue.poll());
+        }
+    }
+
+    @Test
+    public void testConcurrentProducersAndConsumers() {
+        // a small capacity makes producers and consumers wait for each other
+        final RingBufferQueue<int[]> queue = new RingBufferQueue<int[]>(64);
+        final AtomicInteger producerIds = new AtomicInteger();
+        final AtomicInteger consumed = new AtomicInteger();
+        final List<String> errors = new CopyOnWriteArrayList<String>();
+        Runnable producer = new Runnable() {
+            @Override
+            public void run() {
+                int producer = producerIds.getAndIncrement();
+                try {
+                    for (int i = 0; i < ElementsPerProducer; i++) {
+                        queue.put(new int[]{producer, i});
+                    }
+                } catch (InterruptedException e) {
+                    errors.add(e.toString());
+                }
+            }
+        };
+        Runnable consumer = new Runnable() {
+            @Override
+            public void run() {
+                // elements of each producer must be taken in the order they were put
+                int[] lastTaken = new int[Producers];
+                Arrays.fill(lastTaken, -1);
+                try {
+                    while (consumed.get() < Producers * ElementsPerProducer) {
+                        int[] element = queue.poll(10, TimeUnit.MILLISECONDS);
+                        if (element == null) {
+                            continue;
+                        }
+                        consumed.incrementAndGet();
+                        if (element[1] <= lastTaken[element[0]]) {
+                            errors.add("Out of order: " + element[0] + "/" + element[1]);
+                        }
+                        lastTaken[element[0]] = element[1];
+                    }
+                } catch (InterruptedException e) {
+                    errors.add(e.toString());
+                }
+            }
+        };
+        List<Runnable> units = new ArrayList<Runnable>();
+        for (int i = 0; i < Producers; i++) {
+            units.add(producer);
+        }
+        for (int i = 0; i < Consumers; i++) {
+            units.add(consumer);
+        }
+        ConcurrentExecutor.runConcurrent(units.toArray(new Runnable[units.size()]));
+        assertTrue(errors.toString(), errors.isEmpty());
+        assertEquals(Producers * ElementsPerProducer, consumed.get());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testAsyncDispatch() {
+        IBusConfiguration configuration = new BusConfiguration()
+                .addFeature(Feature.SyncPubSub.Default())
+                .addFeature(Feature.AsynchronousHandlerInvocation.Default())
+                .addFeature(Feature.AsynchronousMessageDispatch.Default()
+                        .setMessageQueue(new RingBufferQueue<IMessagePublication>(1024)));
+        MBassador<Object> bus = new MBassador<Object>(configuration);
+        CountingListener listener = new CountingListener();
+        bus.subscribe(listener);
+        for (int i = 0; i < ElementsPerProducer; i++) {
+            bus.post("message").asynchronously();
+        }
+        while (bus.hasPendingMessages() || listener.received.get() < ElementsPerProducer) {
+            pause(10);
+        }
+        assertEquals(ElementsPerProducer, listener.received.get());
+        bus.shutdown();
+    }
+
+    public static class CountingListener {
+
+        private final AtomicInteger received = new AtomicInteger();
+
+        @Handler
+        public void handle(String message) {
+            received.incrementAndGet();
+        }
+    }
+}
@@ -6,12 +6,12 @@ import net.engio.mbassy.common.*;
 import net.engio.mbassy.listener.MetadataReader;
 import net.engio.mbassy.listeners.*;
 import net.engio.mbassy.messages.*;
+import net.engio.mbassy.subscription.AbstractSubscriptionManager;
 import net.engio.mbassy.subscription.Subscription;
 import net.engio.mbassy.subscription.SubscriptionFactory;
-import net.engio.mbassy.subscription.SubscriptionManager;
+import net.engio.mbassy.subscription.SubscriptionManagerProvider;
 import org.junit.Test;
 
-import java.util.Collection;
 import java.util.Collections;
 
 /**
@@ -170,14 +170,14 @@ public class SubscriptionManagerTest extends AssertSupport {
     @Test
     public void testStrongListenerSubscription() throws Exception {
         ListenerFactory listeners = listeners(CustomInvocationListener.class);
-        SubscriptionManager subscriptionManager = new SubscriptionManager(new MetadataReader(), new SubscriptionFactory(), mockedRuntime());
+        AbstractSubscriptionManager subscriptionManager = createSubscriptionManager();
         ConcurrentExecutor.runConcurrent(TestUtil.subscriber(subscriptionManager, listeners), ConcurrentUnits);
 
         listeners.clear();
         runGC();
 
-        Collection<Subscription> subscriptions = subscriptionManager.getSubscriptionsByMessageType(StandardMessage.class);
-        assertEquals(1, subscriptions.size());
+        Subscription[] subscriptions = subscriptionManager.getSubscriptionsByMessageType(StandardMessage.class);
+        assertEquals(1, subscriptions.length);
         for (Subscription sub : subscriptions)
             assertEquals(InstancesPerListener, sub.size());
     }
@@ -188,7 +188,7 @@ public class SubscriptionManagerTest extends AssertSupport {
                 Overloading.ListenerBase.class,
                 Overloading.ListenerSub.class);
 
-        SubscriptionManager subscriptionManager = new SubscriptionManager(new MetadataReader(), new SubscriptionFactory(), mockedRuntime());
+        AbstractSubscriptionManager subscriptionManager = createSubscriptionManager();
         ConcurrentExecutor.runConcurrent(TestUtil.subscriber(subscriptionManager, listeners), ConcurrentUnits);
 
         SubscriptionValidator expectedSubscriptions = new SubscriptionValidator(listeners)
@@ -202,7 +202,7 @@ public class SubscriptionManagerTest extends AssertSupport {
     public void testPrioritizedMessageHandlers() {
         ListenerFactory listeners = listeners(PrioritizedListener.class);
 
-        SubscriptionManager subscriptionManager = new SubscriptionManager(new MetadataReader(), new SubscriptionFactory(), mockedRuntime());
+        AbstractSubscriptionManager subscriptionManager = createSubscriptionManager();
         ConcurrentExecutor.runConcurrent(TestUtil.subscriber(subscriptionManager, listeners), ConcurrentUnits);
 
         SubscriptionValidator expectedSubscriptions = new SubscriptionValidator(listeners)
@@ -211,7 +211,31 @@ public class SubscriptionManagerTest extends AssertSupport {
         runTestWith(listeners, expectedSubscriptions);
     }
 
-    private BusRuntime mockedRuntime() {
+    @Test
+    public void testSubscriptionsByMessageTypeAreUpdated() {
+        AbstractSubscriptionManager subscriptionManager = createSubscriptionManager();
+        subscriptionManager.subscribe(new IMessageListener.DefaultListener());
+
+        // the first lookup builds (and caches) the subscriptions for the message type
+        Subscription[] subscriptions = subscriptionManager.getSubscriptionsByMessageType(StandardMessage.class);
+        assertEquals(1, subscriptions.length);
+        assertTrue(subscriptions == subscriptionManager.getSubscriptionsByMessageType(StandardMessage.class));
+
+        // registering a new listener class must be reflected by subsequent lookups
+        subscriptionManager.subscribe(new StandardMessageListener.DefaultListener());
+        subscriptions = subscriptionManager.getSubscriptionsByMessageType(StandardMessage.class);
+        assertEquals(2, subscriptions.length);
+
+        // unsubscribing listeners does not change the set of subscriptions
+        subscriptionManager.unsubscribe(new StandardMessageListener.DefaultListener());
+        assertTrue(subscriptions == subscriptionManager.getSubscriptionsByMessageType(StandardMessage.class));
+    }
+
+    protected AbstractSubscriptionManager createSubscriptionManager() {
+        return new SubscriptionManagerProvider().createManager(new MetadataReader(), new SubscriptionFactory(), mockedRuntime());
+    }
+
+    protected BusRuntime mockedRuntime() {
         return new BusRuntime(null)
                 .add(IBusConfiguration.Properties.PublicationErrorHandlers, Collections.EMPTY_SET)
                 .add(IBusConfiguration.Properties.AsynchronousHandlerExecutor, null);
@@ -226,7 +250,7 @@ public class SubscriptionManagerTest extends AssertSupport {
     }
 
     private void runTestWith(final ListenerFactory listeners, final SubscriptionValidator validator) {
-        final SubscriptionManager subscriptionManager = new SubscriptionManager(new MetadataReader(), new SubscriptionFactory(), mockedRuntime());
+        final AbstractSubscriptionManager subscriptionManager = createSubscriptionManager();
 
         ConcurrentExecutor.runConcurrent(TestUtil.subscriber(subscriptionManager, listeners), ConcurrentUnits);
 
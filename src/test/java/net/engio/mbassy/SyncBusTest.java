@@ -8,6 +8,7 @@ import net.engio.mbassy.bus.config.Feature;
 import net.engio.mbassy.bus.config.IBusConfiguration;
 import net.engio.mbassy.bus.error.IPublicationErrorHandler;
 import net.engio.mbassy.bus.error.PublicationError;
+import net.engio.mbassy.common.CopyOnWriteConcurrentSet;
 import net.engio.mbassy.common.ConcurrentExecutor;
 import net.engio.mbassy.common.ListenerFactory;
 import net.engio.mbassy.common.MessageBusTest;
@@ -20,6 +21,7 @@ import net.engio.mbassy.listeners.MessagesTypeListener;
 import net.engio.mbassy.messages.MessageTypes;
 import net.engio.mbassy.messages.MultipartMessage;
 import net.engio.mbassy.messages.StandardMessage;
+import net.engio.mbassy.subscription.GeneratedSubscriptionFactory;
 import org.junit.Test;
 
 import java.util.concurrent.atomic.AtomicInteger;
@@ -218,6 +220,45 @@ public abstract class SyncBusTest extends MessageBusTest {
         }
     }
 
+    public static class GeneratedDispatchTest extends SyncBusTest {
+
+
+        @Override
+        protected GenericMessagePublicationSupport getSyncMessageBus(boolean failOnException, IPublicationErrorHandler errorHandler) {
+            IBusConfiguration syncPubSubCfg = new BusConfiguration().addPublicationErrorHandler(new AssertionErrorHandler(failOnException));
+            syncPubSubCfg.addFeature(Feature.SyncPubSub.Default().setSubscriptionFactory(new GeneratedSubscriptionFactory()));
+            if (errorHandler != null) {
+                syncPubSubCfg.addPublicationErrorHandler(errorHandler);
+            }
+            return new SyncMessageBus(syncPubSubCfg);
+        }
+
+        @Override
+        protected GenericMessagePublicationSupport getSyncMessageBus(boolean failOnException) {
+            return getSyncMessageBus(failOnException, null);
+        }
+    }
+
+    public static class CopyOnWriteListenersTest extends SyncBusTest {
+
+
+        @Override
+        protected GenericMessagePublicationSupport getSyncMessageBus(boolean failOnException, IPublicationErrorHandler errorHandler) {
+            IBusConfiguration syncPubSubCfg = new BusConfiguration().addPublicationErrorHandler(new AssertionErrorHandler(failOnException));
+            syncPubSubCfg.addFeature(Feature.SyncPubSub.Default()
+                    .setSubscriptionFactory(new GeneratedSubscriptionFactory().setStrongListenerSet(CopyOnWriteConcurrentSet.class)));
+            if (errorHandler != null) {
+                syncPubSubCfg.addPublicationErrorHandler(errorHandler);
+            }
+            return new SyncMessageBus(syncPubSubCfg);
+        }
+
+        @Override
+        protected GenericMessagePublicationSupport getSyncMessageBus(boolean failOnException) {
+            return getSyncMessageBus(failOnException, null);
+        }
+    }
+
 
 
 
@@ -11,8 +11,10 @@ import net.engio.mbassy.listener.Invoke;
 import net.engio.mbassy.listener.Synchronized;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  *
@@ -90,7 +92,52 @@ public class SynchronizedHandlerTest extends MessageBusTest {
 
     }
 
+    @Test
+    public void testSynchronizedWithMailboxes(){
+        List<SynchronizedWithAsynchronousDelivery> handlers = new LinkedList<SynchronizedWithAsynchronousDelivery>();
+        IBusConfiguration config = SyncAsync(true);
+        config.getFeature(Feature.AsynchronousMessageDispatch.class)
+                .setNumberOfMessageDispatchers(6);
+        config.getFeature(Feature.AsynchronousHandlerInvocation.class)
+                .setSynchronizeWithMailboxes(true);
+        IMessageBus bus = createBus(config);
+        for(int i = 0; i < numberOfListeners; i++){
+            SynchronizedWithAsynchronousDelivery handler = new SynchronizedWithAsynchronousDelivery();
+            handlers.add(handler);
+            bus.subscribe(handler);
+        }
+
+        for(int i = 0; i < numberOfMessages; i++){
+            track(bus.post(new Object()).asynchronously());
+        }
+        // publications finish when all asynchronous handlers have been invoked
+        waitForPublications(30000);
+
+        for(SynchronizedWithAsynchronousDelivery handler : handlers){
+            assertEquals(incrementsPerMessage * numberOfMessages, handler.counter);
+        }
+    }
 
+    @Test
+    public void testMailboxesPreserveOrder() throws InterruptedException {
+        IBusConfiguration config = SyncAsync(true);
+        config.getFeature(Feature.AsynchronousHandlerInvocation.class)
+                .setSynchronizeWithMailboxes(true);
+        IMessageBus bus = createBus(config);
+        OrderedAsynchronousDelivery handler = new OrderedAsynchronousDelivery();
+        bus.subscribe(handler);
+
+        IMessagePublication publication = null;
+        for(int i = 0; i < numberOfMessages; i++){
+            publication = bus.post(i).now();
+        }
+        assertTrue(publication.await(30, TimeUnit.SECONDS));
+
+        assertEquals(numberOfMessages, handler.received.size());
+        for(int i = 0; i < numberOfMessages; i++){
+            assertEquals(i, (int) handler.received.get(i));
+        }
+    }
 
     public static class SynchronizedWithSynchronousDelivery {
 
@@ -106,6 +153,19 @@ public class SynchronizedHandlerTest extends MessageBusTest {
 
     }
 
+    public static class OrderedAsynchronousDelivery {
+
+        // not thread-safe, the handler must not be invoked concurrently
+        private final List<Integer> received = new ArrayList<Integer>();
+
+        @Handler(delivery = Invoke.Asynchronously)
+        @Synchronized
+        public void handleMessage(Integer message){
+            received.add(message);
+        }
+
+    }
+
     public static class SynchronizedWithAsynchronousDelivery {
 
         private int counter = 0;
@@ -0,0 +1,92 @@
+package net.engio.mbassy;
+
+import net.engio.mbassy.bus.MBassador;
+import net.engio.mbassy.bus.common.IWaitStrategy;
+import net.engio.mbassy.bus.config.BusConfiguration;
+import net.engio.mbassy.bus.config.Feature;
+import net.engio.mbassy.bus.config.IBusConfiguration;
+import net.engio.mbassy.common.MessageBusTest;
+import net.engio.mbassy.common.RingBufferQueue;
+import net.engio.mbassy.listener.Handler;
+import org.junit.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Test that messages are delivered with each of the wait strategies of asynchronous message dispatch
+ * and that waiting threads can be interrupted.
+ */
+public class WaitStrategyTest extends MessageBusTest {
+
+    private static final int Messages = 10000;
+
+    private static final IWaitStrategy[] Strategies = new IWaitStrategy[]{
+            new IWaitStrategy.Blocking(),
+            new IWaitStrategy.Sleeping(),
+            new IWaitStrategy.Yielding(),
+            new IWaitStrategy.BusySpin()};
+
+    @Test
+    public void testAsyncDispatch() {
+        for (IWaitStrategy strategy : Strategies) {
+            IBusConfiguration configuration = new BusConfiguration()
+                    .addFeature(Feature.SyncPubSub.Default())
+                    .addFeature(Feature.AsynchronousHandlerInvocation.Default())
+                    .addFeature(Feature.AsynchronousMessageDispatch.Default()
+                            .setMessageQueue(new RingBufferQueue(Messages))
+                            .setWaitStrategy(strategy));
+            MBassador<Object> bus = new MBassador<Object>(configuration);
+            CountingListener listener = new CountingListener();
+            bus.subscribe(listener);
+            for (int i = 0; i < Messages; i++) {
+                bus.post("message").asynchronously();
+                if (i % 100 == 0) {
+                    pause(1); // let the dispatchers run out of messages every now and then
+                }
+            }
+            while (listener.received.get() < Messages) {
+                pause(10);
+            }
+            assertEquals(Messages, listener.received.get());
+            bus.shutdown();
+        }
+    }
+
+    @Test
+    public void testInterruption() throws InterruptedException {
+        for (final IWaitStrategy strategy : Strategies) {
+            final BlockingQueue<Object> queue = new LinkedBlockingQueue<Object>();
+            final AtomicReference<Throwable> result = new AtomicReference<Throwable>();
+            Thread waiting = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        strategy.take(queue);
+                    } catch (Throwable e) {
+                        result.set(e);
+                    }
+                }
+            };
+            waiting.start();
+            pause(50);
+            waiting.interrupt();
+            waiting.join(TimeUnit.SECONDS.toMillis(10));
+            assertFalse(waiting.isAlive());
+            assertTrue(result.get() instanceof InterruptedException);
+        }
+    }
+
+    public static class CountingListener {
+
+        private final AtomicInteger received = new AtomicInteger();
+
+        @Handler
+        public void handle(String message) {
+            received.incrementAndGet();
+        }
+    }
+}
@@ -8,6 +8,7 @@ import org.junit.Test;
 
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Random;
 import java.util.Set;
 
@@ -66,5 +67,87 @@ public class WeakConcurrentSetTest extends ConcurrentSetTest{
         }
     }
 
+    @Test
+    public void testCleanupOfCollectedElements() {
+        final WeakConcurrentSet testSet = new WeakConcurrentSet();
+        for (int i = 0; i < numberOfElements; i++) {
+            testSet.add(new Object());
+        }
+        // the references of collected elements are enqueued asynchronously after garbage collection
+        for (int attempt = 0; attempt < 100 && !testSet.isEmpty(); attempt++) {
+            runGC();
+            testSet.cleanup();
+        }
+        assertTrue(testSet.isEmpty());
+        assertFalse(testSet.iterator().hasNext());
+    }
+
+    @Test
+    public void testWritesRemoveCollectedElements() {
+        final WeakConcurrentSet testSet = new WeakConcurrentSet();
+        for (int i = 0; i < numberOfElements; i++) {
+            testSet.add(new Object());
+        }
+        Object permanent = new Object();
+        for (int attempt = 0; attempt < 100 && !testSet.isEmpty(); attempt++) {
+            runGC();
+            testSet.add(permanent);
+            testSet.remove(permanent);
+        }
+        assertTrue(testSet.isEmpty());
+    }
+
+    @Test
+    public void testIterationRemovesCollectedElements() {
+        final WeakConcurrentSet testSet = new WeakConcurrentSet();
+        for (int i = 0; i < numberOfElements; i++) {
+            testSet.add(new Object());
+        }
+        // the set is never modified again
+        for (int attempt = 0; attempt < 100 && !testSet.isEmpty(); attempt++) {
+            runGC();
+            for (int i = 0; i < WeakConcurrentSet.CleanupInterval; i++) {
+                testSet.iterator();
+            }
+        }
+        assertTrue(testSet.isEmpty());
+    }
+
+    @Test
+    public void testClearedEntriesAreNotRemovedAgain() {
+        final WeakConcurrentSet testSet = new WeakConcurrentSet();
+        for (int i = 0; i < numberOfElements; i++) {
+            testSet.add(new Object());
+        }
+        testSet.clear();
+        Object first = new Object();
+        Object second = new Object();
+        testSet.add(first);
+        testSet.add(second);
+        // the references of the cleared elements are enqueued and processed with the next modification
+        for (int attempt = 0; attempt < 10; attempt++) {
+            runGC();
+            testSet.cleanup();
+        }
+        assertTrue(testSet.remove(first));
+        Iterator iterator = testSet.iterator();
+        assertTrue(iterator.next() == second);
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void testElementsAreComparedByIdentity() {
+        final WeakConcurrentSet testSet = new WeakConcurrentSet();
+        String first = new String("element");
+        String second = new String("element");
+        assertTrue(testSet.add(first));
+        assertTrue(testSet.add(second));
+        assertFalse(testSet.add(first));
+        assertEquals(2, testSet.size());
+        assertFalse(testSet.contains("element"));
+        assertTrue(testSet.remove(first));
+        assertFalse(testSet.contains(first));
+        assertTrue(testSet.contains(second));
+    }
 
 }
@@ -0,0 +1,62 @@
+package net.engio.mbassy.benchmark;
+
+import net.engio.mbassy.bus.MBassador;
+import net.engio.mbassy.bus.config.BusConfiguration;
+import net.engio.mbassy.bus.config.Feature;
+import net.engio.mbassy.bus.error.IPublicationErrorHandler;
+import net.engio.mbassy.listener.Handler;
+import net.engio.mbassy.listener.Invoke;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long it takes to complete 10.000 concurrent invocations of an asynchronous handler that blocks
+ * for a millisecond (like a handler doing I/O) with the default executor and with a thread per invocation
+ * (virtual threads on Java 21+). This is not a unit test. Run it from the IDE or the command line:
+ *
+ * java -cp target/classes:target/test-classes net.engio.mbassy.benchmark.BlockingHandlerBenchmark
+ */
+public class BlockingHandlerBenchmark {
+
+    private static final int Invocations = 10000;
+    private static final int Rounds = 3;
+
+    public static void main(String[] args) throws InterruptedException {
+        System.out.println("Java " + System.getProperty("java.version") + ", available processors: "
+                + Runtime.getRuntime().availableProcessors());
+        for (int round = 1; round <= Rounds; round++) {
+            measure("Default", Feature.AsynchronousHandlerInvocation.Default(), round);
+            measure("ThreadPerInvocation", Feature.AsynchronousHandlerInvocation.ThreadPerInvocation(), round);
+        }
+    }
+
+    private static void measure(String name, Feature.AsynchronousHandlerInvocation invocation, int round) throws InterruptedException {
+        MBassador<Object> bus = new MBassador<Object>(new BusConfiguration()
+                .addFeature(Feature.SyncPubSub.Default())
+                .addFeature(invocation)
+                .addFeature(Feature.AsynchronousMessageDispatch.Default())
+                .addPublicationErrorHandler(new IPublicationErrorHandler.ConsoleLogger()));
+        BlockingListener listener = new BlockingListener();
+        bus.subscribe(listener);
+        long start = System.nanoTime();
+        for (int i = 0; i < Invocations; i++) {
+            bus.publish("message");
+        }
+        listener.finished.await();
+        long duration = System.nanoTime() - start;
+        bus.shutdown();
+        System.out.println(String.format("%-20s round=%d  %8.1f ms for %d invocations", name, round, duration / 1e6, Invocations));
+    }
+
+    public static class BlockingListener {
+
+        private final CountDownLatch finished = new CountDownLatch(Invocations);
+
+        @Handler(delivery = Invoke.Asynchronously)
+        public void handle(String message) throws InterruptedException {
+            TimeUnit.MILLISECONDS.sleep(1);
+            finished.countDown();
+        }
+    }
+}
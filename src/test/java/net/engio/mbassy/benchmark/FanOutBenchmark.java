@@ -0,0 +1,77 @@
+package net.engio.mbassy.benchmark;
+
+import net.engio.mbassy.bus.IMessagePublication;
+import net.engio.mbassy.bus.MBassador;
+import net.engio.mbassy.bus.config.BusConfiguration;
+import net.engio.mbassy.bus.config.Feature;
+import net.engio.mbassy.bus.error.IPublicationErrorHandler;
+import net.engio.mbassy.listener.Handler;
+import net.engio.mbassy.listener.Invoke;
+import net.engio.mbassy.listener.Listener;
+import net.engio.mbassy.listener.References;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the throughput of an asynchronous handler with 5.000 listeners for different numbers of listeners
+ * per executor task. This is not a unit test. Run it from the IDE or the command line:
+ *
+ * java -cp target/classes:target/test-classes net.engio.mbassy.benchmark.FanOutBenchmark
+ */
+public class FanOutBenchmark {
+
+    private static final int Listeners = 5000;
+    private static final int Messages = 1000;
+    private static final int Rounds = 3;
+
+    public static void main(String[] args) throws InterruptedException {
+        System.out.println("Java " + System.getProperty("java.version") + ", available processors: "
+                + Runtime.getRuntime().availableProcessors());
+        for (int round = 1; round <= Rounds; round++) {
+            measure(1, round);
+            measure(100, round);
+            measure(Integer.MAX_VALUE, round);
+        }
+    }
+
+    private static void measure(int listenersPerTask, int round) throws InterruptedException {
+        MBassador<Object> bus = new MBassador<Object>(new BusConfiguration()
+                .addFeature(Feature.SyncPubSub.Default())
+                .addFeature(Feature.AsynchronousHandlerInvocation.Default().setListenersPerTask(listenersPerTask))
+                .addFeature(Feature.AsynchronousMessageDispatch.Default())
+                .addPublicationErrorHandler(new IPublicationErrorHandler.ConsoleLogger()));
+        AtomicLong invocations = new AtomicLong();
+        for (int i = 0; i < Listeners; i++) {
+            bus.subscribe(new CountingListener(invocations));
+        }
+        long start = System.nanoTime();
+        IMessagePublication last = null;
+        for (int i = 0; i < Messages; i++) {
+            last = bus.post("message").now();
+        }
+        last.await(1, TimeUnit.MINUTES);
+        while (invocations.get() < (long) Listeners * Messages) {
+            Thread.yield();
+        }
+        long duration = System.nanoTime() - start;
+        bus.shutdown();
+        System.out.println(String.format("listenersPerTask=%-10d round=%d  %8.1f ms for %d invocations",
+                listenersPerTask, round, duration / 1e6, (long) Listeners * Messages));
+    }
+
+    @Listener(references = References.Strong)
+    public static class CountingListener {
+
+        private final AtomicLong invocations;
+
+        public CountingListener(AtomicLong invocations) {
+            this.invocations = invocations;
+        }
+
+        @Handler(delivery = Invoke.Asynchronously)
+        public void handle(String message) {
+            invocations.incrementAndGet();
+        }
+    }
+}
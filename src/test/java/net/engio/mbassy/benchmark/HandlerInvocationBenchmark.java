@@ -0,0 +1,175 @@
+package net.engio.mbassy.benchmark;
+
+import net.engio.mbassy.bus.BusRuntime;
+import net.engio.mbassy.bus.MessagePublication;
+import net.engio.mbassy.bus.error.IPublicationErrorHandler;
+import net.engio.mbassy.dispatch.FusedMessageDispatcher;
+import net.engio.mbassy.dispatch.GeneratedHandlerInvocation;
+import net.engio.mbassy.dispatch.IHandlerInvocation;
+import net.engio.mbassy.dispatch.IMessageDispatcher;
+import net.engio.mbassy.dispatch.ReflectiveHandlerInvocation;
+import net.engio.mbassy.dispatch.codegen.MessageDispatcherGenerator;
+import net.engio.mbassy.listener.Filter;
+import net.engio.mbassy.listener.Handler;
+import net.engio.mbassy.listener.IMessageFilter;
+import net.engio.mbassy.listener.MessageHandler;
+import net.engio.mbassy.listener.MetadataReader;
+import net.engio.mbassy.subscription.Subscription;
+import net.engio.mbassy.subscription.SubscriptionContext;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compares the cost of invoking a message handler using reflection with the cost of invoking it
+ * from a generated class. It also compares the {@link FusedMessageDispatcher} with generated dispatchers
+ * for filtered handlers of several listener classes, i.e. when the calls of the filters and handlers from
+ * the shared dispatcher are megamorphic. This is not a unit test. Run it from the IDE or the command line:
+ *
+ * java -cp target/classes:target/test-classes net.engio.mbassy.benchmark.HandlerInvocationBenchmark
+ */
+public class HandlerInvocationBenchmark {
+
+    private static final int Iterations = 32 * 1024 * 1024;
+    private static final int Rounds = 5;
+    private static final int Messages = 1024;
+
+    public static void main(String[] args) {
+        SubscriptionContext context = new SubscriptionContext(new BusRuntime(null),
+                new MetadataReader().getMessageListener(Listener.class).getHandlers()[0],
+                Collections.<IPublicationErrorHandler>emptySet());
+        IHandlerInvocation reflective = new ReflectiveHandlerInvocation(context);
+        IHandlerInvocation generated = new GeneratedHandlerInvocation(context);
+        for (int round = 1; round <= Rounds; round++) {
+            measure("Reflective", reflective, round);
+            measure("Generated", generated, round);
+        }
+        Class[] listenerClasses = new Class[]{FilteredListener.class, OtherFilteredListener.class, ThirdFilteredListener.class};
+        IMessageDispatcher[] fused = new IMessageDispatcher[listenerClasses.length];
+        IMessageDispatcher[] generatedDispatchers = new IMessageDispatcher[listenerClasses.length];
+        for (int i = 0; i < listenerClasses.length; i++) {
+            MessageHandler[] handlers = new MetadataReader().getMessageListener(listenerClasses[i]).getHandlers();
+            SubscriptionContext handlerContext = new SubscriptionContext(new BusRuntime(null), handlers[0],
+                    Collections.<IPublicationErrorHandler>emptySet());
+            fused[i] = new FusedMessageDispatcher(handlerContext, new GeneratedHandlerInvocation(handlerContext));
+            try {
+                generatedDispatchers[i] = new MessageDispatcherGenerator().generate(listenerClasses[i], handlers)
+                        .newInstance(handlerContext, new GeneratedHandlerInvocation(handlerContext), 0);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        for (int round = 1; round <= Rounds; round++) {
+            measureDispatch("Fused", fused, round);
+            measureDispatch("Dispatcher", generatedDispatchers, round);
+        }
+    }
+
+    private static void measureDispatch(String name, IMessageDispatcher[] dispatchers, int round) {
+        List[] listeners = new List[]{Arrays.asList(new FilteredListener()), Arrays.asList(new OtherFilteredListener()),
+                Arrays.asList(new ThirdFilteredListener())};
+        String[] messages = new String[Messages];
+        for (int i = 0; i < Messages; i++) {
+            messages[i] = Integer.toString(i);
+        }
+        MessagePublication publication = new MessagePublication.Factory()
+                .createPublication(new BusRuntime(null), new Subscription[0], messages[0]);
+        long start = System.nanoTime();
+        for (int i = 0; i < Iterations; i++) {
+            int listener = i % dispatchers.length;
+            dispatchers[listener].dispatch(publication, messages[i & (Messages - 1)], listeners[listener]);
+        }
+        long duration = System.nanoTime() - start;
+        long sum = 0;
+        for (List listener : listeners) {
+            sum += ((CountingListener) listener.get(0)).sum;
+        }
+        if (sum == 0) {
+            throw new IllegalStateException("Handler was not invoked");
+        }
+        System.out.println(String.format("%-10s round=%d  %6.2f ns/dispatch", name, round, (double) duration / Iterations));
+    }
+
+    private static void measure(String name, IHandlerInvocation invocation, int round) {
+        Listener listener = new Listener();
+        // varying messages prevent the JIT from folding the invocation loop
+        String[] messages = new String[Messages];
+        long expected = 0;
+        for (int i = 0; i < Messages; i++) {
+            messages[i] = Integer.toString(i);
+            expected += (long) messages[i].length() * (Iterations / Messages);
+        }
+        MessagePublication publication = new MessagePublication.Factory()
+                .createPublication(new BusRuntime(null), new Subscription[0], messages[0]);
+        long start = System.nanoTime();
+        for (int i = 0; i < Iterations; i++) {
+            invocation.invoke(listener, messages[i & (Messages - 1)], publication);
+        }
+        long duration = System.nanoTime() - start;
+        if (listener.sum != expected) {
+            throw new IllegalStateException("Handler was not invoked");
+        }
+        System.out.println(String.format("%-10s round=%d  %6.2f ns/invocation", name, round, (double) duration / Iterations));
+    }
+
+    public static class Listener {
+
+        private long sum;
+
+        @Handler
+        public void handle(String message) {
+            sum += message.length();
+        }
+    }
+
+    public static class CountingListener {
+
+        protected long sum;
+    }
+
+    public static class FilteredListener extends CountingListener {
+
+        @Handler(filters = @Filter(RejectOdd.class))
+        public void handle(String message) {
+            sum += message.length();
+        }
+    }
+
+    public static class OtherFilteredListener extends CountingListener {
+
+        @Handler(filters = @Filter(RejectEven.class))
+        public void handleOther(String message) {
+            sum += message.length();
+        }
+    }
+
+    public static class ThirdFilteredListener extends CountingListener {
+
+        @Handler(filters = @Filter(RejectShort.class))
+        public void handleThird(String message) {
+            sum += message.length();
+        }
+    }
+
+    public static class RejectOdd implements IMessageFilter<String> {
+        @Override
+        public boolean accepts(String message, SubscriptionContext context) {
+            return message.length() % 2 == 0;
+        }
+    }
+
+    public static class RejectEven implements IMessageFilter<String> {
+        @Override
+        public boolean accepts(String message, SubscriptionContext context) {
+            return message.length() % 2 == 1;
+        }
+    }
+
+    public static class RejectShort implements IMessageFilter<String> {
+        @Override
+        public boolean accepts(String message, SubscriptionContext context) {
+            return message.length() > 2;
+        }
+    }
+}
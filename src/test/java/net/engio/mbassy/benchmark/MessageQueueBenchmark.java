@@ -0,0 +1,91 @@
+package net.engio.mbassy.benchmark;
+
+import net.engio.mbassy.common.RingBufferQueue;
+
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Compares the {@link RingBufferQueue} with the {@link LinkedBlockingQueue} that is used by default for
+ * asynchronous message dispatch. A varying number of producers put elements into the queue which are taken
+ * by two consumers (the default number of message dispatchers). The throughput and the latency between
+ * put and take are measured. This is not a unit test. Run it from the IDE or the command line:
+ *
+ * java -cp target/classes:target/test-classes net.engio.mbassy.benchmark.MessageQueueBenchmark
+ */
+public class MessageQueueBenchmark {
+
+    private static final int[] ProducerCounts = new int[]{1, 4, 16};
+    private static final int Consumers = 2;
+    private static final int Elements = 4 * 1024 * 1024;
+    private static final int Rounds = 3;
+    private static final int Capacity = 64 * 1024;
+
+    public static void main(String[] args) throws InterruptedException {
+        System.out.println("Available processors: " + Runtime.getRuntime().availableProcessors());
+        for (int round = 1; round <= Rounds; round++) {
+            for (int producers : ProducerCounts) {
+                measure("LinkedBlockingQueue", new LinkedBlockingQueue<long[]>(Integer.MAX_VALUE), producers, round);
+                measure("RingBufferQueue", new RingBufferQueue<long[]>(Capacity), producers, round);
+            }
+        }
+    }
+
+    private static void measure(String name, final BlockingQueue<long[]> queue, int producers, int round) throws InterruptedException {
+        final int elementsPerProducer = Elements / producers;
+        final int elementsPerConsumer = elementsPerProducer * producers / Consumers;
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch finished = new CountDownLatch(Consumers);
+        // latencies are sampled, one per 64 elements
+        final long[][] latencies = new long[Consumers][elementsPerConsumer / 64];
+        for (int i = 0; i < producers; i++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int j = 0; j < elementsPerProducer; j++) {
+                            queue.put(new long[]{System.nanoTime()});
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }.start();
+        }
+        for (int i = 0; i < Consumers; i++) {
+            final long[] sampled = latencies[i];
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int j = 0; j < elementsPerConsumer; j++) {
+                            long[] element = queue.take();
+                            if ((j & 63) == 0 && j / 64 < sampled.length) {
+                                sampled[j / 64] = System.nanoTime() - element[0];
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    finished.countDown();
+                }
+            }.start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        finished.await();
+        long duration = System.nanoTime() - begin;
+        long[] all = new long[latencies.length * latencies[0].length];
+        for (int i = 0; i < latencies.length; i++) {
+            System.arraycopy(latencies[i], 0, all, i * latencies[i].length, latencies[i].length);
+        }
+        Arrays.sort(all);
+        System.out.println(String.format("%-20s round=%d producers=%2d  %8.0f elements/ms  latency p50=%8.1f us  p99=%9.1f us",
+                name, round, producers, elementsPerConsumer * Consumers / (duration / 1e6),
+                all[all.length / 2] / 1e3, all[all.length * 99 / 100] / 1e3));
+    }
+}
@@ -0,0 +1,94 @@
+package net.engio.mbassy.benchmark;
+
+import net.engio.mbassy.bus.BusRuntime;
+import net.engio.mbassy.bus.config.IBusConfiguration;
+import net.engio.mbassy.listener.MetadataReader;
+import net.engio.mbassy.listeners.IMessageListener;
+import net.engio.mbassy.listeners.StandardMessageListener;
+import net.engio.mbassy.messages.StandardMessage;
+import net.engio.mbassy.subscription.AbstractSubscriptionManager;
+import net.engio.mbassy.subscription.CopyOnWriteSubscriptionManagerProvider;
+import net.engio.mbassy.subscription.ISubscriptionManagerProvider;
+import net.engio.mbassy.subscription.SubscriptionFactory;
+import net.engio.mbassy.subscription.SubscriptionManagerProvider;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures how the throughput of the subscription registry scales with the number of threads that concurrently
+ * look up subscriptions (= publish) and subscribe/unsubscribe instances of known listener classes.
+ * This is not a unit test. Run it from the IDE or the command line:
+ *
+ * java -cp target/classes:target/test-classes net.engio.mbassy.benchmark.SubscriptionManagerBenchmark
+ */
+public class SubscriptionManagerBenchmark {
+
+    private static final int[] ThreadCounts = new int[]{1, 2, 4, 8, 16, 32};
+    private static final long RunTimeInMs = 2000;
+    // one subscription change per this number of lookups
+    private static final int LookupsPerWrite = 100;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("Available processors: " + Runtime.getRuntime().availableProcessors());
+        run("ReadWriteLock", new SubscriptionManagerProvider());
+        run("CopyOnWrite", new CopyOnWriteSubscriptionManagerProvider());
+    }
+
+    private static void run(String name, ISubscriptionManagerProvider provider) throws Exception {
+        for (int threads : ThreadCounts) {
+            AbstractSubscriptionManager manager = provider.createManager(new MetadataReader(), new SubscriptionFactory(), runtime());
+            manager.subscribe(new IMessageListener.DefaultListener());
+            manager.subscribe(new StandardMessageListener.DefaultListener());
+            // warm up
+            measure(manager, threads, RunTimeInMs / 2);
+            long operations = measure(manager, threads, RunTimeInMs);
+            System.out.println(String.format("%-14s threads=%2d  %,12d ops/s", name, threads, operations * 1000 / RunTimeInMs));
+        }
+    }
+
+    private static long measure(final AbstractSubscriptionManager manager, int threads, final long duration) throws InterruptedException {
+        final AtomicLong operations = new AtomicLong();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch finished = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Object listener = new StandardMessageListener.DefaultListener();
+                    long count = 0;
+                    try {
+                        start.await();
+                        long end = System.currentTimeMillis() + duration;
+                        while (System.currentTimeMillis() < end) {
+                            for (int j = 0; j < LookupsPerWrite; j++) {
+                                if (manager.getSubscriptionsByMessageType(StandardMessage.class).length == 0) {
+                                    throw new IllegalStateException("No subscriptions found");
+                                }
+                            }
+                            manager.subscribe(listener);
+                            manager.unsubscribe(listener);
+                            count += LookupsPerWrite + 2;
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        operations.addAndGet(count);
+                        finished.countDown();
+                    }
+                }
+            });
+            worker.start();
+        }
+        start.countDown();
+        finished.await();
+        return operations.get();
+    }
+
+    private static BusRuntime runtime() {
+        return new BusRuntime(null)
+                .add(IBusConfiguration.Properties.PublicationErrorHandlers, Collections.EMPTY_SET)
+                .add(IBusConfiguration.Properties.AsynchronousHandlerExecutor, null);
+    }
+}
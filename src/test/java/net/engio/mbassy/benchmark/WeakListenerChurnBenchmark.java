@@ -0,0 +1,84 @@
+package net.engio.mbassy.benchmark;
+
+import net.engio.mbassy.common.ConcurrentWeakIdentityMap;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Compares the {@link ConcurrentWeakIdentityMap} with a synchronized {@link WeakHashMap} under heavy churn
+ * of weakly referenced listeners: Each thread registers new listeners, most of which are dropped immediately
+ * and garbage collected, while all threads continuously look up the listeners they still reference.
+ * This is not a unit test. Run it from the IDE or the command line:
+ *
+ * java -cp target/classes:target/test-classes net.engio.mbassy.benchmark.WeakListenerChurnBenchmark
+ */
+public class WeakListenerChurnBenchmark {
+
+    private static final int Threads = 4;
+    private static final int Operations = 2 * 1024 * 1024;
+    private static final int Rounds = 5;
+    // the number of listeners each thread keeps alive
+    private static final int LiveListeners = 1024;
+    // lookups per registration
+    private static final int LookupsPerRegistration = 64;
+
+    public static void main(String[] args) throws InterruptedException {
+        for (int round = 1; round <= Rounds; round++) {
+            measure("WeakHashMap", Collections.synchronizedMap(new WeakHashMap<Object, Object>()), round);
+            measure("WeakIdentity", new ConcurrentWeakIdentityMap<Object, Object>(), round);
+        }
+    }
+
+    private static void measure(String name, final Map<Object, Object> listeners, int round) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch finished = new CountDownLatch(Threads);
+        final int[] misses = new int[Threads];
+        for (int i = 0; i < Threads; i++) {
+            final int thread = i;
+            new Thread() {
+                @Override
+                public void run() {
+                    Object[] live = new Object[LiveListeners];
+                    for (int j = 0; j < LiveListeners; j++) {
+                        live[j] = new Object();
+                        listeners.put(live[j], Boolean.TRUE);
+                    }
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int j = 0; j < Operations; j++) {
+                        if (j % LookupsPerRegistration == 0) {
+                            // replace one of the live listeners, the old one is unsubscribed explicitly
+                            // every other time and left to the garbage collector otherwise
+                            int slot = (j / LookupsPerRegistration) & (LiveListeners - 1);
+                            if ((j & LookupsPerRegistration) == 0) {
+                                listeners.remove(live[slot]);
+                            }
+                            live[slot] = new Object();
+                            listeners.put(live[slot], Boolean.TRUE);
+                        } else if (listeners.get(live[j & (LiveListeners - 1)]) == null) {
+                            misses[thread]++;
+                        }
+                    }
+                    finished.countDown();
+                }
+            }.start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        finished.await();
+        long duration = System.nanoTime() - begin;
+        for (int miss : misses) {
+            if (miss != 0) {
+                throw new IllegalStateException("Live listener was not found");
+            }
+        }
+        System.out.println(String.format("%-12s round=%d  %6.2f ns/operation  (%d threads, %d listeners left)",
+                name, round, (double) duration / (Operations * Threads), Threads, listeners.size()));
+    }
+}
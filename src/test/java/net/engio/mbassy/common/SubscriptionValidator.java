@@ -1,7 +1,7 @@
 package net.engio.mbassy.common;
 
+import net.engio.mbassy.subscription.AbstractSubscriptionManager;
 import net.engio.mbassy.subscription.Subscription;
-import net.engio.mbassy.subscription.SubscriptionManager;
 
 import java.util.*;
 
@@ -33,12 +33,12 @@ public class SubscriptionValidator extends AssertSupport{
 
     // match subscriptions with existing validation entries
     // for each tuple of subscriber and message type the specified number of listeners must exist
-    public void validate(SubscriptionManager manager){
+    public void validate(AbstractSubscriptionManager manager){
         for(Class messageType : messageTypes){
-            Collection<Subscription> subscriptions = manager.getSubscriptionsByMessageType(messageType);
+            Subscription[] subscriptions = manager.getSubscriptionsByMessageType(messageType);
             ensureOrdering(subscriptions);
             Collection<ValidationEntry> validationEntries = getEntries(EntriesByMessageType(messageType));
-            assertEquals(subscriptions.size(), validationEntries.size());
+            assertEquals(subscriptions.length, validationEntries.size());
             for(ValidationEntry validationValidationEntry : validationEntries){
                 Subscription matchingSub = null;
                 // one of the subscriptions must belong to the subscriber type
@@ -54,7 +54,7 @@ public class SubscriptionValidator extends AssertSupport{
         }
     }
 
-    private void ensureOrdering(Collection<Subscription> subscriptions){
+    private void ensureOrdering(Subscription[] subscriptions){
         int lastPriority = Integer.MAX_VALUE;// highest priority possible
         for(Subscription sub : subscriptions){
             assertTrue("Subscriptions should be ordered by priority (DESC)", lastPriority >= sub.getPriority());
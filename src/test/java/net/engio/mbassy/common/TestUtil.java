@@ -2,7 +2,7 @@ package net.engio.mbassy.common;
 
 import net.engio.mbassy.bus.MBassador;
 import net.engio.mbassy.bus.common.PubSubSupport;
-import net.engio.mbassy.subscription.SubscriptionManager;
+import net.engio.mbassy.subscription.AbstractSubscriptionManager;
 
 import java.util.Iterator;
 import java.util.List;
@@ -16,7 +16,7 @@ import java.util.List;
 public class TestUtil {
 
 
-    public static Runnable subscriber(final SubscriptionManager manager, final ListenerFactory listeners){
+    public static Runnable subscriber(final AbstractSubscriptionManager manager, final ListenerFactory listeners){
         final Iterator source = listeners.iterator();
         return new Runnable() {
             @Override
@@ -29,7 +29,7 @@ public class TestUtil {
         };
     }
 
-    public static Runnable unsubscriber(final SubscriptionManager manager, final ListenerFactory listeners){
+    public static Runnable unsubscriber(final AbstractSubscriptionManager manager, final ListenerFactory listeners){
         final Iterator source = listeners.iterator();
         return new Runnable() {
             @Override